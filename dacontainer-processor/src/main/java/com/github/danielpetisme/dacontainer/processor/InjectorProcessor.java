@@ -0,0 +1,743 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates an injector, &lt;binary name&gt;$$DaInjector, for each class
+ * carrying {@code @Inject}, {@code @Named} or an annotation meta-annotated
+ * with {@code @AnnotationInjection}. The injector replays what the
+ * reflection does, constructor then fields then methods, with plain Java
+ * calls.
+ * 
+ * A class the generated code cannot reach (private members, final fields,
+ * non-public constructors, inner classes, checked exceptions, Provider or
+ * Lazy injection, parameterized or named dependencies) gets no injector and
+ * stays injected by the reflection.
+ * The processor reports it with a NOTE.
+ * 
+ * The injectable classes are listed in the resource
+ * META-INF/dacontainer/components, with their contracts and their injection
+ * points, so a container binds them without scanning the classpath, see
+ * {@code DaContainer.autoBind()}. The resource lists the classes of one
+ * compilation: an incremental build recompiling a part of the sources
+ * rewrites it with that part only.
+ */
+@SupportedAnnotationTypes("*")
+public class InjectorProcessor extends AbstractProcessor {
+
+	static final String SUFFIX = "$$DaInjector";
+
+	private static final String PACKAGE = "com.github.danielpetisme.dacontainer";
+
+	private static final String INJECT = PACKAGE + ".annotations.Inject";
+
+	private static final String NAMED = PACKAGE + ".annotations.Named";
+
+	private static final String ANNOTATION_INJECTION = PACKAGE
+			+ ".annotations.AnnotationInjection";
+
+	private static final String INJECTOR = PACKAGE + ".Injector";
+
+	private static final String CONTAINER = PACKAGE + ".DaContainer";
+
+	private static final String SLOT = PACKAGE + ".internal.ConstantSlot";
+
+	// Read by ComponentIndex
+	private static final String INDEX = "META-INF/dacontainer/components";
+
+	private static final Set<String> DEFERRED = new LinkedHashSet<String>();
+	static {
+		DEFERRED.add(PACKAGE + ".Provider");
+		DEFERRED.add(PACKAGE + ".Lazy");
+	}
+
+	// The lines of the index, written once the last round is over
+	private final List<String> components = new ArrayList<String>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations,
+			RoundEnvironment roundEnv) {
+		for (Element element : roundEnv.getRootElements()) {
+			process(element);
+		}
+		if (roundEnv.processingOver() && !components.isEmpty()) {
+			writeIndex();
+		}
+		// The annotations stay visible to the other processors
+		return false;
+	}
+
+	private void process(Element element) {
+		if (element.getKind() == ElementKind.CLASS) {
+			TypeElement type = (TypeElement) element;
+			boolean generated = false;
+			try {
+				Injector injector = analyze(type);
+				if (injector != null) {
+					write(type, injector);
+					generated = true;
+				}
+			} catch (UnsupportedException e) {
+				processingEnv.getMessager().printMessage(Kind.NOTE,
+						type + " is injected by reflection: " + e.getMessage(),
+						type);
+			} catch (IOException e) {
+				processingEnv.getMessager().printMessage(Kind.ERROR,
+						"Cannot write the injector of " + type + ": " + e, type);
+			}
+			String component = component(type, generated);
+			if (component != null) {
+				components.add(component);
+			}
+		}
+		for (Element enclosed : element.getEnclosedElements()) {
+			if (enclosed.getKind().isClass() || enclosed.getKind().isInterface()) {
+				process(enclosed);
+			}
+		}
+	}
+
+	/**
+	 * @return the injector of the class, null when it has no managed
+	 *         annotation
+	 */
+	private Injector analyze(TypeElement type) throws UnsupportedException {
+		List<ExecutableElement> constructors = new ArrayList<ExecutableElement>();
+		List<VariableElement> fields = new ArrayList<VariableElement>();
+		List<ExecutableElement> methods = new ArrayList<ExecutableElement>();
+		boolean managed = false;
+		for (Element member : type.getEnclosedElements()) {
+			boolean annotated = !managedAnnotations(member).isEmpty();
+			managed |= annotated;
+			if (member.getKind() == ElementKind.CONSTRUCTOR) {
+				constructors.add((ExecutableElement) member);
+			} else if (annotated && member.getKind() == ElementKind.FIELD) {
+				fields.add((VariableElement) member);
+			} else if (annotated && member.getKind() == ElementKind.METHOD) {
+				methods.add((ExecutableElement) member);
+			}
+		}
+		if (!managed) {
+			return null;
+		}
+		checkReachable(type);
+
+		Injector injector = new Injector();
+		injector.statements.add(rawName(type) + " instance = "
+				+ construct(type, constructors, injector) + ";");
+
+		// Same order as the reflection: fields first, then methods
+		for (VariableElement field : fields) {
+			inject(type, field, injector);
+		}
+		for (ExecutableElement method : methods) {
+			inject(type, method, injector);
+		}
+		return injector;
+	}
+
+	/**
+	 * The points are listed the way the reflection injects them: the
+	 * annotated constructor, then the fields and the methods of each class of
+	 * the hierarchy, superclass first, without the overridden methods. The
+	 * injector is used only when no superclass has members.
+	 * 
+	 * @return the line of the class in the index, null when it is not a
+	 *         component
+	 */
+	private String component(TypeElement type, boolean generated) {
+		Set<Modifier> modifiers = type.getModifiers();
+		if (modifiers.contains(Modifier.ABSTRACT)
+				|| modifiers.contains(Modifier.PRIVATE)
+				|| (type.getEnclosingElement().getKind().isClass() && !modifiers
+						.contains(Modifier.STATIC))) {
+			return null;
+		}
+
+		List<TypeElement> hierarchy = new ArrayList<TypeElement>();
+		for (TypeElement level = type; level != null; level = superclass(level)) {
+			hierarchy.add(0, level);
+		}
+		StringBuilder points = new StringBuilder();
+		for (ExecutableElement constructor : ElementFilter
+				.constructorsIn(type.getEnclosedElements())) {
+			List<String> annotations = managedAnnotationNames(constructor);
+			if (constructor.getModifiers().contains(Modifier.PUBLIC)
+					&& !annotations.isEmpty()) {
+				// The handler of the last annotation builds the instance
+				point(points, 'K', annotations.get(annotations.size() - 1),
+						type, "<init>", constructor);
+				break;
+			}
+		}
+		boolean inheritsMembers = false;
+		for (TypeElement level : hierarchy) {
+			int length = points.length();
+			for (VariableElement field : ElementFilter.fieldsIn(level
+					.getEnclosedElements())) {
+				for (String annotation : managedAnnotationNames(field)) {
+					point(points, 'F', annotation, level, field
+							.getSimpleName().toString(), null);
+				}
+			}
+			for (ExecutableElement method : ElementFilter.methodsIn(level
+					.getEnclosedElements())) {
+				if (isOverridden(method, level, type)) {
+					continue;
+				}
+				for (String annotation : managedAnnotationNames(method)) {
+					point(points, 'M', annotation, level, method
+							.getSimpleName().toString(), method);
+				}
+			}
+			inheritsMembers |= level != type && points.length() > length;
+		}
+		if (points.length() == 0) {
+			return null;
+		}
+
+		Set<String> contracts = new LinkedHashSet<String>();
+		contracts.add(binaryName(type));
+		for (TypeElement level : hierarchy) {
+			interfaces(level, contracts);
+		}
+		StringBuilder line = new StringBuilder(binaryName(type));
+		line.append(generated && !inheritsMembers ? " I" : " -");
+		String separator = " ";
+		for (String contract : contracts) {
+			line.append(separator).append(contract);
+			separator = ",";
+		}
+		return line.append(points).toString();
+	}
+
+	private void point(StringBuilder points, char kind, String annotation,
+			TypeElement declaring, String name, ExecutableElement parameters) {
+		points.append(' ').append(kind).append(':').append(annotation)
+				.append(':').append(binaryName(declaring)).append(':')
+				.append(name).append(':');
+		if (parameters != null) {
+			String separator = "";
+			for (VariableElement parameter : parameters.getParameters()) {
+				points.append(separator).append(runtimeName(parameter.asType()));
+				separator = ",";
+			}
+		}
+	}
+
+	/**
+	 * @return the superclass, null for Object
+	 */
+	private static TypeElement superclass(TypeElement type) {
+		TypeMirror superclass = type.getSuperclass();
+		if (superclass.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		TypeElement element = (TypeElement) ((DeclaredType) superclass)
+				.asElement();
+		return element.getQualifiedName().contentEquals(
+				Object.class.getName()) ? null : element;
+	}
+
+	/**
+	 * The interfaces of the JDK are left out, too common to name a single
+	 * component
+	 */
+	private void interfaces(TypeElement type, Set<String> contracts) {
+		for (TypeMirror implemented : type.getInterfaces()) {
+			TypeElement element = (TypeElement) ((DeclaredType) implemented)
+					.asElement();
+			String name = binaryName(element);
+			if (!name.startsWith("java.") && contracts.add(name)) {
+				interfaces(element, contracts);
+			}
+		}
+	}
+
+	/**
+	 * @return true when a subclass of the level, up to the type, overrides
+	 *         the method
+	 */
+	private boolean isOverridden(ExecutableElement method, TypeElement level,
+			TypeElement type) {
+		for (TypeElement subclass = type; subclass != level; subclass = superclass(subclass)) {
+			for (ExecutableElement candidate : ElementFilter
+					.methodsIn(subclass.getEnclosedElements())) {
+				if (processingEnv.getElementUtils().overrides(candidate,
+						method, type)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the binary names of the managed annotations, without @Named
+	 *         on an injected member where it qualifies the contract
+	 */
+	private List<String> managedAnnotationNames(Element element) {
+		List<String> names = new ArrayList<String>();
+		boolean injected = managedAnnotations(element).contains(INJECT);
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			String kind = kind(annotation);
+			if (kind != null && !(injected && kind.equals(NAMED))) {
+				names.add(binaryName(annotation.getAnnotationType()
+						.asElement()));
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * @return the name Class.forName reads, or the name of a primitive
+	 */
+	private String runtimeName(TypeMirror type) {
+		TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+		if (erased.getKind() == TypeKind.ARRAY) {
+			return descriptor(erased);
+		}
+		if (erased.getKind() == TypeKind.DECLARED) {
+			return binaryName(((DeclaredType) erased).asElement());
+		}
+		return erased.getKind().name().toLowerCase(Locale.ENGLISH);
+	}
+
+	private String descriptor(TypeMirror type) {
+		switch (type.getKind()) {
+		case ARRAY:
+			return "[" + descriptor(((ArrayType) type).getComponentType());
+		case DECLARED:
+			return "L" + binaryName(((DeclaredType) type).asElement()) + ";";
+		case BOOLEAN:
+			return "Z";
+		case LONG:
+			return "J";
+		default:
+			return type.getKind().name().substring(0, 1);
+		}
+	}
+
+	private void checkReachable(TypeElement type) throws UnsupportedException {
+		if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+			throw new UnsupportedException("abstract class");
+		}
+		Element element = type;
+		while (element.getKind().isClass() || element.getKind().isInterface()) {
+			if (element.getModifiers().contains(Modifier.PRIVATE)) {
+				throw new UnsupportedException("private class");
+			}
+			Element enclosing = element.getEnclosingElement();
+			if (enclosing.getKind().isClass()
+					&& !element.getModifiers().contains(Modifier.STATIC)) {
+				throw new UnsupportedException("inner class");
+			}
+			element = enclosing;
+		}
+	}
+
+	/**
+	 * The reflection only considers the public constructors: the annotated
+	 * one, or else the default one
+	 */
+	private String construct(TypeElement type,
+			List<ExecutableElement> constructors, Injector injector)
+			throws UnsupportedException {
+		ExecutableElement annotated = null;
+		ExecutableElement defaultConstructor = null;
+		for (ExecutableElement constructor : constructors) {
+			if (!constructor.getModifiers().contains(Modifier.PUBLIC)) {
+				continue;
+			}
+			List<String> annotations = managedAnnotations(constructor);
+			if (!annotations.isEmpty()) {
+				if (annotated != null) {
+					throw new UnsupportedException(
+							"several annotated constructors");
+				}
+				if (!annotations.equals(Collections.singletonList(INJECT))) {
+					throw new UnsupportedException(
+							"only @Inject applies to a constructor");
+				}
+				annotated = constructor;
+			} else if (constructor.getParameters().isEmpty()) {
+				defaultConstructor = constructor;
+			}
+		}
+
+		if (annotated != null) {
+			checkThrows(annotated);
+			injector.annotations.add(INJECT);
+			injector.injectionPoints++;
+			return "new " + rawName(type) + "("
+					+ arguments(annotated, injector) + ")";
+		}
+		if (defaultConstructor == null) {
+			throw new UnsupportedException("no public default constructor");
+		}
+		checkThrows(defaultConstructor);
+		return "new " + rawName(type) + "()";
+	}
+
+	private void inject(TypeElement type, VariableElement field,
+			Injector injector) throws UnsupportedException {
+		if (field.getModifiers().contains(Modifier.PRIVATE)
+				|| field.getModifiers().contains(Modifier.FINAL)) {
+			throw new UnsupportedException("private or final field "
+					+ field.getSimpleName());
+		}
+		List<String> kinds = managedAnnotations(field);
+		if (kinds.contains(INJECT) && kinds.contains(NAMED)) {
+			throw new UnsupportedException("named dependency "
+					+ field.getSimpleName());
+		}
+		String target = field.getModifiers().contains(Modifier.STATIC) ? rawName(type)
+				: "instance";
+		for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+			String kind = kind(annotation);
+			String value;
+			if (kind == null) {
+				continue;
+			} else if (kind.equals(INJECT)) {
+				value = dependency(field.asType(), injector);
+			} else if (kind.equals(NAMED)) {
+				value = constant(field.asType(), stringValue(annotation),
+						injector);
+			} else {
+				// The value of a custom annotation is bound under its name
+				value = constant(field.asType(),
+						binaryName(annotation.getAnnotationType().asElement()),
+						injector);
+			}
+			injector.annotations.add(annotationName(annotation, kind));
+			injector.injectionPoints++;
+			injector.statements.add(target + "." + field.getSimpleName()
+					+ " = " + value + ";");
+		}
+	}
+
+	private void inject(TypeElement type, ExecutableElement method,
+			Injector injector) throws UnsupportedException {
+		if (method.getModifiers().contains(Modifier.PRIVATE)) {
+			throw new UnsupportedException("private method "
+					+ method.getSimpleName());
+		}
+		checkThrows(method);
+		String target = method.getModifiers().contains(Modifier.STATIC) ? rawName(type)
+				: "instance";
+		for (AnnotationMirror annotation : method.getAnnotationMirrors()) {
+			String kind = kind(annotation);
+			if (kind == null) {
+				continue;
+			} else if (!kind.equals(INJECT)) {
+				throw new UnsupportedException(
+						"only @Inject applies to a method");
+			}
+			injector.annotations.add(INJECT);
+			injector.injectionPoints++;
+			injector.statements.add(target + "." + method.getSimpleName()
+					+ "(" + arguments(method, injector) + ");");
+		}
+	}
+
+	private String arguments(ExecutableElement executable, Injector injector)
+			throws UnsupportedException {
+		StringBuilder arguments = new StringBuilder();
+		for (VariableElement parameter : executable.getParameters()) {
+			if (managedAnnotations(parameter).contains(NAMED)) {
+				throw new UnsupportedException("named dependency "
+						+ parameter.getSimpleName());
+			}
+			if (arguments.length() > 0) {
+				arguments.append(", ");
+			}
+			arguments.append(dependency(parameter.asType(), injector));
+		}
+		return arguments.toString();
+	}
+
+	private String dependency(TypeMirror type, Injector injector)
+			throws UnsupportedException {
+		if (type.getKind() != TypeKind.DECLARED
+				&& type.getKind() != TypeKind.ARRAY) {
+			throw new UnsupportedException("cannot resolve " + type);
+		}
+		// Bound by its key, a class literal would resolve the raw type
+		if (type.getKind() == TypeKind.DECLARED
+				&& !((DeclaredType) type).getTypeArguments().isEmpty()) {
+			throw new UnsupportedException("parameterized dependency " + type);
+		}
+		String contract = typeName(processingEnv.getTypeUtils().erasure(type));
+		if (DEFERRED.contains(contract)) {
+			throw new UnsupportedException("Provider and Lazy injection");
+		}
+		injector.dependencies.add(contract + ".class");
+		return "container.<" + typeName(type) + "> getInstance(" + contract
+				+ ".class)";
+	}
+
+	private String constant(TypeMirror type, String name, Injector injector)
+			throws UnsupportedException {
+		String literal = processingEnv.getElementUtils()
+				.getConstantExpression(name);
+		injector.constants.add(literal);
+
+		String cast;
+		if (type.getKind().isPrimitive()) {
+			cast = processingEnv.getTypeUtils()
+					.boxedClass((PrimitiveType) type).getQualifiedName()
+					.toString();
+		} else if (type.getKind() == TypeKind.DECLARED
+				|| type.getKind() == TypeKind.ARRAY) {
+			cast = typeName(type);
+		} else {
+			throw new UnsupportedException("cannot cast a constant to " + type);
+		}
+		// Checked and widened by the slot of the reflection path
+		String slot = "SLOTS[" + injector.slots.size() + "]";
+		injector.slots.add(SLOT + ".of("
+				+ typeName(processingEnv.getTypeUtils().erasure(type))
+				+ ".class)");
+		return "(" + cast + ") " + slot + ".convert(" + literal
+				+ ", container.getConstant(" + literal + "))";
+	}
+
+	private void checkThrows(ExecutableElement executable)
+			throws UnsupportedException {
+		TypeMirror runtime = processingEnv.getElementUtils()
+				.getTypeElement(RuntimeException.class.getName()).asType();
+		TypeMirror error = processingEnv.getElementUtils()
+				.getTypeElement(Error.class.getName()).asType();
+		for (TypeMirror thrown : executable.getThrownTypes()) {
+			if (!processingEnv.getTypeUtils().isAssignable(thrown, runtime)
+					&& !processingEnv.getTypeUtils().isAssignable(thrown, error)) {
+				throw new UnsupportedException(executable + " throws "
+						+ thrown);
+			}
+		}
+	}
+
+	private List<String> managedAnnotations(Element element) {
+		List<String> managed = new ArrayList<String>();
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			String kind = kind(annotation);
+			if (kind != null) {
+				managed.add(kind);
+			}
+		}
+		return managed;
+	}
+
+	/**
+	 * @return INJECT, NAMED, ANNOTATION_INJECTION for a custom annotation, or
+	 *         null when the annotation is not managed
+	 */
+	private String kind(AnnotationMirror annotation) {
+		Element type = annotation.getAnnotationType().asElement();
+		String name = ((TypeElement) type).getQualifiedName().toString();
+		if (name.equals(INJECT) || name.equals(NAMED)) {
+			return name;
+		}
+		for (AnnotationMirror meta : type.getAnnotationMirrors()) {
+			if (((TypeElement) meta.getAnnotationType().asElement())
+					.getQualifiedName().contentEquals(ANNOTATION_INJECTION)) {
+				return ANNOTATION_INJECTION;
+			}
+		}
+		return null;
+	}
+
+	private String annotationName(AnnotationMirror annotation, String kind) {
+		if (kind.equals(ANNOTATION_INJECTION)) {
+			return typeName(annotation.getAnnotationType());
+		}
+		return kind;
+	}
+
+	private static String stringValue(AnnotationMirror annotation) {
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation
+				.getElementValues().entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals("value")) {
+				return (String) entry.getValue().getValue();
+			}
+		}
+		return "";
+	}
+
+	private String binaryName(Element type) {
+		return processingEnv.getElementUtils()
+				.getBinaryName((TypeElement) type).toString();
+	}
+
+	private static String typeName(TypeMirror type) {
+		return type.toString();
+	}
+
+	private String rawName(TypeElement type) {
+		return typeName(processingEnv.getTypeUtils().erasure(type.asType()));
+	}
+
+	private void write(TypeElement type, Injector injector) throws IOException {
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+		String binaryName = binaryName(type);
+		String simpleName = (pkg.isUnnamed() ? binaryName : binaryName
+				.substring(pkg.getQualifiedName().length() + 1)) + SUFFIX;
+		String raw = rawName(type);
+
+		Writer writer = processingEnv.getFiler()
+				.createSourceFile(binaryName + SUFFIX, type).openWriter();
+		try {
+			if (!pkg.isUnnamed()) {
+				writer.write("package " + pkg.getQualifiedName() + ";\n\n");
+			}
+			writer.write("/**\n * Generated by " + getClass().getName()
+					+ " from " + type.getQualifiedName() + "\n */\n");
+			writer.write("public final class " + simpleName + " implements "
+					+ INJECTOR + "<" + raw + "> {\n\n");
+			writer.write("\tprivate static final Class<?>[] DEPENDENCIES = { "
+					+ join(injector.dependencies) + " };\n\n");
+			writer.write("\tprivate static final String[] CONSTANTS = { "
+					+ join(injector.constants) + " };\n\n");
+			writer.write("\tprivate static final Class<?>[] ANNOTATIONS = { "
+					+ join(classLiterals(injector.annotations)) + " };\n\n");
+			writer.write("\tprivate static final " + SLOT + "[] SLOTS = { "
+					+ join(injector.slots) + " };\n\n");
+			writer.write("\t@SuppressWarnings({ \"unchecked\", \"rawtypes\" })\n");
+			writer.write("\tpublic " + raw + " newInstance(" + CONTAINER
+					+ " container) {\n");
+			for (String statement : injector.statements) {
+				writer.write("\t\t" + statement + "\n");
+			}
+			writer.write("\t\treturn instance;\n\t}\n\n");
+			writer.write("\tpublic Class<?>[] getDependencies() {\n"
+					+ "\t\treturn DEPENDENCIES.clone();\n\t}\n\n");
+			writer.write("\tpublic String[] getConstants() {\n"
+					+ "\t\treturn CONSTANTS.clone();\n\t}\n\n");
+			writer.write("\tpublic Class<?>[] getAnnotations() {\n"
+					+ "\t\treturn ANNOTATIONS.clone();\n\t}\n\n");
+			writer.write("\tpublic int getInjectionPointCount() {\n"
+					+ "\t\treturn " + injector.injectionPoints + ";\n\t}\n");
+			writer.write("}\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+	private void writeIndex() {
+		try {
+			FileObject resource = processingEnv.getFiler().createResource(
+					StandardLocation.CLASS_OUTPUT, "", INDEX);
+			Writer writer = resource.openWriter();
+			try {
+				writer.write("# Generated by " + getClass().getName() + "\n");
+				for (String component : components) {
+					writer.write(component + "\n");
+				}
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Kind.ERROR,
+					"Cannot write the component index: " + e);
+		}
+	}
+
+	private static Set<String> classLiterals(Set<String> names) {
+		Set<String> literals = new LinkedHashSet<String>();
+		for (String name : names) {
+			literals.add(name + ".class");
+		}
+		return literals;
+	}
+
+	private static String join(Collection<String> values) {
+		StringBuilder joined = new StringBuilder();
+		for (String value : values) {
+			if (joined.length() > 0) {
+				joined.append(", ");
+			}
+			joined.append(value);
+		}
+		return joined.toString();
+	}
+
+	/**
+	 * The generated code of a class, filled while the class is analyzed
+	 */
+	private static final class Injector {
+
+		final List<String> statements = new ArrayList<String>();
+
+		final Set<String> dependencies = new LinkedHashSet<String>();
+
+		final Set<String> constants = new LinkedHashSet<String>();
+
+		final Set<String> annotations = new LinkedHashSet<String>();
+
+		// One per constant injection point, in the order of the statements
+		final List<String> slots = new ArrayList<String>();
+
+		int injectionPoints;
+	}
+
+	private static final class UnsupportedException extends Exception {
+
+		private static final long serialVersionUID = 1L;
+
+		UnsupportedException(String message) {
+			super(message);
+		}
+	}
+}
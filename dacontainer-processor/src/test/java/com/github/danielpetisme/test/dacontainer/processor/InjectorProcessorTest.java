@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.Injector;
+import com.github.danielpetisme.dacontainer.processor.InjectorProcessor;
+
+public class InjectorProcessorTest {
+
+	private static final String GARAGE = "package garage;\n"
+			+ "import java.lang.annotation.*;\n"
+			+ "import com.github.danielpetisme.dacontainer.Provider;\n"
+			+ "import com.github.danielpetisme.dacontainer.annotations.*;\n"
+			+ "public class Garage {\n"
+			+ "  @AnnotationInjection @Target(ElementType.FIELD)\n"
+			+ "  @Retention(RetentionPolicy.RUNTIME)\n"
+			+ "  public @interface Port {}\n"
+			+ "  public static class Engine {}\n"
+			+ "  public interface Vehicle {}\n"
+			+ "  public static class Car implements Vehicle {\n"
+			+ "    public final Engine main;\n"
+			+ "    @Inject public Engine engine;\n"
+			+ "    @Named(\"car.wheels\") public int wheels;\n"
+			+ "    @Port public String port;\n"
+			+ "    public Engine spare;\n"
+			+ "    @Inject public Car(Engine main) { this.main = main; }\n"
+			+ "    @Inject void setSpare(Engine spare) { this.spare = spare; }\n"
+			+ "  }\n"
+			+ "  public static class Secret { @Inject private Engine engine; }\n"
+			+ "  public static class Deferred { @Inject Provider<Engine> engine; }\n"
+			+ "  public static class Generic { @Inject java.util.List<Engine> engines; }\n"
+			+ "  public static class Qualified { @Inject @Named(\"spare\") Engine engine; }\n"
+			+ "  public static class Odometer {\n"
+			+ "    @Named(\"odometer.km\") public long km;\n"
+			+ "    @Named(\"odometer.trips\") public int trips;\n"
+			+ "  }\n"
+			+ "}\n";
+
+	private File directory;
+
+	private ClassLoader loader;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = File.createTempFile("processor", "");
+		directory.delete();
+		directory.mkdirs();
+		loader = compile("garage/Garage.java", GARAGE);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		delete(directory);
+	}
+
+	@Test
+	public void testGeneratedInjector() throws Exception {
+		Class<?> injectorClass = loader
+				.loadClass("garage.Garage$Car$$DaInjector");
+		Injector<?> injector = (Injector<?>) injectorClass.newInstance();
+
+		assertThat(injector.getInjectionPointCount(), is(5));
+		assertThat(Arrays.asList(injector.getConstants()),
+				is(Arrays.asList("car.wheels", "garage.Garage$Port")));
+		assertThat(Arrays.asList(injector.getDependencies()),
+				is(Arrays.<Class<?>> asList(loader
+						.loadClass("garage.Garage$Engine"))));
+	}
+
+	@Test
+	public void testContainerUsesInjector() throws Exception {
+		Class<?> engine = loader.loadClass("garage.Garage$Engine");
+		Class<?> car = loader.loadClass("garage.Garage$Car");
+		@SuppressWarnings("unchecked")
+		Class<? extends java.lang.annotation.Annotation> port = (Class<? extends java.lang.annotation.Annotation>) loader
+				.loadClass("garage.Garage$Port");
+
+		DaContainer container = new DaContainerImpl();
+		container.bind(engine);
+		container.bind(car);
+		container.bindConstant("car.wheels", 4);
+		container.bindAnnotation(port, "8080");
+		assertTrue(container.validate().isEmpty());
+
+		Object instance = container.getInstance(car);
+		for (String field : new String[] { "main", "engine", "spare" }) {
+			assertTrue(engine.isInstance(car.getField(field).get(instance)));
+		}
+		assertThat(car.getField("wheels").get(instance), is((Object) 4));
+		assertThat(car.getField("port").get(instance), is((Object) "8080"));
+	}
+
+	@Test
+	public void testWidenedConstant() throws Exception {
+		Class<?> odometer = loader.loadClass("garage.Garage$Odometer");
+		loader.loadClass("garage.Garage$Odometer$$DaInjector");
+
+		DaContainer container = new DaContainerImpl();
+		container.bind(odometer);
+		container.bindConstant("odometer.km", 120000);
+		container.bindConstant("odometer.trips", (short) 12);
+
+		Object instance = container.getInstance(odometer);
+		assertThat(odometer.getField("km").get(instance), is((Object) 120000L));
+		assertThat(odometer.getField("trips").get(instance), is((Object) 12));
+	}
+
+	@Test
+	public void testWidenedCharConstant() throws Exception {
+		Class<?> odometer = loader.loadClass("garage.Garage$Odometer");
+		loader.loadClass("garage.Garage$Odometer$$DaInjector");
+
+		DaContainer container = new DaContainerImpl();
+		container.bind(odometer);
+		container.bindConstant("odometer.km", 'A');
+		container.bindConstant("odometer.trips", 'B');
+
+		Object instance = container.getInstance(odometer);
+		assertThat(odometer.getField("km").get(instance), is((Object) 65L));
+		assertThat(odometer.getField("trips").get(instance), is((Object) 66));
+	}
+
+	@Test
+	public void testNarrowedConstant() throws Exception {
+		Class<?> odometer = loader.loadClass("garage.Garage$Odometer");
+		loader.loadClass("garage.Garage$Odometer$$DaInjector");
+
+		for (Object trips : new Object[] { 70000L, 2.9d }) {
+			DaContainer container = new DaContainerImpl();
+			container.bind(odometer);
+			container.bindConstant("odometer.km", 0L);
+			container.bindConstant("odometer.trips", trips);
+
+			try {
+				container.getInstance(odometer);
+				throw new AssertionError(trips + " was narrowed");
+			} catch (IllegalArgumentException e) {
+				// Rejected as by the reflection path
+			}
+		}
+	}
+
+	@Test
+	public void testReflectionFallback() throws Exception {
+		for (String name : new String[] { "Secret", "Deferred", "Generic",
+				"Qualified" }) {
+			try {
+				loader.loadClass("garage.Garage$" + name + "$$DaInjector");
+				throw new AssertionError(name + " has an injector");
+			} catch (ClassNotFoundException e) {
+				// Injected by reflection
+			}
+		}
+	}
+
+	@Test
+	public void testComponentIndex() throws Exception {
+		String inject = "com.github.danielpetisme.dacontainer.annotations.Inject";
+		String named = "com.github.danielpetisme.dacontainer.annotations.Named";
+		assertThat(component("garage.Garage$Car"),
+				is("garage.Garage$Car I garage.Garage$Car,garage.Garage$Vehicle"
+						+ " K:" + inject + ":garage.Garage$Car:<init>:garage.Garage$Engine"
+						+ " F:" + inject + ":garage.Garage$Car:engine:"
+						+ " F:" + named + ":garage.Garage$Car:wheels:"
+						+ " F:garage.Garage$Port:garage.Garage$Car:port:"
+						+ " M:" + inject + ":garage.Garage$Car:setSpare:garage.Garage$Engine"));
+		assertThat(component("garage.Garage$Qualified"),
+				is("garage.Garage$Qualified - garage.Garage$Qualified"
+						+ " F:" + inject + ":garage.Garage$Qualified:engine:"));
+		assertThat(component("garage.Garage$Engine"), is((String) null));
+	}
+
+	@Test
+	public void testContainerAutoBinds() throws Exception {
+		Class<?> engine = loader.loadClass("garage.Garage$Engine");
+		Class<?> car = loader.loadClass("garage.Garage$Car");
+		@SuppressWarnings("unchecked")
+		Class<? extends java.lang.annotation.Annotation> port = (Class<? extends java.lang.annotation.Annotation>) loader
+				.loadClass("garage.Garage$Port");
+
+		DaContainer container = new DaContainerImpl();
+		container.autoBind(loader);
+		container.bind(engine);
+		container.bindConstant("car.wheels", 4);
+		container.bindAnnotation(port, "8080");
+
+		Object instance = container.getInstance(loader
+				.loadClass("garage.Garage$Vehicle"));
+		assertTrue(car.isInstance(instance));
+		assertTrue(engine.isInstance(car.getField("spare").get(instance)));
+		assertThat(car.getField("port").get(instance), is((Object) "8080"));
+	}
+
+	/**
+	 * @return the line of the class in the index, or null
+	 */
+	private String component(String name) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(new File(
+				directory, "META-INF/dacontainer/components")));
+		try {
+			for (String line = reader.readLine(); line != null; line = reader
+					.readLine()) {
+				if (line.startsWith(name + " ")) {
+					return line;
+				}
+			}
+			return null;
+		} finally {
+			reader.close();
+		}
+	}
+
+	private ClassLoader compile(String path, String source) throws IOException {
+		File file = new File(directory, path);
+		file.getParentFile().mkdirs();
+		Writer writer = new FileWriter(file);
+		try {
+			writer.write(source);
+		} finally {
+			writer.close();
+		}
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		StandardJavaFileManager files = compiler.getStandardFileManager(null,
+				null, null);
+		try {
+			CompilationTask task = compiler.getTask(null, files, null, Arrays
+					.asList("-d", directory.getPath(), "-s",
+							directory.getPath(), "-classpath",
+							System.getProperty("java.class.path")), null,
+					files.getJavaFileObjects(file));
+			task.setProcessors(Collections
+					.singletonList(new InjectorProcessor()));
+			assertTrue("Compilation failed", task.call());
+		} finally {
+			files.close();
+		}
+		return new URLClassLoader(new URL[] { directory.toURI().toURL() },
+				getClass().getClassLoader());
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.benchmark.dacontainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+import com.github.danielpetisme.dacontainer.annotations.Named;
+
+/**
+ * Time to create a batch of workers, with
+ * {@link DaContainer#getInstances(Class, int)} against a loop of
+ * {@link DaContainer#getInstance(Class)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean frozen;
+
+	@Param({ "100", "10000" })
+	public int count;
+
+	private DaContainer container;
+
+	@Setup
+	public void setUp() {
+		container = new DaContainerImpl();
+		container.bind(Queue.class, Queue.class, Scopes.SINGLETON);
+		container.bindConstant("worker.batch", 64);
+		container.bind(Worker.class);
+		if (frozen) {
+			container.freeze();
+		}
+	}
+
+	@Benchmark
+	public List<Worker> looped() {
+		List<Worker> workers = new ArrayList<Worker>(count);
+		for (int i = 0; i < count; i++) {
+			Worker worker = container.getInstance(Worker.class);
+			workers.add(worker);
+		}
+		return workers;
+	}
+
+	@Benchmark
+	public List<Worker> batched() {
+		return container.getInstances(Worker.class, count);
+	}
+
+	public static class Queue {
+	}
+
+	public static class Worker {
+
+		@Inject
+		Queue queue;
+
+		@Named("worker.batch")
+		int batch;
+	}
+}
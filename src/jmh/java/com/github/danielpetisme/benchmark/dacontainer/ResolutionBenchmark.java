@@ -0,0 +1,241 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.benchmark.dacontainer;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.annotations.AnnotationInjection;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+import com.github.danielpetisme.dacontainer.annotations.Named;
+
+/**
+ * Throughput of {@link DaContainer#getInstance(Class)} on each kind of
+ * injection. The benchmark profile adds the gc profiler, which reports the
+ * allocation rate (gc.alloc.rate.norm is the number of bytes per resolution).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolutionBenchmark {
+
+	private static final Class<?>[] DEPTHS = { Depth1.class, Depth2.class,
+			Depth3.class, Depth4.class, Depth5.class, Depth6.class,
+			Depth7.class, Depth8.class, Depth9.class, Depth10.class };
+
+	@Param({ "false", "true" })
+	public boolean frozen;
+
+	private DaContainer container;
+
+	@Setup
+	public void setUp() {
+		container = new DaContainerImpl();
+		container.bind(NoArg.class);
+		for (Class<?> clazz : DEPTHS) {
+			container.bind(clazz);
+		}
+		container.bind(FieldInjected.class);
+		container.bind(MethodInjected.class);
+		container.bindConstant("benchmark.name", "dacontainer");
+		container.bind(NamedInjected.class);
+		container.bindAnnotation(Port.class, "8080");
+		container.bind(AnnotationInjected.class);
+		if (frozen) {
+			container.freeze();
+		}
+	}
+
+	@Benchmark
+	public Object noArg() {
+		return container.getInstance(NoArg.class);
+	}
+
+	@Benchmark
+	public Object constructorInjection(ConstructorChain chain) {
+		return container.getInstance(chain.root);
+	}
+
+	@Benchmark
+	public Object fieldInjection() {
+		return container.getInstance(FieldInjected.class);
+	}
+
+	@Benchmark
+	public Object methodInjection() {
+		return container.getInstance(MethodInjected.class);
+	}
+
+	@Benchmark
+	public Object namedInjection() {
+		return container.getInstance(NamedInjected.class);
+	}
+
+	@Benchmark
+	public Object annotationInjection() {
+		return container.getInstance(AnnotationInjected.class);
+	}
+
+	/**
+	 * Only the constructor injection depends on the depth of the chain
+	 */
+	@State(Scope.Benchmark)
+	public static class ConstructorChain {
+
+		@Param({ "1", "5", "10" })
+		public int depth;
+
+		private Class<?> root;
+
+		@Setup
+		public void setUp() {
+			root = DEPTHS[depth - 1];
+		}
+	}
+
+	public static class NoArg {
+	}
+
+	public static class Depth1 {
+
+		@Inject
+		public Depth1(NoArg leaf) {
+		}
+	}
+
+	public static class Depth2 {
+
+		@Inject
+		public Depth2(Depth1 parent) {
+		}
+	}
+
+	public static class Depth3 {
+
+		@Inject
+		public Depth3(Depth2 parent) {
+		}
+	}
+
+	public static class Depth4 {
+
+		@Inject
+		public Depth4(Depth3 parent) {
+		}
+	}
+
+	public static class Depth5 {
+
+		@Inject
+		public Depth5(Depth4 parent) {
+		}
+	}
+
+	public static class Depth6 {
+
+		@Inject
+		public Depth6(Depth5 parent) {
+		}
+	}
+
+	public static class Depth7 {
+
+		@Inject
+		public Depth7(Depth6 parent) {
+		}
+	}
+
+	public static class Depth8 {
+
+		@Inject
+		public Depth8(Depth7 parent) {
+		}
+	}
+
+	public static class Depth9 {
+
+		@Inject
+		public Depth9(Depth8 parent) {
+		}
+	}
+
+	public static class Depth10 {
+
+		@Inject
+		public Depth10(Depth9 parent) {
+		}
+	}
+
+	public static class FieldInjected {
+
+		@Inject
+		NoArg first;
+
+		@Inject
+		NoArg second;
+	}
+
+	public static class MethodInjected {
+
+		NoArg first;
+
+		NoArg second;
+
+		@Inject
+		public void setDependencies(NoArg first, NoArg second) {
+			this.first = first;
+			this.second = second;
+		}
+	}
+
+	public static class NamedInjected {
+
+		@Named("benchmark.name")
+		String name;
+	}
+
+	@AnnotationInjection
+	@Target(value = ElementType.FIELD)
+	@Retention(RetentionPolicy.RUNTIME)
+	public static @interface Port {
+	}
+
+	public static class AnnotationInjected {
+
+		@Port
+		String port;
+	}
+}
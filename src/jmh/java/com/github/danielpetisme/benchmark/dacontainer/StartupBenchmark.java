@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.benchmark.dacontainer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+import com.github.danielpetisme.dacontainer.annotations.Named;
+
+/**
+ * Time from an empty container to the first resolution, configuring and
+ * freezing the container against restoring it from a snapshot. The classes
+ * are loaded by the setup in both cases, what is measured is the scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 50)
+@Fork(5)
+public class StartupBenchmark {
+
+	private File snapshot;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		snapshot = File.createTempFile("dacontainer", ".snapshot");
+		DaContainer container = configure();
+		container.freeze();
+		container.snapshot(snapshot);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		snapshot.delete();
+	}
+
+	@Benchmark
+	public Object configured() {
+		DaContainer container = configure();
+		container.freeze();
+		return container.getInstance(Service.class);
+	}
+
+	@Benchmark
+	public Object restored() throws IOException {
+		DaContainer container = DaContainerImpl.restore(snapshot);
+		return container.getInstance(Service.class);
+	}
+
+	private static DaContainer configure() {
+		DaContainer container = new DaContainerImpl();
+		container.bind(Repository.class, Repository.class, Scopes.SINGLETON);
+		container.bind(Cache.class, Cache.class, Scopes.SINGLETON);
+		container.bind(Service.class);
+		container.bindConstant("service.timeout", 30);
+		container.bindConstant("service.name", "orders");
+		return container;
+	}
+
+	public static class Cache {
+	}
+
+	public static class Repository {
+
+		@Inject
+		Cache cache;
+	}
+
+	public static class Service {
+
+		final Repository repository;
+
+		@Inject
+		Cache cache;
+
+		@Named("service.timeout")
+		int timeout;
+
+		@Named("service.name")
+		String name;
+
+		@Inject
+		public Service(Repository repository) {
+			this.repository = repository;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer;
+
+import java.util.Set;
+
+/**
+ * Notified when {@link DaContainer#updateConstants(java.util.Map)} changes
+ * the value of constants. A listener registered on the container hears of
+ * every change. A singleton implementing it hears of the constants it reads,
+ * once its fields have been injected again.
+ */
+public interface ConstantListener {
+
+	/**
+	 * @param names
+	 *            the constants whose value changed
+	 */
+	public void constantsChanged(Set<String> names);
+}
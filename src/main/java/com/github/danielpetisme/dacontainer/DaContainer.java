@@ -15,7 +15,15 @@
  */
 package com.github.danielpetisme.dacontainer;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import com.google.common.util.concurrent.ListenableFuture;
 
 public interface DaContainer {
 
@@ -37,6 +45,32 @@ public interface DaContainer {
 
 	public void bind(Class<?> clazz);
 
+	/**
+	 * Bind an a Class (an implementation) with its contract (an interface)
+	 * in a scope
+	 * 
+	 * @param contract
+	 *            minimal set of operations the implementation must have
+	 * @param clazz
+	 *            the implementation
+	 * @param scope
+	 *            when instances are reused, see {@link Scopes}
+	 */
+	public void bind(Class<?> contract, Class<?> clazz, Scope scope);
+
+	/**
+	 * Bind an implementation to a generic or named contract, in a scope. Use
+	 * {@link Scopes#NO_SCOPE} for a new instance on each resolution.
+	 * 
+	 * @param key
+	 *            the type and the name of the contract, see {@link Key}
+	 * @param clazz
+	 *            the implementation
+	 * @param scope
+	 *            when instances are reused, see {@link Scopes}
+	 */
+	public void bind(Key<?> key, Class<?> clazz, Scope scope);
+
 	/**
 	 * Retrieve an instance for the given contract
 	 * 
@@ -46,10 +80,195 @@ public interface DaContainer {
 	 */
 	public <T> T getInstance(Class<?> contract);
 
+	/**
+	 * Retrieve an instance for the given key. A parameterized type which is
+	 * not bound falls back on the binding of its raw type.
+	 * 
+	 * @param key
+	 *            the type and the name of the contract
+	 * @return the instance
+	 */
+	public <T> T getInstance(Key<T> key);
+
+	/**
+	 * Retrieve several instances for the given contract, its binding and its
+	 * injection plan being resolved once for the whole batch
+	 * 
+	 * @param contract
+	 *            the needed operations
+	 * @param count
+	 *            the number of instances
+	 * @return count new instances, or the instances of the scope of the
+	 *         contract
+	 */
+	public <T> List<T> getInstances(Class<?> contract, int count);
+
+	/**
+	 * Retrieve an instance for the given contract without blocking. The
+	 * dependencies built for an unscoped instance, and the singletons, are
+	 * resolved concurrently instead of one after the other. They run on a
+	 * virtual thread each when the JVM has them, else on a shared pool of
+	 * daemon threads.
+	 * 
+	 * @param contract
+	 *            the needed operations
+	 * @return the instance, or the failure of its resolution
+	 */
+	public <T> ListenableFuture<T> getInstanceAsync(Class<T> contract);
+
+	/**
+	 * Same as {@link #getInstanceAsync(Class)}, on the given executor
+	 * 
+	 * @param key
+	 *            the needed contract
+	 * @param executor
+	 *            where the instances are built
+	 */
+	public <T> ListenableFuture<T> getInstanceAsync(Key<T> key,
+			Executor executor);
+
 	public void bindConstant(String constantName, Object constantValue);
 
 	public Object getConstant(String constantName);
 
+	/**
+	 * Bind several constants at once, also once the container is frozen, to
+	 * reload a configuration without pausing the resolutions. The constants
+	 * are published as a new immutable snapshot: a resolution reads all the
+	 * updates or none of them. The plans linked by freeze are linked again
+	 * first, so a value a field cannot hold rejects the whole update.
+	 * 
+	 * Once the update is published, the fields and the setters of the built
+	 * singletons of this container reading a changed constant are injected
+	 * again, in place and outside of the container lock: declare the fields
+	 * volatile to see the new value at once from the other threads. A
+	 * singleton failing to be injected again is logged, the other ones and
+	 * the listeners are still called. A singleton built by a generated
+	 * injector is only notified. The instances of the other scopes, the
+	 * THREAD and pooled ones included, keep the values they were built with
+	 * and are not notified. The children keep the values they linked.
+	 * 
+	 * @param constants
+	 *            the new values by constant name
+	 * @see ConstantListener
+	 */
+	public void updateConstants(Map<String, ?> constants);
+
+	/**
+	 * @param listener
+	 *            called after each update changing a constant, on the
+	 *            updating thread
+	 */
+	public void addConstantListener(ConstantListener listener);
+
+	public void removeConstantListener(ConstantListener listener);
+
 	public void bindAnnotation(Class<? extends Annotation> annotation,
 			String value);
+
+	/**
+	 * Create a child overlaying its own bindings, constants and annotations
+	 * on this container. Nothing is copied: what the child does not bind is
+	 * looked up in this container. The scoped instances of this container,
+	 * the singletons for instance, are shared with the child. Its unscoped
+	 * bindings are built by the child, with the overrides of the child.
+	 * 
+	 * @return a new child, cheap enough to be created per request
+	 */
+	public DaContainer createChild();
+
+	/**
+	 * Write the bindings, the constants, the annotations and the injection
+	 * plans of a frozen container, to restore it in another process without
+	 * scanning the classes again. The constants must be strings or boxed
+	 * primitives, and the scopes {@link Scopes#NO_SCOPE},
+	 * {@link Scopes#SINGLETON} or {@link Scopes#THREAD}. A
+	 * {@link PooledScope} is not supported: its pools and its reset are not
+	 * written, so a binding using one is rejected before the file is created.
+	 * 
+	 * @param file
+	 *            the snapshot to write
+	 * @see DaContainerImpl#restore(File)
+	 */
+	public void snapshot(File file) throws IOException;
+
+	/**
+	 * Bind the components listed by the index resources of the context class
+	 * loader, written at build time by dacontainer-processor. Nothing is
+	 * loaded until a contract is looked up: the single component implementing
+	 * it is then bound, unscoped. The bindings of the container win over the
+	 * index, and a contract implemented by several components is not bound.
+	 * Validating or freezing the container binds all the components.
+	 */
+	public void autoBind() throws IOException;
+
+	/**
+	 * Same as {@link #autoBind()}, reading the index resources and the
+	 * classes from the given class loader
+	 * 
+	 * @param loader
+	 *            where the components are listed
+	 */
+	public void autoBind(ClassLoader loader) throws IOException;
+
+	/**
+	 * Select how constructors, fields and methods are called. The default is
+	 * {@link InjectionBackend#REFLECTION}
+	 * 
+	 * @param backend
+	 *            the backend used for the classes resolved from now on
+	 */
+	public void setInjectionBackend(InjectionBackend backend);
+
+	/**
+	 * Observe the resolutions. The default is {@link Instrumentations#NONE}.
+	 * The compiled resolutions of a frozen container report their
+	 * constructions in place, so the container resolves the same way with or
+	 * without instrumentation. A resolution of a scoped contract also reports
+	 * whether its scope held an instance.
+	 * 
+	 * @param instrumentation
+	 *            notified of the resolutions from now on
+	 */
+	public void setInstrumentation(Instrumentation instrumentation);
+
+	/**
+	 * Walk the constructor, field and method injection points of every
+	 * binding
+	 * 
+	 * @return the missing bindings, missing constants and cycles found, empty
+	 *         when the container is valid
+	 */
+	public List<String> validate();
+
+	/**
+	 * Validate the container then switch it to read only. The injection
+	 * points are linked to the providers and constants they need, so the
+	 * resolutions no longer look them up.
+	 * 
+	 * @throws IllegalStateException
+	 *             listing every problem when the container is not valid
+	 */
+	public void freeze();
+
+	/**
+	 * Same as {@link #bootstrap(Executor)} on a {@link ForkJoinPool} sized to
+	 * the processors, shut down at the end
+	 */
+	public void bootstrap();
+
+	/**
+	 * Build every {@link Scopes#SINGLETON} binding before the first request.
+	 * The graph of the singletons is sorted from the constructor, field and
+	 * method injection points. A singleton is built once the singletons it
+	 * depends on are built, the independent ones in parallel.
+	 * 
+	 * @param executor
+	 *            where the singletons are built, a ForkJoinPool or an
+	 *            executor of virtual threads for example
+	 * @throws IllegalStateException
+	 *             listing every singleton that failed, was skipped because a
+	 *             dependency failed or is part of a cycle
+	 */
+	public void bootstrap(Executor executor);
 }
@@ -15,33 +15,69 @@
  */
 package com.github.danielpetisme.dacontainer;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
-import java.lang.annotation.ElementType;
-import java.lang.annotation.Target;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.github.danielpetisme.dacontainer.annotations.AnnotationInjection;
 import com.github.danielpetisme.dacontainer.annotations.Inject;
 import com.github.danielpetisme.dacontainer.annotations.Named;
+import com.github.danielpetisme.dacontainer.annotations.PreDestroy;
 import com.github.danielpetisme.dacontainer.annotations.internal.AnnotationInjectionImpl;
 import com.github.danielpetisme.dacontainer.annotations.internal.DaAnnotation;
 import com.github.danielpetisme.dacontainer.annotations.internal.InjectImpl;
 import com.github.danielpetisme.dacontainer.annotations.internal.NamedImpl;
+import com.github.danielpetisme.dacontainer.internal.AsyncExecutors;
+import com.github.danielpetisme.dacontainer.internal.Binding;
+import com.github.danielpetisme.dacontainer.internal.ComponentIndex;
+import com.github.danielpetisme.dacontainer.internal.Dependency;
+import com.github.danielpetisme.dacontainer.internal.InjectionPlan;
+import com.github.danielpetisme.dacontainer.internal.InjectionPoint;
+import com.github.danielpetisme.dacontainer.internal.Invoker;
+import com.github.danielpetisme.dacontainer.internal.InvokerFactory;
+import com.github.danielpetisme.dacontainer.internal.MemberReference;
+import com.github.danielpetisme.dacontainer.internal.ResolutionPath;
+import com.github.danielpetisme.dacontainer.internal.ResolutionProgram;
+import com.github.danielpetisme.dacontainer.internal.SingletonBootstrap;
+import com.github.danielpetisme.dacontainer.internal.Snapshot;
+import com.github.danielpetisme.dacontainer.internal.SnapshotWriter;
 import com.google.common.base.Predicate;
-import com.googlecode.functionalcollections.Block;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ValueFuture;
 import com.googlecode.functionalcollections.FunctionalIterables;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 public class DaContainerImpl implements DaContainer {
 
@@ -49,37 +85,111 @@ public class DaContainerImpl implements DaContainer {
 
 	private final static Logger LOG = Logger.getLogger(TAG);
 
-	public static DaContainer INSTANCE = new DaContainerImpl();
+	// The PreDestroy methods by class, subclass first. Kept by the class
+	// itself, the request scopes being shared by all the containers.
+	private static final ClassValue<Method[]> PRE_DESTROY = new ClassValue<Method[]>() {
+		@Override
+		protected Method[] computeValue(Class<?> clazz) {
+			List<Method> found = new ArrayList<Method>();
+			for (Class<?> level = clazz; level != null
+					&& level != Object.class; level = level.getSuperclass()) {
+				for (Method method : level.getDeclaredMethods()) {
+					if (!method.isAnnotationPresent(PreDestroy.class)
+							|| isOverridden(method, clazz)) {
+						continue;
+					}
+					checkArgument(method.getParameterTypes().length == 0
+							&& !Modifier.isStatic(method.getModifiers()),
+							"The PreDestroy method %s cannot be static or take parameters",
+							method);
+					method.setAccessible(true);
+					found.add(method);
+				}
+			}
+			return found.toArray(new Method[found.size()]);
+		}
+	};
 
-	private Map<Class<?>, Class<?>> mapping;
+	public static final DaContainer INSTANCE = new DaContainerImpl();
 
-	private Map<String, Object> constants;
+	// Looked up when this container has no binding or constant of its own
+	private final DaContainerImpl parent;
 
-	private List<Class<? extends Annotation>> managedAnnotations;
+	private final ConcurrentMap<Key<?>, Binding> mapping;
 
-	// Filter the fields to keep only annotated fields.
-	private static final Predicate<AccessibleObject> isAnnotedAccessibleObject = new Predicate<AccessibleObject>() {
-		public boolean apply(AccessibleObject candidateField) {
-			return candidateField.getAnnotations().length > 0;
-		}
-	};
+	// Replaced as a whole, copied on write under the lock of the container,
+	// RCU style: a reader does a single volatile read and only sees published
+	// versions, all of an update or none of it
+	private volatile ImmutableMap<String, Object> constants;
 
-	// Hack to have accessible annotated fields
-	private static final Block<AccessibleObject> setAccessible = new Block<AccessibleObject>() {
-		public void apply(AccessibleObject annotedField) {
-			annotedField.setAccessible(true);
-		}
-	};
+	private final CopyOnWriteArrayList<ConstantListener> constantListeners = new CopyOnWriteArrayList<ConstantListener>();
+
+	// Copy on write, resolutions iterate over a snapshot without locking
+	private volatile CopyOnWriteArrayList<Class<? extends Annotation>> managedAnnotations;
+
+	// False while a child uses the annotations, the backend and the plans of
+	// its parent, until it changes one of them
+	private volatile boolean ownSettings = true;
+
+	// Suffix of the injectors generated by the annotation processor
+	private static final String INJECTOR_SUFFIX = "$$DaInjector";
+
+	// Generated injectors replicate these handlers only
+	private static final Set<Class<?>> BUILT_IN_HANDLERS = ImmutableSet
+			.<Class<?>> of(InjectImpl.class, NamedImpl.class,
+					AnnotationInjectionImpl.class);
+
+	// The shared handler of each managed annotation. Rebuilt under the
+	// registration lock, before the plans are invalidated, whenever an
+	// annotation or its handler is bound.
+	private volatile Map<Class<? extends Annotation>, DaAnnotation> dispatch = ImmutableMap
+			.of();
+
+	// Injection plans by constructed class, computed on first resolution.
+	// Replaced, not cleared, on invalidation so a plan built from stale
+	// settings ends up in the discarded map.
+	private volatile ConcurrentMap<Class<?>, InjectionPlan> plans;
+
+	// The members declared by each class of a hierarchy, shared by all its
+	// subclasses. Replaced before the plans and read after them, so a plan
+	// of the current map never holds a stale level.
+	private volatile ConcurrentMap<Class<?>, InjectionPlan> levels;
 
-	private DaContainerImpl() {
+	private volatile InvokerFactory invokerFactory = InjectionBackend.REFLECTION
+			.getInvokerFactory();
 
-		mapping = new HashMap<Class<?>, Class<?>>();
+	// Compared to NONE before any call, so the default costs a volatile read
+	private volatile Instrumentation instrumentation = Instrumentations.NONE;
+
+	// Read only once frozen
+	private volatile boolean frozen;
+
+	// Where a restored container reads the bindings not looked up yet, null
+	// otherwise
+	private volatile Snapshot snapshot;
+
+	// The components listed on the classpath, bound on their first lookup,
+	// null until autoBind
+	private volatile ComponentIndex index;
+
+	/**
+	 * Create an independent container. Most applications share
+	 * {@link #INSTANCE}
+	 */
+	public DaContainerImpl() {
+
+		parent = null;
+
+		mapping = new ConcurrentHashMap<Key<?>, Binding>();
 		LOG.log(Level.FINE, "Mapping map created");
 
-		constants = new HashMap<String, Object>();
+		constants = ImmutableMap.of();
 		LOG.log(Level.FINE, "Constants map created");
 
-		managedAnnotations = new ArrayList<Class<? extends Annotation>>();
+		levels = new ConcurrentHashMap<Class<?>, InjectionPlan>();
+		plans = new ConcurrentHashMap<Class<?>, InjectionPlan>();
+
+		managedAnnotations = new CopyOnWriteArrayList<Class<? extends Annotation>>();
 		managedAnnotations.add(Inject.class);
 		managedAnnotations.add(Named.class);
 		bind(Inject.class, InjectImpl.class);
@@ -87,13 +197,298 @@ public class DaContainerImpl implements DaContainer {
 
 	}
 
-	public void bind(Class<?> contract, Class<?> clazz) {
-		checkNotNull(contract, "The contract cannot be null");
-		checkNotNull(clazz, "The class cannot be null");
+	/**
+	 * Create an empty child, nothing of the parent is copied
+	 * 
+	 * @param parent
+	 *            the container looked up for what the child does not bind
+	 */
+	private DaContainerImpl(DaContainerImpl parent) {
+		this.parent = parent;
+		mapping = new ConcurrentHashMap<Key<?>, Binding>();
+		constants = ImmutableMap.of();
+		ownSettings = false;
+		instrumentation = parent.instrumentation;
+	}
 
-		// Old contract - clazz is replaced by the new one
-		mapping.put(contract, clazz);
+	public DaContainer createChild() {
+		return new DaContainerImpl(this);
+	}
+
+	/**
+	 * Restore a container written by {@link #snapshot(File)}, frozen. Only
+	 * the settings and the constants are read: a binding is restored, and
+	 * its classes loaded, on its first lookup.
+	 * 
+	 * @param file
+	 *            the snapshot
+	 * @return the restored container
+	 */
+	public static DaContainer restore(File file) throws IOException {
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		if (loader == null) {
+			loader = DaContainerImpl.class.getClassLoader();
+		}
+		Snapshot snapshot = Snapshot.open(file, loader);
+
+		DaContainerImpl container = new DaContainerImpl();
+		container.snapshot = snapshot;
+		try {
+			container.setInjectionBackend(InjectionBackend.valueOf(snapshot
+					.getBackend()));
+		} catch (IllegalArgumentException e) {
+			throw new IOException("The snapshot is out of date", e);
+		}
+		container.constants = ImmutableMap.copyOf(snapshot.getConstants());
+		try {
+			for (String annotation : snapshot.getAnnotations()) {
+				container.managedAnnotations.addIfAbsent(Class.forName(
+						annotation, false, loader).asSubclass(
+						Annotation.class));
+			}
+		} catch (ClassNotFoundException e) {
+			throw new IOException("The snapshot is out of date", e);
+		}
+		container.updateDispatch();
+		container.frozen = true;
+		return container;
+	}
+
+	@Override
+	public synchronized void snapshot(File file) throws IOException {
+		checkNotNull(file, "The file cannot be null");
+		checkState(frozen, "Only a frozen container can be snapshotted");
+		checkState(parent == null, "Only a root container can be snapshotted");
+
+		restoreAll();
+		// Checked before anything is written
+		for (Binding binding : mapping.values()) {
+			checkArgument(Snapshot.isBuiltIn(binding.getScope()),
+					"%s is bound in the %s scope, which a snapshot cannot hold",
+					binding.getKey(), binding.getScope());
+		}
+		InjectionBackend backend = null;
+		for (InjectionBackend candidate : InjectionBackend.values()) {
+			if (candidate.getInvokerFactory() == invokerFactory) {
+				backend = candidate;
+			}
+		}
+		SnapshotWriter writer = new SnapshotWriter(backend.name(), constants,
+				managedAnnotations);
+		Map<Class<? extends Annotation>, DaAnnotation> table = dispatch;
+		for (Binding binding : mapping.values()) {
+			writer.write(binding, getPlan(binding.getImplementation()), table);
+		}
+		writer.writeTo(file);
+		LOG.log(Level.FINE, "Snapshot written to {0}", file);
+	}
+
+	/**
+	 * @return the binding of the key restored from the snapshot, or null
+	 */
+	private Binding restore(Key<?> key) {
+		String descriptor = Snapshot.descriptor(key);
+		if (!snapshot.contains(descriptor)) {
+			return null;
+		}
+		synchronized (this) {
+			Binding binding = mapping.get(key);
+			if (binding != null) {
+				return binding;
+			}
+			return restore(read(descriptor));
+		}
+	}
+
+	/**
+	 * Restore the bindings of the snapshot not looked up yet
+	 */
+	private synchronized void restoreAll() {
+		if (snapshot == null) {
+			return;
+		}
+		for (String descriptor : snapshot.getDescriptors()) {
+			Snapshot.Entry entry = read(descriptor);
+			if (!mapping.containsKey(entry.getKey())) {
+				restore(entry);
+			}
+		}
+	}
+
+	private Snapshot.Entry read(String descriptor) {
+		try {
+			return snapshot.read(descriptor);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException("The snapshot is out of date", e);
+		}
+	}
+
+	/**
+	 * Called under the registration lock
+	 */
+	private Binding restore(Snapshot.Entry entry) {
+		Class<?> clazz = entry.getImplementation();
+		Binding binding = new Binding(entry.getKey(), clazz, entry.getScope(),
+				new UnscopedProvider(clazz, entry.getScope()));
+		// Registered before it is linked, a deferred cycle links back to it
+		mapping.put(entry.getKey(), binding);
+		// The members of an injector are not written, they are scanned when
+		// the injector is gone
+		InjectionPlan plan = restorePlan(clazz, entry.isInjector(),
+				entry.getConstructor(),
+				entry.isInjector() ? null : entry.getMembers());
+		InjectionPlan cached = plans.putIfAbsent(clazz, plan);
+		((UnscopedProvider) binding.getUnscoped()).linkedPlan = link(cached != null ? cached
+				: plan);
+		return binding;
+	}
+
+	public void autoBind() throws IOException {
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		if (loader == null) {
+			loader = DaContainerImpl.class.getClassLoader();
+		}
+		autoBind(loader);
+	}
+
+	public synchronized void autoBind(ClassLoader loader) throws IOException {
+		checkNotNull(loader, "The class loader cannot be null");
+		checkNotFrozen();
+		index = ComponentIndex.read(loader, index);
+	}
+
+	/**
+	 * @return the binding of the component implementing the contract of the
+	 *         key, or null
+	 */
+	private Binding autoBind(Key<?> key) {
+		if (key.getName() != null || !(key.getType() instanceof Class)) {
+			return null;
+		}
+		ComponentIndex.Component component = index.get(((Class<?>) key
+				.getType()).getName());
+		if (component == null) {
+			return null;
+		}
+		synchronized (this) {
+			Binding binding = mapping.get(key);
+			if (binding != null) {
+				return binding;
+			}
+			return autoBind(key, component);
+		}
+	}
+
+	/**
+	 * Bind the components of the index not looked up yet, loading their
+	 * classes
+	 */
+	private synchronized void autoBindAll() {
+		if (index == null) {
+			return;
+		}
+		for (ComponentIndex.Component component : index.getComponents()) {
+			for (String contract : component.getContracts()) {
+				if (index.get(contract) != component) {
+					continue;
+				}
+				try {
+					Key<?> key = Key.get(component.getContract(contract));
+					if (!mapping.containsKey(key)) {
+						autoBind(key, component);
+					}
+				} catch (ClassNotFoundException e) {
+					LOG.log(Level.WARNING, "Index out of date, " + contract
+							+ " not bound", e);
+				}
+			}
+		}
+	}
 
+	private Binding autoBind(Key<?> key, ComponentIndex.Component component) {
+		Class<?> clazz;
+		try {
+			clazz = component.getImplementation();
+		} catch (ClassNotFoundException e) {
+			LOG.log(Level.WARNING, "Index out of date, " + key + " not bound",
+					e);
+			return null;
+		}
+		Binding binding = new Binding(key, clazz, Scopes.NO_SCOPE,
+				new UnscopedProvider(clazz, Scopes.NO_SCOPE));
+		mapping.put(key, binding);
+		InjectionPlan plan = restorePlan(clazz, component.isInjector(),
+				component.getConstructor(), component.getMembers());
+		InjectionPlan cached = plans.putIfAbsent(clazz, plan);
+		if (frozen) {
+			((UnscopedProvider) binding.getUnscoped()).linkedPlan = link(cached != null ? cached
+					: plan);
+		}
+		LOG.log(Level.FINE, "{0} bound from the index to {1}", new Object[] {
+				key, clazz });
+		return binding;
+	}
+
+	/**
+	 * Find the members of the plan by their name, the class is scanned only
+	 * when it changed since the snapshot or the index was written. Without
+	 * members, null, the class is scanned.
+	 */
+	private InjectionPlan restorePlan(Class<?> clazz, boolean hasInjector,
+			MemberReference annotated,
+			List<? extends MemberReference> annotatedMembers) {
+		Map<Class<? extends Annotation>, DaAnnotation> table = dispatch;
+		try {
+			if (hasInjector) {
+				Injector<?> injector = findInjector(clazz, table);
+				if (injector != null) {
+					return new InjectionPlan(clazz, injector);
+				}
+			}
+			if (annotatedMembers == null) {
+				return createPlan(clazz);
+			}
+
+			InjectionPoint constructor = null;
+			DaAnnotation constructorHandler = null;
+			Invoker defaultConstructor = null;
+			if (annotated != null) {
+				constructorHandler = table.get(annotated.getAnnotation());
+				if (constructorHandler == null) {
+					return createPlan(clazz);
+				}
+				constructor = compile(annotated.resolve(), constructorHandler);
+			} else {
+				try {
+					defaultConstructor = invokerFactory.create(clazz
+							.getConstructor());
+				} catch (NoSuchMethodException e) {
+					LOG.log(Level.FINE, "No public default constructor", e);
+				}
+			}
+
+			List<InjectionPoint> members = new ArrayList<InjectionPoint>();
+			List<DaAnnotation> handlers = new ArrayList<DaAnnotation>();
+			for (MemberReference member : annotatedMembers) {
+				DaAnnotation handler = table.get(member.getAnnotation());
+				if (handler == null) {
+					return createPlan(clazz);
+				}
+				AccessibleObject resolved = member.resolve();
+				resolved.setAccessible(true);
+				members.add(compile(resolved, handler));
+				handlers.add(handler);
+			}
+			return new InjectionPlan(clazz, constructor, constructorHandler,
+					defaultConstructor, members, handlers);
+		} catch (ReflectiveOperationException e) {
+			LOG.log(Level.FINE, "Plan out of date, scanning " + clazz, e);
+			return createPlan(clazz);
+		}
+	}
+
+	public void bind(Class<?> contract, Class<?> clazz) {
+		bind(contract, clazz, Scopes.NO_SCOPE);
 	}
 
 	public void bind(Class<?> clazz) {
@@ -101,167 +496,1410 @@ public class DaContainerImpl implements DaContainer {
 
 	}
 
+	public void bind(Class<?> contract, Class<?> clazz, Scope scope) {
+		checkNotNull(contract, "The contract cannot be null");
+		bind(Key.get(contract), clazz, scope);
+	}
+
+	public synchronized void bind(Key<?> key, Class<?> clazz, Scope scope) {
+		checkNotNull(key, "The key cannot be null");
+		checkNotNull(clazz, "The class cannot be null");
+		checkNotNull(scope, "The scope cannot be null");
+		checkNotFrozen();
+
+		// Old contract - clazz is replaced by the new one
+		mapping.put(key, new Binding(key, clazz, scope, new UnscopedProvider(
+				clazz, scope)));
+
+		// Plans hold the handlers of the annotations
+		if (key.getRawType().isAnnotation()) {
+			updateDispatch();
+		}
+
+	}
+
+	@SuppressWarnings("unchecked")
 	public <T> T getInstance(Class<?> contract) {
 		checkNotNull(contract, "The contract cannot be null");
-		checkArgument(mapping.containsKey(contract), "Unbounded interface %s",
-				contract);
+		return (T) getInstance(Key.get(contract));
+	}
 
-		Class<?> clazz = mapping.get(contract);
+	@SuppressWarnings("unchecked")
+	public <T> T getInstance(Key<T> key) {
+		checkNotNull(key, "The key cannot be null");
+		Binding binding = mapping.get(key);
+		boolean inherited = false;
+		if (binding == null) {
+			binding = lookup(key);
+			// Not checkArgument, its varargs would allocate on every
+			// resolution
+			if (binding == null) {
+				throw new IllegalArgumentException("Unbounded interface "
+						+ key);
+			}
+			inherited = mapping.get(binding.getKey()) != binding;
+		}
 
-		return constructorDependencyInjection(clazz);
+		Instrumentation observer = instrumentation;
+		if (observer != Instrumentations.NONE) {
+			observer.resolved(key.getRawType());
+		}
+		// The unscoped instances of the ancestors are built here, so the
+		// bindings of this container apply to their dependencies. The scoped
+		// ones are shared.
+		if (inherited && binding.getScope() == Scopes.NO_SCOPE) {
+			return (T) construct(binding.getImplementation(), null, true);
+		}
+		if (observer != Instrumentations.NONE
+				&& binding.getScope() != Scopes.NO_SCOPE) {
+			return (T) getScoped(binding, key.getRawType(), observer);
+		}
+		return (T) binding.getProvider().get();
 	}
 
 	/**
-	 * Search if any depencies have to be injected and construct the object
-	 * 
-	 * @param toConstruct
-	 *            The class to construct
-	 * @return an instance or null
+	 * @return the instance of a scoped binding, the scope lookup reported
 	 */
+	private static Object getScoped(Binding binding, Class<?> contract,
+			Instrumentation observer) {
+		ResolutionPath path = ResolutionPath.current();
+		int builds = path.getScopedBuilds();
+		Object instance = binding.getProvider().get();
+		observer.scopeLookup(contract, path.getScopedBuilds() == builds);
+		return instance;
+	}
+
 	@SuppressWarnings("unchecked")
-	private <T> T constructorDependencyInjection(Class<?> toConstruct) {
-		checkNotNull(toConstruct);
-		T instance = null;
+	public <T> List<T> getInstances(Class<?> contract, int count) {
+		checkNotNull(contract, "The contract cannot be null");
+		checkArgument(count >= 0, "The count %s is negative", count);
+		Binding binding = lookup(Key.get(contract));
+		if (binding == null) {
+			throw new IllegalArgumentException("Unbounded interface "
+					+ contract);
+		}
 
-		// Search all the constuctor with al least one managed annotation
-		List<Constructor<?>> constructors = FunctionalIterables
-				.make(toConstruct.getConstructors())
-				.filter(new Predicate<Constructor<?>>() {
+		List<T> instances = new ArrayList<T>(count);
+		Instrumentation observer = instrumentation;
+		if (binding.getScope() != Scopes.NO_SCOPE) {
+			Provider<?> provider = binding.getProvider();
+			for (int i = 0; i < count; i++) {
+				if (observer != Instrumentations.NONE) {
+					observer.resolved(contract);
+					instances.add((T) getScoped(binding, contract, observer));
+				} else {
+					instances.add((T) provider.get());
+				}
+			}
+			return instances;
+		}
 
-					public boolean apply(final Constructor<?> constructor) {
-						return FunctionalIterables
-								.make(managedAnnotations)
-								.any(new Predicate<Class<? extends Annotation>>() {
-
-									public boolean apply(
-											Class<? extends Annotation> annotation) {
-										return constructor
-												.isAnnotationPresent(annotation);
-									}
-								});
-					}
-				}).toList();
+		// The plan linked by an ancestor resolves with the ancestor bindings
+		Class<?> clazz = binding.getImplementation();
+		InjectionPlan plan = null;
+		if (mapping.get(binding.getKey()) == binding) {
+			plan = ((UnscopedProvider) binding.getUnscoped()).linkedPlan;
+		}
+		if (plan == null) {
+			plan = getPlan(clazz);
+		}
+		ResolutionPath path = ResolutionPath.current();
+		path.push(clazz);
+		try {
+			for (int i = 0; i < count; i++) {
+				Object instance;
+				if (observer != Instrumentations.NONE) {
+					observer.resolved(contract);
+					long start = System.nanoTime();
+					instance = plan.newInstance(this);
+					observer.constructed(clazz, System.nanoTime() - start,
+							plan.getInjectionPointCount());
+				} else {
+					instance = plan.newInstance(this);
+				}
+				if (instance != null) {
+					path.track(instance);
+				}
+				instances.add((T) instance);
+			}
+		} finally {
+			path.pop();
+		}
+		return instances;
+	}
 
-		// constuctor with DaAnnotation
-		if (constructors.size() > 0) {
-			Constructor<?> constructor = constructors.get(0);
-			for (Class<? extends Annotation> annotation : managedAnnotations) {
-				final Class<? extends Annotation> clazz = annotation;
+	public <T> ListenableFuture<T> getInstanceAsync(Class<T> contract) {
+		checkNotNull(contract, "The contract cannot be null");
+		return getInstanceAsync(Key.get(contract),
+				AsyncExecutors.defaultExecutor());
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> ListenableFuture<T> getInstanceAsync(Key<T> key,
+			Executor executor) {
+		checkNotNull(key, "The key cannot be null");
+		checkNotNull(executor, "The executor cannot be null");
+		ListenableFuture<?> instance = resolveAsync(key, executor,
+				new ArrayList<Key<?>>(),
+				new HashMap<Key<?>, ListenableFuture<Object>>());
+		return (ListenableFuture<T>) instance;
+	}
+
+	/**
+	 * Resolve the eager dependencies of a binding concurrently, then build it
+	 * once they are all resolved. No task waits for another one, so a bounded
+	 * executor cannot deadlock.
+	 * 
+	 * @param path
+	 *            the bindings resolving this one, to fail on a cycle
+	 * @param singletons
+	 *            the singletons already resolved by the call
+	 */
+	private ListenableFuture<Object> resolveAsync(final Key<?> key,
+			final Executor executor, List<Key<?>> path,
+			Map<Key<?>, ListenableFuture<Object>> singletons) {
+		final ValueFuture<Object> result = ValueFuture.create();
+		final Binding binding = lookup(key);
+		if (binding == null) {
+			result.setException(new IllegalArgumentException(
+					"Unbounded interface " + key));
+			return result;
+		}
+		int cycleStart = path.indexOf(binding.getKey());
+		if (cycleStart >= 0) {
+			List<Key<?>> cycle = new ArrayList<Key<?>>(path.subList(
+					cycleStart, path.size()));
+			cycle.add(binding.getKey());
+			result.setException(new IllegalStateException("Dependency cycle "
+					+ chain(cycle)));
+			return result;
+		}
+		if (binding.getScope() == Scopes.SINGLETON) {
+			ListenableFuture<Object> pending = singletons.get(binding.getKey());
+			if (pending != null) {
+				return pending;
+			}
+			singletons.put(binding.getKey(), result);
+		}
+
+		final InjectionPlan plan;
+		try {
+			plan = asyncPlan(binding);
+		} catch (RuntimeException e) {
+			result.setException(e);
+			return result;
+		}
+
+		// An unscoped instance is built here with its resolved dependencies,
+		// a scoped one by its scope once the singletons it needs are built
+		final boolean injected = binding.getScope() == Scopes.NO_SCOPE
+				&& plan.getInjector() == null;
+		List<Key<?>> eager = eagerDependencies(plan);
+		final Map<Key<?>, ListenableFuture<Object>> dependencies = new LinkedHashMap<Key<?>, ListenableFuture<Object>>();
+		path.add(binding.getKey());
+		try {
+			for (Key<?> required : eager) {
+				Binding dependency = lookup(required);
+				if (dependency == null || dependencies.containsKey(required)) {
+					continue;
+				}
+				// An unscoped contract required twice gets two instances, it
+				// is left to the build
+				boolean unscoped = injected
+						&& dependency.getScope() == Scopes.NO_SCOPE
+						&& Collections.frequency(eager, required) == 1;
+				if (unscoped || dependency.getScope() == Scopes.SINGLETON) {
+					dependencies.put(required, resolveAsync(required,
+							executor, path, singletons));
+				}
+			}
+		} finally {
+			path.remove(path.size() - 1);
+		}
 
-				if (constructor.isAnnotationPresent(clazz)) {
-					DaAnnotation daAnnotation = getInstance(clazz);
-					instance = daAnnotation.apply(constructor);
+		final Runnable build = new Runnable() {
+			public void run() {
+				try {
+					result.set(buildAsync(key, binding, plan, injected,
+							dependencies));
+				} catch (ExecutionException e) {
+					result.setException(e.getCause());
+				} catch (Throwable e) {
+					result.setException(e);
+				}
+			}
+		};
+		final Runnable submit = new Runnable() {
+			public void run() {
+				try {
+					executor.execute(build);
+				} catch (RejectedExecutionException e) {
+					result.setException(e);
 				}
 			}
+		};
+		if (dependencies.isEmpty()) {
+			submit.run();
 		} else {
-			try {
-				instance = (T) toConstruct.newInstance();
-			} catch (InstantiationException e) {
-				LOG.log(Level.SEVERE, "Instantiation impossible", e);
-			} catch (IllegalAccessException e) {
-				LOG.log(Level.SEVERE, "Illegal Access", e);
+			final AtomicInteger pending = new AtomicInteger(dependencies
+					.size());
+			Runnable countDown = new Runnable() {
+				public void run() {
+					if (pending.decrementAndGet() == 0) {
+						submit.run();
+					}
+				}
+			};
+			for (ListenableFuture<Object> dependency : dependencies.values()) {
+				dependency.addListener(countDown, MoreExecutors
+						.sameThreadExecutor());
 			}
-
 		}
+		return result;
+	}
 
-		if (instance != null) {
-			// Once we have constructed the object, we inject the members (FIELD
-			// & METHOD)
-			dependencyInjection(instance);
+	/**
+	 * The plan linked by an ancestor resolves with the ancestor bindings
+	 */
+	private InjectionPlan asyncPlan(Binding binding) {
+		InjectionPlan plan = null;
+		if (mapping.get(binding.getKey()) == binding) {
+			plan = ((UnscopedProvider) binding.getUnscoped()).linkedPlan;
 		}
+		if (plan == null) {
+			plan = getPlan(binding.getImplementation());
+		}
+		return plan;
+	}
 
-		return instance;
+	/**
+	 * Called once every dependency is resolved, so their get() does not block
+	 */
+	private Object buildAsync(Key<?> key, Binding binding, InjectionPlan plan,
+			boolean injected,
+			Map<Key<?>, ListenableFuture<Object>> dependencies)
+			throws ExecutionException, InterruptedException {
+		if (!injected) {
+			return getInstance(key);
+		}
+		Map<Key<?>, Object> resolved = new HashMap<Key<?>, Object>();
+		for (Map.Entry<Key<?>, ListenableFuture<Object>> dependency : dependencies
+				.entrySet()) {
+			resolved.put(dependency.getKey(), dependency.getValue().get());
+		}
+		Instrumentation observer = instrumentation;
+		if (observer != Instrumentations.NONE) {
+			observer.resolved(key.getRawType());
+		}
+		// Built on the executor, outside of the request scope of the caller
+		return construct(binding.getImplementation(), link(plan, resolved),
+				false);
 	}
 
 	/**
-	 * Inject fields and methods
-	 * 
-	 * @param instance
+	 * @param key
+	 *            the key of a contract
+	 * @return the binding of the key in this container or its nearest
+	 *         ancestor, else the binding of its raw type, or null
 	 */
-	private <T> void dependencyInjection(final T instance) {
-		inject(instance, filterFields(instance));
-		inject(instance, filterMethods(instance));
+	private Binding lookup(Key<?> key) {
+		Binding binding = lookupExact(key);
+		if (binding == null && key.getType() != key.getRawType()) {
+			binding = lookupExact(key.withoutTypeArguments());
+		}
+		return binding;
 	}
 
-	private <T> Iterable<Field> filterFields(final T instance) {
+	private Binding lookup(Class<?> contract) {
+		return lookup(Key.get(contract));
+	}
 
-		// filter annotated fields and set them accessibles
-		return FunctionalIterables
-				.make(instance.getClass().getDeclaredFields())
-				.filter(isAnnotedAccessibleObject).each(setAccessible);
+	private Binding lookupExact(Key<?> key) {
+		for (DaContainerImpl container = this; container != null; container = container.parent) {
+			Binding binding = container.mapping.get(key);
+			if (binding == null && container.snapshot != null) {
+				binding = container.restore(key);
+			}
+			if (binding == null && container.index != null) {
+				binding = container.autoBind(key);
+			}
+			if (binding != null) {
+				return binding;
+			}
+		}
+		return null;
 	}
 
-	private <T> Iterable<Method> filterMethods(final T instance) {
+	/**
+	 * @param constantName
+	 *            the name of a constant
+	 * @return the value in this container or its nearest ancestor, or null
+	 */
+	private Object lookupConstant(String constantName) {
+		return lookupConstant(constantName, constants);
+	}
 
-		// filter annotated fields and set them accessibles
-		return FunctionalIterables
-				.make(instance.getClass().getDeclaredMethods())
-				.filter(isAnnotedAccessibleObject).each(setAccessible);
+	/**
+	 * @param own
+	 *            the constants of this container, the published ones or the
+	 *            next ones
+	 */
+	private Object lookupConstant(String constantName, Map<String, Object> own) {
+		Object value = own.get(constantName);
+		if (value == null && parent != null) {
+			value = parent.lookupConstant(constantName);
+		}
+		return value;
 	}
 
 	/**
-	 * apply every annotation on the current object
+	 * Retrieve the injection plan of a class, scanning it on first use only
 	 * 
-	 * @param <T>
-	 * @param instance
-	 * @param elements
+	 * @param toConstruct
+	 *            The class to construct
+	 * @return the cached plan
 	 */
-	private <T> void inject(final T instance,
-			Iterable<? extends AccessibleObject> elements) {
-		for (Class<? extends Annotation> annotation : managedAnnotations) {
-			final Class<? extends Annotation> clazz = annotation;
-
-			// Apply the right treatment respectively to the annotation present
-			FunctionalIterables.make(elements)
-					.filter(new Predicate<AccessibleObject>() {
-
-						public boolean apply(AccessibleObject object) {
-							return object.isAnnotationPresent(clazz);
-						}
-					}).each(new Block<AccessibleObject>() {
-						public void apply(AccessibleObject annotedField) {
-							DaAnnotation annotation = getInstance(clazz);
-							try {
-								annotation.apply(instance, annotedField);
-							} catch (IllegalArgumentException e) {
-								LOG.log(Level.SEVERE, "Illegal Argument", e);
-							} catch (IllegalAccessException e) {
-								LOG.log(Level.SEVERE, "Illegal Access", e);
-							}
-						}
-					});
+	private InjectionPlan getPlan(Class<?> toConstruct) {
+		checkNotNull(toConstruct);
+		if (!ownSettings) {
+			return parent.getPlan(toConstruct);
+		}
+		// Read before the settings used to create the plan
+		ConcurrentMap<Class<?>, InjectionPlan> current = plans;
+		InjectionPlan plan = current.get(toConstruct);
+		Instrumentation observer = instrumentation;
+		if (observer != Instrumentations.NONE) {
+			observer.planLookup(toConstruct, plan != null);
 		}
+		if (plan == null) {
+			plan = createPlan(toConstruct);
+			InjectionPlan existing = current.putIfAbsent(toConstruct, plan);
+			if (existing != null) {
+				plan = existing;
+			}
+		}
+		return plan;
 	}
 
-	@Override
-	public void bindConstant(String constantName, Object constantValue) {
-		checkNotNull(constantName, "The constantName cannot be null");
-		checkNotNull(constantValue, "The constantValue cannot be null");
+	/**
+	 * Resolve once the handler of each managed annotation, then forget the
+	 * plans holding the previous handlers
+	 */
+	private void updateDispatch() {
+		copyParentSettings();
+		Map<Class<? extends Annotation>, DaAnnotation> table = new HashMap<Class<? extends Annotation>, DaAnnotation>();
+		for (Class<? extends Annotation> annotation : managedAnnotations) {
+			if (lookup(annotation) != null) {
+				DaAnnotation handler = getInstance(annotation);
+				table.put(annotation, handler);
+			}
+		}
+		dispatch = ImmutableMap.copyOf(table);
+		invalidatePlans();
+	}
 
-		constants.put(constantName, constantValue);
+	/**
+	 * @param annotation
+	 *            an annotation of a CONSTRUCTOR, FIELD or METHOD
+	 * @param table
+	 *            the dispatch table the plan is created with
+	 * @return the handler of the annotation, null when it is not managed
+	 */
+	private static DaAnnotation handlerOf(Annotation annotation,
+			Map<Class<? extends Annotation>, DaAnnotation> table) {
+		return table.get(annotation.annotationType());
 	}
 
-	public Object getConstant(String constantName) {
-		checkNotNull(constantName, "The constantName cannot be null");
-		checkArgument(constants.containsKey(constantName),
-				"No binding founded for constantName : {0}", constantName);
-		Object value = null;
-		value = constants.get(constantName);
-		return value;
+	/**
+	 * Before a child changes them, copy the annotations and the backend of
+	 * its parent. The child then creates its own plans. Called under the
+	 * registration lock.
+	 */
+	private void copyParentSettings() {
+		if (ownSettings) {
+			return;
+		}
+		DaContainerImpl owner = parent;
+		while (!owner.ownSettings) {
+			owner = owner.parent;
+		}
+		managedAnnotations = new CopyOnWriteArrayList<Class<? extends Annotation>>(
+				owner.managedAnnotations);
+		dispatch = owner.dispatch;
+		invokerFactory = owner.invokerFactory;
+		levels = new ConcurrentHashMap<Class<?>, InjectionPlan>();
+		plans = new ConcurrentHashMap<Class<?>, InjectionPlan>();
+		ownSettings = true;
 	}
 
-	@Override
-	public void bindAnnotation(Class<? extends Annotation> annotation,
-			String value) {
-		checkNotNull(annotation, "The annotation cannot be null");
-		checkNotNull(value, "The value cannot be null");
-		checkArgument(
-				annotation.isAnnotationPresent(AnnotationInjection.class),
-				"The annotation {0} must be annoted with AnnotationInjection",
-				annotation);
+	/**
+	 * Forget the plans, to be called after the settings they depend on have
+	 * changed
+	 */
+	private void invalidatePlans() {
+		levels = new ConcurrentHashMap<Class<?>, InjectionPlan>();
+		plans = new ConcurrentHashMap<Class<?>, InjectionPlan>();
+	}
 
-		constants.put(annotation.getName(), value);
-		managedAnnotations.add(annotation);
-		bind(annotation, AnnotationInjectionImpl.class);
+	/**
+	 * Search if any depencies have to be injected and how to construct the
+	 * object
+	 * 
+	 * @param toConstruct
+	 *            The class to construct
+	 * @return the plan to replay for each instance
+	 */
+	private InjectionPlan createPlan(Class<?> toConstruct) {
+		// Each member looks its own annotations up, whatever the number of
+		// managed annotations
+		final Map<Class<? extends Annotation>, DaAnnotation> table = dispatch;
+		ConcurrentMap<Class<?>, InjectionPlan> current = levels;
+
+		// Superclass first, the way the members are injected
+		List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+		for (Class<?> level = toConstruct; level != null
+				&& level != Object.class; level = level.getSuperclass()) {
+			hierarchy.add(0, level);
+		}
+		List<InjectionPlan> declared = new ArrayList<InjectionPlan>();
+		boolean inheritsMembers = false;
+		for (Class<?> level : hierarchy) {
+			InjectionPlan members = levelPlan(level, table, current);
+			declared.add(members);
+			inheritsMembers |= level != toConstruct
+					&& members.getInjectionPointCount() > 0;
+		}
+
+		// A generated injector only knows the members of its own class
+		Injector<?> injector = inheritsMembers ? null : findInjector(
+				toConstruct, table);
+		if (injector != null) {
+			LOG.log(Level.FINE, "Generated injector used for {0}", toConstruct);
+			return new InjectionPlan(toConstruct, injector);
+		}
+
+		// Search all the constuctor with al least one managed annotation
+		List<Constructor<?>> constructors = FunctionalIterables
+				.make(toConstruct.getConstructors())
+				.filter(new Predicate<Constructor<?>>() {
+
+					public boolean apply(Constructor<?> constructor) {
+						for (Annotation annotation : constructor
+								.getAnnotations()) {
+							if (handlerOf(annotation, table) != null) {
+								return true;
+							}
+						}
+						return false;
+					}
+				}).toList();
+
+		InjectionPoint constructor = null;
+		DaAnnotation constructorHandler = null;
+
+		// constuctor with DaAnnotation
+		if (constructors.size() > 0) {
+			Constructor<?> annotedConstructor = constructors.get(0);
+			for (Annotation annotation : annotedConstructor.getAnnotations()) {
+				DaAnnotation handler = handlerOf(annotation, table);
+				if (handler != null) {
+					constructorHandler = handler;
+				}
+			}
+			constructor = compile(annotedConstructor, constructorHandler);
+		}
+
+		Invoker defaultConstructor = null;
+		if (constructor == null) {
+			try {
+				defaultConstructor = invokerFactory.create(toConstruct
+						.getConstructor());
+			} catch (NoSuchMethodException e) {
+				// Class.newInstance will report it
+				LOG.log(Level.FINE, "No public default constructor", e);
+			}
+		}
+
+		// Once the object is constructed, we inject the members (FIELD &
+		// METHOD) of each class of the hierarchy
+		List<InjectionPoint> members = new ArrayList<InjectionPoint>();
+		List<DaAnnotation> handlers = new ArrayList<DaAnnotation>();
+		for (InjectionPlan level : declared) {
+			List<InjectionPoint> levelMembers = level.getMembers();
+			List<DaAnnotation> levelHandlers = level.getHandlers();
+			for (int i = 0; i < levelMembers.size(); i++) {
+				InjectionPoint member = levelMembers.get(i);
+				if (!isOverridden(member.getMember(), toConstruct)) {
+					members.add(member);
+					handlers.add(levelHandlers.get(i));
+				}
+			}
+		}
+
+		LOG.log(Level.FINE, "Injection plan created for {0}", toConstruct);
+
+		return new InjectionPlan(toConstruct, constructor, constructorHandler,
+				defaultConstructor, members, handlers);
+	}
+
+	/**
+	 * @param toConstruct
+	 *            The class to construct
+	 * @param table
+	 *            the dispatch table the plan is created with
+	 * @return the injector generated for the class, or null when there is
+	 *         none or when one of its annotations is not handled by its
+	 *         built-in handler
+	 */
+	private static Injector<?> findInjector(Class<?> toConstruct,
+			Map<Class<? extends Annotation>, DaAnnotation> table) {
+		Class<?> generated;
+		try {
+			generated = Class.forName(toConstruct.getName() + INJECTOR_SUFFIX,
+					true, toConstruct.getClassLoader());
+		} catch (ClassNotFoundException e) {
+			return null;
+		}
+		if (!Injector.class.isAssignableFrom(generated)) {
+			return null;
+		}
+
+		Injector<?> injector;
+		try {
+			injector = (Injector<?>) generated.newInstance();
+		} catch (InstantiationException e) {
+			LOG.log(Level.WARNING, "Generated injector ignored", e);
+			return null;
+		} catch (IllegalAccessException e) {
+			LOG.log(Level.WARNING, "Generated injector ignored", e);
+			return null;
+		}
+		for (Class<?> annotation : injector.getAnnotations()) {
+			DaAnnotation handler = table.get(annotation);
+			if (handler == null
+					|| !BUILT_IN_HANDLERS.contains(handler.getClass())) {
+				return null;
+			}
+		}
+		return injector;
+	}
+
+	/**
+	 * @param level
+	 *            a class of the hierarchy of a constructed class
+	 * @param table
+	 *            the dispatch table the plan is created with
+	 * @param current
+	 *            the levels created with the table
+	 * @return a plan holding the annotated members declared by the class
+	 *         only, scanned once for all its subclasses
+	 */
+	private InjectionPlan levelPlan(Class<?> level,
+			Map<Class<? extends Annotation>, DaAnnotation> table,
+			ConcurrentMap<Class<?>, InjectionPlan> current) {
+		InjectionPlan declared = current.get(level);
+		if (declared == null) {
+			List<InjectionPoint> members = new ArrayList<InjectionPoint>();
+			List<DaAnnotation> handlers = new ArrayList<DaAnnotation>();
+			collect(level.getDeclaredFields(), table, members, handlers);
+			collect(level.getDeclaredMethods(), table, members, handlers);
+			declared = new InjectionPlan(level, null, null, null, members,
+					handlers);
+			InjectionPlan existing = current.putIfAbsent(level, declared);
+			if (existing != null) {
+				declared = existing;
+			}
+		}
+		return declared;
+	}
+
+	/**
+	 * @param member
+	 *            a member declared by a superclass
+	 * @param toConstruct
+	 *            the constructed class
+	 * @return true for a method overridden below its class, it is injected
+	 *         only when the override is annotated
+	 */
+	private static boolean isOverridden(AccessibleObject member,
+			Class<?> toConstruct) {
+		if (!(member instanceof Method)) {
+			return false;
+		}
+		Method method = (Method) member;
+		int modifiers = method.getModifiers();
+		if (Modifier.isPrivate(modifiers) || Modifier.isStatic(modifiers)) {
+			return false;
+		}
+		boolean packagePrivate = !Modifier.isPublic(modifiers)
+				&& !Modifier.isProtected(modifiers);
+		Class<?> declaring = method.getDeclaringClass();
+		for (Class<?> level = toConstruct; level != declaring; level = level
+				.getSuperclass()) {
+			if (packagePrivate
+					&& level.getPackage() != declaring.getPackage()) {
+				continue;
+			}
+			try {
+				level.getDeclaredMethod(method.getName(), method
+						.getParameterTypes());
+				return true;
+			} catch (NoSuchMethodException e) {
+				// Not overridden by this level
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Keep the members carrying a managed annotation, set them accessibles,
+	 * compile them and resolve their handler
+	 * 
+	 * @param candidates
+	 *            the declared fields or methods
+	 * @param table
+	 *            the dispatch table the plan is created with
+	 * @param members
+	 *            the annotated members found
+	 * @param handlers
+	 *            the handler of each member found
+	 */
+	private void collect(AccessibleObject[] candidates,
+			Map<Class<? extends Annotation>, DaAnnotation> table,
+			List<InjectionPoint> members, List<DaAnnotation> handlers) {
+		for (AccessibleObject candidate : candidates) {
+			for (Annotation annotation : candidate.getAnnotations()) {
+				// On an injected member, @Named qualifies the contract
+				if (annotation instanceof Named
+						&& candidate.isAnnotationPresent(Inject.class)) {
+					continue;
+				}
+				DaAnnotation handler = handlerOf(annotation, table);
+				if (handler != null) {
+					// Hack to have accessible annotated members
+					candidate.setAccessible(true);
+					members.add(compile(candidate, handler));
+					handlers.add(handler);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param member
+	 *            an accessible CONSTRUCTOR, FIELD or METHOD
+	 * @param handler
+	 *            the handler of the member
+	 * @return the injection point of the member, with its invoker and its
+	 *         requirements
+	 */
+	private InjectionPoint compile(AccessibleObject member,
+			DaAnnotation handler) {
+		InjectionPoint injectionPoint = new InjectionPoint(member,
+				invokerFactory.create(member));
+		injectionPoint = injectionPoint.withRequirements(
+				handler.getDependencies(injectionPoint),
+				handler.getConstants(injectionPoint));
+		// Reported now rather than by the first injection
+		String[] names = injectionPoint.getConstants();
+		for (int i = 0; i < names.length; i++) {
+			Object value = lookupConstant(names[i]);
+			if (value != null) {
+				injectionPoint.checkConstant(i, value);
+			}
+		}
+		return injectionPoint;
+	}
+
+	@Override
+	public synchronized void setInjectionBackend(InjectionBackend backend) {
+		checkNotNull(backend, "The backend cannot be null");
+		checkNotFrozen();
+
+		copyParentSettings();
+		invokerFactory = backend.getInvokerFactory();
+
+		// Plans hold the invokers of the previous backend
+		invalidatePlans();
+	}
+
+	public void setInstrumentation(Instrumentation instrumentation) {
+		checkNotNull(instrumentation, "The instrumentation cannot be null");
+
+		this.instrumentation = instrumentation;
+	}
+
+	@Override
+	public synchronized void bindConstant(String constantName,
+			Object constantValue) {
+		checkNotNull(constantName, "The constantName cannot be null");
+		checkNotNull(constantValue, "The constantValue cannot be null");
+		checkNotFrozen();
+
+		constants = with(constants,
+				Collections.singletonMap(constantName, constantValue));
+	}
+
+	public void updateConstants(Map<String, ?> updates) {
+		checkNotNull(updates, "The constants cannot be null");
+		Map<ConstantListener, Set<String>> notified = new LinkedHashMap<ConstantListener, Set<String>>();
+		Set<String> changed = new LinkedHashSet<String>();
+		synchronized (this) {
+			ImmutableMap<String, Object> previous = constants;
+			for (Map.Entry<String, ?> entry : updates.entrySet()) {
+				checkNotNull(entry.getKey(), "The constantName cannot be null");
+				checkNotNull(entry.getValue(), "The value of %s cannot be null",
+						entry.getKey());
+				if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+					changed.add(entry.getKey());
+				}
+			}
+			if (changed.isEmpty()) {
+				return;
+			}
+			ImmutableMap<String, Object> next = with(previous, updates);
+
+			// Checked and linked against the next constants before they are
+			// published, a value a field cannot hold leaves the container
+			// unchanged
+			checkConstants(changed, next);
+			Map<UnscopedProvider, InjectionPlan> relinked = new LinkedHashMap<UnscopedProvider, InjectionPlan>();
+			if (frozen) {
+				for (Binding binding : mapping.values()) {
+					UnscopedProvider unscoped = (UnscopedProvider) binding
+							.getUnscoped();
+					InjectionPlan linked = unscoped.linkedPlan;
+					if (linked != null && !reads(linked, changed).isEmpty()) {
+						relinked.put(unscoped, link(getPlan(binding
+								.getImplementation()), Collections
+								.<Key<?>, Object> emptyMap(), next));
+					}
+				}
+			}
+
+			constants = next;
+			for (Map.Entry<UnscopedProvider, InjectionPlan> entry : relinked
+					.entrySet()) {
+				entry.getKey().linkedPlan = entry.getValue();
+			}
+		}
+		LOG.log(Level.FINE, "Constants {0} updated", changed);
+
+		// Published, the setters of the singletons run without the lock
+		reinject(changed, notified);
+		for (ConstantListener listener : constantListeners) {
+			notified.put(listener, changed);
+		}
+		for (Map.Entry<ConstantListener, Set<String>> entry : notified
+				.entrySet()) {
+			try {
+				entry.getKey().constantsChanged(
+						Collections.unmodifiableSet(entry.getValue()));
+			} catch (RuntimeException e) {
+				LOG.log(Level.WARNING, "Constant listener " + entry.getKey()
+						+ " failed", e);
+			}
+		}
+	}
+
+	/**
+	 * Inject again the fields and the methods of the built singletons reading
+	 * a changed constant. A constant read by the constructor only reaches the
+	 * singleton as a listener. Each member reads the constants published
+	 * last, so concurrent updates leave the latest values whatever the order
+	 * of their re-injections. A singleton failing is logged and left with its
+	 * other members, like a failing listener.
+	 * 
+	 * @param notified
+	 *            filled with the singletons listening to their constants
+	 */
+	private void reinject(Set<String> changed,
+			Map<ConstantListener, Set<String>> notified) {
+		for (Binding binding : mapping.values()) {
+			if (binding.getScope() != Scopes.SINGLETON) {
+				continue;
+			}
+			Object instance = ((Scopes.SingletonProvider<?>) binding
+					.getProvider()).peek();
+			if (instance == null) {
+				continue;
+			}
+			InjectionPlan plan = ((UnscopedProvider) binding.getUnscoped()).linkedPlan;
+			if (plan == null) {
+				plan = getPlan(binding.getImplementation());
+			}
+			Set<String> read = reads(plan, changed);
+			if (read.isEmpty()) {
+				continue;
+			}
+			List<InjectionPoint> members = plan.getMembers();
+			List<DaAnnotation> handlers = plan.getHandlers();
+			try {
+				for (int i = 0; i < members.size(); i++) {
+					InjectionPoint member = members.get(i);
+					if (!Collections.disjoint(changed, Arrays.asList(member
+							.getConstants()))) {
+						handlers.get(i).apply(this, instance, member);
+					}
+				}
+			} catch (IllegalAccessException e) {
+				LOG.log(Level.WARNING, "Cannot inject " + instance + " again",
+						e);
+			} catch (RuntimeException e) {
+				LOG.log(Level.WARNING, "Cannot inject " + instance + " again",
+						e);
+			}
+			if (instance instanceof ConstantListener) {
+				notified.put((ConstantListener) instance, read);
+			}
+		}
+	}
+
+	/**
+	 * @return the changed constants read by the plan, a generated injector
+	 *         included
+	 */
+	private static Set<String> reads(InjectionPlan plan, Set<String> changed) {
+		List<String> names = new ArrayList<String>();
+		if (plan.getInjector() != null) {
+			names.addAll(Arrays.asList(plan.getInjector().getConstants()));
+		}
+		if (plan.getConstructor() != null) {
+			names.addAll(Arrays.asList(plan.getConstructor().getConstants()));
+		}
+		for (InjectionPoint member : plan.getMembers()) {
+			names.addAll(Arrays.asList(member.getConstants()));
+		}
+		Set<String> read = new LinkedHashSet<String>(names);
+		read.retainAll(changed);
+		return read;
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if a field of a plan created so far cannot hold the next
+	 *             value of a changed constant. The next plans check the
+	 *             values they are created with.
+	 */
+	private void checkConstants(Set<String> changed, Map<String, Object> next) {
+		DaContainerImpl owner = this;
+		while (!owner.ownSettings) {
+			owner = owner.parent;
+		}
+		for (InjectionPlan plan : owner.plans.values()) {
+			for (InjectionPoint member : plan.getMembers()) {
+				String[] names = member.getConstants();
+				for (int i = 0; i < names.length; i++) {
+					if (changed.contains(names[i])) {
+						member.checkConstant(i, next.get(names[i]));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return a copy of the constants with the updates
+	 */
+	private static ImmutableMap<String, Object> with(
+			Map<String, Object> current, Map<String, ?> updates) {
+		Map<String, Object> next = new LinkedHashMap<String, Object>(current);
+		next.putAll(updates);
+		return ImmutableMap.copyOf(next);
+	}
+
+	/**
+	 * @return the PreDestroy methods of the class, subclass first, without
+	 *         the overridden ones, shared by the callers
+	 * @throws IllegalArgumentException
+	 *             if a PreDestroy method is static or takes parameters
+	 */
+	static Method[] getPreDestroyMethods(Class<?> clazz) {
+		return PRE_DESTROY.get(clazz);
+	}
+
+	public void addConstantListener(ConstantListener listener) {
+		checkNotNull(listener, "The listener cannot be null");
+		constantListeners.add(listener);
+	}
+
+	public void removeConstantListener(ConstantListener listener) {
+		constantListeners.remove(listener);
+	}
+
+	public Object getConstant(String constantName) {
+		checkNotNull(constantName, "The constantName cannot be null");
+		Object value = constants.get(constantName);
+		if (value == null && parent != null) {
+			value = parent.lookupConstant(constantName);
+		}
+		if (value == null) {
+			throw new IllegalArgumentException(
+					"No binding founded for constantName : " + constantName);
+		}
+		return value;
+	}
+
+	@Override
+	public synchronized void bindAnnotation(
+			Class<? extends Annotation> annotation, String value) {
+		checkNotNull(annotation, "The annotation cannot be null");
+		checkNotNull(value, "The value cannot be null");
+		checkArgument(
+				annotation.isAnnotationPresent(AnnotationInjection.class),
+				"The annotation {0} must be annoted with AnnotationInjection",
+				annotation);
+		checkNotFrozen();
+
+		// The handler is bound before the annotation becomes visible to the
+		// resolutions
+		constants = with(constants,
+				Collections.singletonMap(annotation.getName(), value));
+		bind(annotation, AnnotationInjectionImpl.class);
+		copyParentSettings();
+		managedAnnotations.addIfAbsent(annotation);
+
+		// Plans computed so far ignore this annotation
+		updateDispatch();
+	}
+
+	@Override
+	public List<String> validate() {
+		restoreAll();
+		autoBindAll();
+		List<String> problems = new ArrayList<String>();
+		Set<Key<?>> validated = new HashSet<Key<?>>();
+		for (Key<?> key : mapping.keySet()) {
+			validate(key, new ArrayList<Key<?>>(), validated, problems);
+		}
+		return problems;
+	}
+
+	/**
+	 * Depth first walk of the bindings graph
+	 * 
+	 * @param contract
+	 *            a bound contract
+	 * @param path
+	 *            the contracts being validated, to detect the cycles
+	 * @param validated
+	 *            the contracts already walked
+	 * @param problems
+	 *            where the problems found are reported
+	 */
+	private void validate(Key<?> contract, List<Key<?>> path,
+			Set<Key<?>> validated, List<String> problems) {
+		int index = path.indexOf(contract);
+		if (index >= 0) {
+			List<Key<?>> cycle = new ArrayList<Key<?>>(path.subList(index,
+					path.size()));
+			cycle.add(contract);
+			problems.add("Cycle " + chain(cycle));
+			return;
+		}
+		if (!validated.add(contract)) {
+			return;
+		}
+
+		Binding binding = lookup(contract);
+		InjectionPlan plan;
+		try {
+			plan = getPlan(binding.getImplementation());
+		} catch (RuntimeException e) {
+			problems.add(String.format("%s cannot be scanned: %s",
+					binding.getImplementation().getName(), e));
+			return;
+		}
+		if (!plan.isConstructible()) {
+			problems.add(String.format(
+					"%s has neither an annotated nor a public default constructor",
+					plan.getType().getName()));
+		}
+
+		path.add(contract);
+		Injector<?> injector = plan.getInjector();
+		if (injector != null) {
+			for (Class<?> required : injector.getDependencies()) {
+				validate(injector.getClass().getName(),
+						Dependency.instance(Key.get(required)), path, validated,
+						problems);
+			}
+			for (String constant : injector.getConstants()) {
+				validate(injector.getClass().getName(), constant, problems);
+			}
+		}
+		for (InjectionPoint injectionPoint : injectionPoints(plan)) {
+			for (Dependency dependency : injectionPoint.getDependencies()) {
+				validate(injectionPoint, dependency, path, validated, problems);
+			}
+			String[] constants = injectionPoint.getConstants();
+			for (int i = 0; i < constants.length; i++) {
+				validate(injectionPoint, constants[i], problems);
+				Object value = lookupConstant(constants[i]);
+				if (value != null) {
+					// Rebound since the plan was created
+					try {
+						injectionPoint.checkConstant(i, value);
+					} catch (IllegalArgumentException e) {
+						problems.add(String.format("%s: %s", injectionPoint,
+								e.getMessage()));
+					}
+				}
+			}
+		}
+		path.remove(path.size() - 1);
+	}
+
+	/**
+	 * @param requirer
+	 *            the injection point or the injector requiring the dependency
+	 */
+	private void validate(Object requirer, Dependency dependency,
+			List<Key<?>> path, Set<Key<?>> validated, List<String> problems) {
+		Key<?> required = dependency.getKey();
+		if (lookup(required) == null) {
+			problems.add(String.format("%s requires %s which is not bound",
+					requirer, required));
+		} else if (dependency.isDeferred()) {
+			// Resolved later, outside of this path
+			validate(required, new ArrayList<Key<?>>(), validated, problems);
+		} else {
+			validate(required, path, validated, problems);
+		}
+	}
+
+	/**
+	 * @param requirer
+	 *            the injection point or the injector requiring the constant
+	 */
+	private void validate(Object requirer, String constant,
+			List<String> problems) {
+		if (lookupConstant(constant) == null) {
+			problems.add(String.format(
+					"%s requires the constant %s which is not bound", requirer,
+					constant));
+		}
+	}
+
+	public void bootstrap() {
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			bootstrap(pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	public void bootstrap(Executor executor) {
+		checkNotNull(executor, "The executor cannot be null");
+		restoreAll();
+
+		Map<Key<?>, Set<Key<?>>> graph = new LinkedHashMap<Key<?>, Set<Key<?>>>();
+		for (Binding binding : mapping.values()) {
+			if (binding.getScope() == Scopes.SINGLETON) {
+				graph.put(binding.getKey(), singletonDependencies(binding));
+			}
+		}
+		new SingletonBootstrap(this, graph, executor).run();
+		LOG.log(Level.FINE, "{0} singletons built", graph.size());
+	}
+
+	/**
+	 * Walk the eager dependencies of a binding, through the bindings of
+	 * other scopes, up to the singletons
+	 * 
+	 * @param binding
+	 *            a singleton binding
+	 * @return the singletons built by the binding
+	 */
+	private Set<Key<?>> singletonDependencies(Binding binding) {
+		Set<Key<?>> singletons = new LinkedHashSet<Key<?>>();
+		Set<Key<?>> walked = new HashSet<Key<?>>();
+		walked.add(binding.getKey());
+		Deque<Binding> bindings = new ArrayDeque<Binding>();
+		bindings.push(binding);
+		while (!bindings.isEmpty()) {
+			InjectionPlan plan;
+			try {
+				plan = getPlan(bindings.pop().getImplementation());
+			} catch (RuntimeException e) {
+				// Reported when the binding is built
+				continue;
+			}
+			for (Key<?> required : eagerDependencies(plan)) {
+				Binding dependency = lookup(required);
+				if (dependency == null || !walked.add(dependency.getKey())) {
+					continue;
+				}
+				if (dependency.getScope() == Scopes.SINGLETON) {
+					singletons.add(dependency.getKey());
+				} else {
+					bindings.push(dependency);
+				}
+			}
+		}
+		return singletons;
+	}
+
+	/**
+	 * @return the contracts resolved while an instance of the plan is built
+	 */
+	private static List<Key<?>> eagerDependencies(InjectionPlan plan) {
+		List<Key<?>> dependencies = new ArrayList<Key<?>>();
+		Injector<?> injector = plan.getInjector();
+		if (injector != null) {
+			for (Class<?> required : injector.getDependencies()) {
+				dependencies.add(Key.get(required));
+			}
+		}
+		for (InjectionPoint injectionPoint : injectionPoints(plan)) {
+			for (Dependency dependency : injectionPoint.getDependencies()) {
+				if (!dependency.isDeferred()) {
+					dependencies.add(dependency.getKey());
+				}
+			}
+		}
+		return dependencies;
+	}
+
+	private static List<InjectionPoint> injectionPoints(InjectionPlan plan) {
+		List<InjectionPoint> injectionPoints = new ArrayList<InjectionPoint>();
+		if (plan.getConstructor() != null) {
+			injectionPoints.add(plan.getConstructor());
+		}
+		injectionPoints.addAll(plan.getMembers());
+		return injectionPoints;
+	}
+
+	private static String chain(List<Key<?>> contracts) {
+		StringBuilder chain = new StringBuilder();
+		for (Key<?> contract : contracts) {
+			if (chain.length() > 0) {
+				chain.append(" -> ");
+			}
+			chain.append(contract);
+		}
+		return chain.toString();
+	}
+
+	@Override
+	public synchronized void freeze() {
+		if (frozen) {
+			return;
+		}
+
+		List<String> problems = validate();
+		if (!problems.isEmpty()) {
+			StringBuilder report = new StringBuilder("Invalid container:");
+			for (String problem : problems) {
+				report.append("\n - ").append(problem);
+			}
+			throw new IllegalStateException(report.toString());
+		}
+
+		frozen = true;
+		for (Binding binding : mapping.values()) {
+			UnscopedProvider unscoped = (UnscopedProvider) binding
+					.getUnscoped();
+			unscoped.linkedPlan = link(getPlan(binding.getImplementation()));
+		}
+		LOG.log(Level.FINE, "Container frozen");
+	}
+
+	/**
+	 * @param plan
+	 *            a plan of a valid container
+	 * @return a copy of the plan resolving its dependencies and constants
+	 *         without any lookup
+	 */
+	private InjectionPlan link(InjectionPlan plan) {
+		return link(plan, Collections.<Key<?>, Object> emptyMap());
+	}
+
+	/**
+	 * @param resolved
+	 *            the instances already resolved for some contracts
+	 */
+	private InjectionPlan link(InjectionPlan plan, Map<Key<?>, Object> resolved) {
+		return link(plan, resolved, constants);
+	}
+
+	/**
+	 * @param own
+	 *            the constants of this container
+	 */
+	private InjectionPlan link(InjectionPlan plan,
+			Map<Key<?>, Object> resolved, Map<String, Object> own) {
+		InjectionPoint constructor = plan.getConstructor();
+		if (constructor != null) {
+			constructor = link(constructor, resolved, own);
+		}
+		List<InjectionPoint> members = new ArrayList<InjectionPoint>();
+		for (InjectionPoint member : plan.getMembers()) {
+			members.add(link(member, resolved, own));
+		}
+		return plan.withInjectionPoints(constructor, members);
+	}
+
+	private InjectionPoint link(InjectionPoint injectionPoint,
+			Map<Key<?>, Object> resolved, Map<String, Object> own) {
+		Dependency[] dependencies = injectionPoint.getDependencies();
+		Provider<?>[] providers = new Provider<?>[dependencies.length];
+		for (int i = 0; i < dependencies.length; i++) {
+			final Key<?> key = dependencies[i].getKey();
+			if (!dependencies[i].isDeferred() && resolved.containsKey(key)) {
+				final Object instance = resolved.get(key);
+				providers[i] = new Provider<Object>() {
+					public Object get() {
+						return instance;
+					}
+				};
+				continue;
+			}
+			Binding binding = lookup(key);
+			if (binding != null && mapping.get(binding.getKey()) == binding) {
+				providers[i] = binding.getProvider();
+			} else {
+				// Inherited or unbound, resolved as getInstance does
+				providers[i] = new Provider<Object>() {
+					public Object get() {
+						return getInstance(key);
+					}
+				};
+			}
+		}
+		String[] names = injectionPoint.getConstants();
+		Object[] values = new Object[names.length];
+		for (int i = 0; i < names.length; i++) {
+			values[i] = lookupConstant(names[i], own);
+		}
+		return injectionPoint.link(providers, values);
+	}
+
+	private void checkNotFrozen() {
+		checkState(!frozen, "The container is frozen");
+	}
+
+	/**
+	 * Builds a new instance on each call. Once the container is frozen, it
+	 * runs the program of the linked plan, which builds the unscoped
+	 * dependencies without recursion, else replays the plan. The construction
+	 * is tracked in the resolution path of the thread to detect the cycles.
+	 */
+	private final class UnscopedProvider implements Provider<Object>,
+			ResolutionProgram.Callee {
+
+		private final Class<?> clazz;
+
+		private volatile InjectionPlan linkedPlan;
+
+		// Replaced when the plan is linked again
+		private volatile Compiled compiled;
+
+		// Only the instances of an unscoped binding are left to the request
+		// scope, a scope keeps the others and their dependencies
+		private final boolean tracked;
+
+		UnscopedProvider(Class<?> clazz, Scope scope) {
+			this.clazz = clazz;
+			this.tracked = scope == Scopes.NO_SCOPE;
+			if (tracked) {
+				// Checked now rather than when a request scope is closed
+				getPreDestroyMethods(clazz);
+			}
+		}
+
+		public Object get() {
+			if (tracked) {
+				return build();
+			}
+			ResolutionPath path = ResolutionPath.current();
+			path.enterScoped();
+			try {
+				return build();
+			} finally {
+				path.leaveScoped();
+			}
+		}
+
+		private Object build() {
+			ResolutionProgram resolution = getProgram();
+			if (resolution != null) {
+				return resolution.run(tracked, instrumentation);
+			}
+			return construct(clazz, linkedPlan, tracked);
+		}
+
+		/**
+		 * @return the program of the linked plan
+		 */
+		public ResolutionProgram getProgram() {
+			InjectionPlan plan = linkedPlan;
+			Compiled current = compiled;
+			if (current == null || current.plan != plan) {
+				if (plan == null) {
+					return null;
+				}
+				// Compiled twice at worst, the programs are equivalent
+				current = new Compiled(plan, ResolutionProgram.compile(plan));
+				compiled = current;
+			}
+			return current.program;
+		}
+
+		public Instrumentation getInstrumentation() {
+			return instrumentation;
+		}
+	}
+
+	/**
+	 * A linked plan and its program, null when the plan has none
+	 */
+	private static final class Compiled {
+
+		final InjectionPlan plan;
+
+		final ResolutionProgram program;
+
+		Compiled(InjectionPlan plan, ResolutionProgram program) {
+			this.plan = plan;
+			this.program = program;
+		}
+	}
+
+	/**
+	 * Build a new instance, tracked in the resolution path of the thread
+	 * 
+	 * @param clazz
+	 *            the class to build
+	 * @param linkedPlan
+	 *            the plan linked by freeze, or null to look it up
+	 * @param tracked
+	 *            true to record the instance in the open request scope
+	 * @return the instance
+	 */
+	private Object construct(Class<?> clazz, InjectionPlan linkedPlan,
+			boolean tracked) {
+		InjectionPlan plan = linkedPlan;
+		if (plan == null) {
+			plan = getPlan(clazz);
+		}
+		ResolutionPath path = ResolutionPath.current();
+		path.push(clazz);
+		Instrumentation observer = instrumentation;
+		long start = observer != Instrumentations.NONE ? System.nanoTime() : 0;
+		try {
+			Object instance = plan.newInstance(this);
+			if (observer != Instrumentations.NONE) {
+				observer.constructed(clazz, System.nanoTime() - start,
+						plan.getInjectionPointCount());
+			}
+			if (tracked && instance != null) {
+				path.track(instance);
+			}
+			return instance;
+		} finally {
+			path.pop();
+		}
 	}
 }
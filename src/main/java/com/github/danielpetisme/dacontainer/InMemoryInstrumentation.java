@@ -0,0 +1,274 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the resolutions per class in memory. The construction latencies
+ * are kept in a histogram of power of two buckets: bucket i counts the
+ * constructions that took from 2^i to 2^(i+1) - 1 nanoseconds.
+ */
+public class InMemoryInstrumentation implements Instrumentation {
+
+	private static final int BUCKETS = 64;
+
+	private final ConcurrentMap<Class<?>, Counters> counters = new ConcurrentHashMap<Class<?>, Counters>();
+
+	public void resolved(Class<?> contract) {
+		counters(contract).resolutions.incrementAndGet();
+	}
+
+	public void constructed(Class<?> clazz, long nanos, int injectionPoints) {
+		Counters counter = counters(clazz);
+		counter.constructions.incrementAndGet();
+		counter.injectionPoints.addAndGet(injectionPoints);
+		counter.nanos.addAndGet(nanos);
+		counter.latencies.incrementAndGet(bucket(nanos));
+	}
+
+	public void planLookup(Class<?> clazz, boolean hit) {
+		Counters counter = counters(clazz);
+		if (hit) {
+			counter.planHits.incrementAndGet();
+		} else {
+			counter.planMisses.incrementAndGet();
+		}
+	}
+
+	public void scopeLookup(Class<?> contract, boolean hit) {
+		Counters counter = counters(contract);
+		if (hit) {
+			counter.scopeHits.incrementAndGet();
+		} else {
+			counter.scopeMisses.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return the metrics recorded so far, by contract or constructed class.
+	 *         The counters of a class are read one by one while the
+	 *         resolutions go on, so they can be slightly apart.
+	 */
+	public Map<Class<?>, Metrics> snapshot() {
+		Map<Class<?>, Metrics> snapshot = new LinkedHashMap<Class<?>, Metrics>();
+		for (Map.Entry<Class<?>, Counters> entry : counters.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().snapshot());
+		}
+		return Collections.unmodifiableMap(snapshot);
+	}
+
+	/**
+	 * Forget the metrics recorded so far
+	 */
+	public void reset() {
+		counters.clear();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (Map.Entry<Class<?>, Metrics> entry : snapshot().entrySet()) {
+			builder.append(entry.getKey().getName()).append(' ')
+					.append(entry.getValue()).append('\n');
+		}
+		return builder.toString();
+	}
+
+	private Counters counters(Class<?> clazz) {
+		Counters counter = counters.get(clazz);
+		if (counter == null) {
+			counter = new Counters();
+			Counters existing = counters.putIfAbsent(clazz, counter);
+			if (existing != null) {
+				counter = existing;
+			}
+		}
+		return counter;
+	}
+
+	private static int bucket(long nanos) {
+		return nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+	}
+
+	private static final class Counters {
+
+		final AtomicLong resolutions = new AtomicLong();
+
+		final AtomicLong constructions = new AtomicLong();
+
+		final AtomicLong injectionPoints = new AtomicLong();
+
+		final AtomicLong nanos = new AtomicLong();
+
+		final AtomicLong planHits = new AtomicLong();
+
+		final AtomicLong planMisses = new AtomicLong();
+
+		final AtomicLong scopeHits = new AtomicLong();
+
+		final AtomicLong scopeMisses = new AtomicLong();
+
+		final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+
+		Metrics snapshot() {
+			long[] histogram = new long[BUCKETS];
+			for (int i = 0; i < BUCKETS; i++) {
+				histogram[i] = latencies.get(i);
+			}
+			return new Metrics(resolutions.get(), constructions.get(),
+					injectionPoints.get(), nanos.get(), planHits.get(),
+					planMisses.get(), scopeHits.get(), scopeMisses.get(),
+					histogram);
+		}
+	}
+
+	/**
+	 * The metrics of a class at the time of the snapshot
+	 */
+	public static final class Metrics {
+
+		private final long resolutions;
+
+		private final long constructions;
+
+		private final long injectionPoints;
+
+		private final long nanos;
+
+		private final long planHits;
+
+		private final long planMisses;
+
+		private final long scopeHits;
+
+		private final long scopeMisses;
+
+		private final long[] histogram;
+
+		Metrics(long resolutions, long constructions, long injectionPoints,
+				long nanos, long planHits, long planMisses, long scopeHits,
+				long scopeMisses, long[] histogram) {
+			this.resolutions = resolutions;
+			this.constructions = constructions;
+			this.injectionPoints = injectionPoints;
+			this.nanos = nanos;
+			this.planHits = planHits;
+			this.planMisses = planMisses;
+			this.scopeHits = scopeHits;
+			this.scopeMisses = scopeMisses;
+			this.histogram = histogram;
+		}
+
+		/**
+		 * @return the getInstance calls of the contract
+		 */
+		public long getResolutions() {
+			return resolutions;
+		}
+
+		/**
+		 * @return the new instances of the class
+		 */
+		public long getConstructions() {
+			return constructions;
+		}
+
+		/**
+		 * @return the injection points applied over all the constructions
+		 */
+		public long getInjectionPoints() {
+			return injectionPoints;
+		}
+
+		public long getTotalNanos() {
+			return nanos;
+		}
+
+		public long getPlanHits() {
+			return planHits;
+		}
+
+		public long getPlanMisses() {
+			return planMisses;
+		}
+
+		/**
+		 * @return the resolutions of the contract its scope already held an
+		 *         instance for
+		 */
+		public long getScopeHits() {
+			return scopeHits;
+		}
+
+		/**
+		 * @return the resolutions of the contract its scope built an instance
+		 *         for
+		 */
+		public long getScopeMisses() {
+			return scopeMisses;
+		}
+
+		/**
+		 * @return the construction count of each power of two bucket
+		 */
+		public long[] getLatencyHistogram() {
+			return histogram.clone();
+		}
+
+		/**
+		 * @param percentile
+		 *            between 0 and 100
+		 * @return an upper bound, in nanoseconds, of the given percentile of
+		 *         the construction latencies, 0 without construction
+		 */
+		public long getLatencyPercentile(double percentile) {
+			checkArgument(percentile >= 0 && percentile <= 100,
+					"The percentile %s is not between 0 and 100", percentile);
+			long rank = (long) Math.ceil(constructions * percentile / 100);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += histogram[i];
+				if (seen >= rank && seen > 0) {
+					return i == BUCKETS - 1 ? Long.MAX_VALUE : (2L << i) - 1;
+				}
+			}
+			return 0;
+		}
+
+		@Override
+		public String toString() {
+			return "resolutions=" + resolutions + ", constructions="
+					+ constructions + ", injectionPoints=" + injectionPoints
+					+ ", meanNanos="
+					+ (constructions == 0 ? 0 : nanos / constructions)
+					+ ", p99Nanos<=" + getLatencyPercentile(99)
+					+ ", planHits=" + planHits + ", planMisses=" + planMisses
+					+ ", scopeHits=" + scopeHits + ", scopeMisses="
+					+ scopeMisses
+					+ ", histogram=" + Arrays.toString(histogram);
+		}
+	}
+}
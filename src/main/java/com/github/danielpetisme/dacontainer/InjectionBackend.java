@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer;
+
+import com.github.danielpetisme.dacontainer.internal.InvokerFactory;
+import com.github.danielpetisme.dacontainer.internal.ReflectionInvokerFactory;
+
+/**
+ * How the container calls the constructors, fields and methods it injects.
+ * The fast path is an {@link Injector} generated by the annotation processor,
+ * which the container uses instead of the backend for the classes it covers.
+ */
+public enum InjectionBackend {
+
+	/**
+	 * Constructor.newInstance, Field.set and Method.invoke
+	 */
+	REFLECTION(new ReflectionInvokerFactory());
+
+	private final InvokerFactory invokerFactory;
+
+	private InjectionBackend(InvokerFactory invokerFactory) {
+		this.invokerFactory = invokerFactory;
+	}
+
+	InvokerFactory getInvokerFactory() {
+		return invokerFactory;
+	}
+}
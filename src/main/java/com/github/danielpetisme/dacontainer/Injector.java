@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer;
+
+/**
+ * Builds and injects a class without reflection. Injectors are generated at
+ * compile time by the dacontainer-processor module, as the class
+ * &lt;binary name of the class&gt;$$DaInjector. The container uses the
+ * injector of a class when it finds one and the built-in handlers of the
+ * annotations are bound, and scans the class otherwise.
+ * 
+ * @param <T>
+ *            the injected class
+ */
+public interface Injector<T> {
+
+	/**
+	 * Same as the reflection: constructor, then fields, then methods
+	 * 
+	 * @param container
+	 *            the container resolving the dependencies and constants
+	 * @return a new injected instance
+	 */
+	public T newInstance(DaContainer container);
+
+	/**
+	 * @return the contracts resolved by each instance, for the validation
+	 */
+	public Class<?>[] getDependencies();
+
+	/**
+	 * @return the names of the constants read by each instance, for the
+	 *         validation
+	 */
+	public String[] getConstants();
+
+	/**
+	 * @return the annotations the injector handles. The container falls back
+	 *         to the reflection when one of them is not managed.
+	 */
+	public Class<?>[] getAnnotations();
+
+	/**
+	 * @return the constructor, fields and methods injected in each instance
+	 */
+	public int getInjectionPointCount();
+}
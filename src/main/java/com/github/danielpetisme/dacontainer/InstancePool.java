@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded pool of instances of a binding bound with a {@link PooledScope}.
+ * Resolving the binding acquires an instance, idle or new when the pool is
+ * empty, {@link #release(Object)} gives it back once the caller is done with
+ * it.
+ * <p>
+ * The idle instances are kept in an array of slots claimed with a
+ * compare-and-set, each thread starts from its own slot so that threads
+ * rarely race for the same one. Nothing is locked.
+ * 
+ * @param <T>
+ *            the type of the instances
+ */
+public final class InstancePool<T> implements Provider<T> {
+
+	/**
+	 * Brings a released instance back to a reusable state
+	 * 
+	 * @param <T>
+	 *            the type of the instances
+	 */
+	public interface Reset<T> {
+
+		/**
+		 * Called on each released instance before it is pooled again. When
+		 * it throws, the instance is not pooled.
+		 */
+		public void reset(T instance);
+	}
+
+	// Spreads the thread ids over the slots
+	private static final int SPREAD = 0x9E3779B9;
+
+	private final Provider<T> unscoped;
+
+	private final Reset<? super T> reset;
+
+	private final AtomicReferenceArray<T> slots;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong contentions = new AtomicLong();
+
+	private final AtomicLong discards = new AtomicLong();
+
+	/**
+	 * @param unscoped
+	 *            builds a new instance when the pool is empty
+	 * @param capacity
+	 *            the maximum number of idle instances
+	 * @param reset
+	 *            called on each released instance, may be null
+	 */
+	InstancePool(Provider<T> unscoped, int capacity, Reset<? super T> reset) {
+		this.unscoped = unscoped;
+		this.reset = reset;
+		this.slots = new AtomicReferenceArray<T>(capacity);
+	}
+
+	/**
+	 * Same as {@link #acquire()}, called on each resolution of the binding
+	 */
+	public T get() {
+		return acquire();
+	}
+
+	/**
+	 * @return an idle instance, or a new one built by the container when
+	 *         the pool is empty
+	 */
+	public T acquire() {
+		int length = slots.length();
+		int start = start(length);
+		for (int i = 0; i < length; i++) {
+			int index = (start + i) % length;
+			T instance = slots.get(index);
+			if (instance != null) {
+				if (slots.compareAndSet(index, instance, null)) {
+					hits.incrementAndGet();
+					return instance;
+				}
+				contentions.incrementAndGet();
+			}
+		}
+		misses.incrementAndGet();
+		return unscoped.get();
+	}
+
+	/**
+	 * Reset the instance and pool it again. The instance is dropped when the
+	 * pool is full.
+	 * 
+	 * @param instance
+	 *            an instance acquired from this pool, not used by the caller
+	 *            anymore
+	 * @throws IllegalArgumentException
+	 *             if the instance is already idle in the pool
+	 */
+	public void release(T instance) {
+		checkNotNull(instance, "The instance cannot be null");
+		int length = slots.length();
+		// Else it would be reset while idle, then handed out twice
+		for (int i = 0; i < length; i++) {
+			if (slots.get(i) == instance) {
+				throw new IllegalArgumentException(instance
+						+ " is already released");
+			}
+		}
+		if (reset != null) {
+			reset.reset(instance);
+		}
+		int start = start(length);
+		for (int i = 0; i < length; i++) {
+			int index = (start + i) % length;
+			if (slots.get(index) == null) {
+				if (slots.compareAndSet(index, null, instance)) {
+					return;
+				}
+				contentions.incrementAndGet();
+			}
+		}
+		discards.incrementAndGet();
+	}
+
+	/**
+	 * @return the number of acquisitions served by an idle instance
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of acquisitions that built a new instance
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of slots lost to another thread while acquiring or
+	 *         releasing
+	 */
+	public long getContentions() {
+		return contentions.get();
+	}
+
+	/**
+	 * @return the number of released instances dropped by a full pool
+	 */
+	public long getDiscards() {
+		return discards.get();
+	}
+
+	/**
+	 * @return the maximum number of idle instances
+	 */
+	public int getCapacity() {
+		return slots.length();
+	}
+
+	private static int start(int length) {
+		int hash = (int) Thread.currentThread().getId() * SPREAD;
+		return (hash >>> 1) % length;
+	}
+
+	@Override
+	public String toString() {
+		return "InstancePool [capacity=" + slots.length() + ", hits=" + hits
+				+ ", misses=" + misses + ", contentions=" + contentions
+				+ ", discards=" + discards + "]";
+	}
+}
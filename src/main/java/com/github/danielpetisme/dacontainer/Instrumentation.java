@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer;
+
+/**
+ * Observes the resolutions of a container. The calls are made on the
+ * resolving thread, so the implementations must be thread safe and fast.
+ * The default, {@link Instrumentations#NONE}, is skipped by the container
+ * without reading the clock.
+ */
+public interface Instrumentation {
+
+	/**
+	 * A contract has been resolved, whatever its scope
+	 * 
+	 * @param contract
+	 *            the requested contract
+	 */
+	public void resolved(Class<?> contract);
+
+	/**
+	 * A new instance has been built and injected
+	 * 
+	 * @param clazz
+	 *            the constructed class
+	 * @param nanos
+	 *            the construction time, dependencies included
+	 * @param injectionPoints
+	 *            the constructor, fields and methods injected
+	 */
+	public void constructed(Class<?> clazz, long nanos, int injectionPoints);
+
+	/**
+	 * The injection plan of a class has been looked up
+	 * 
+	 * @param clazz
+	 *            the constructed class
+	 * @param hit
+	 *            false when the class had to be scanned
+	 */
+	public void planLookup(Class<?> clazz, boolean hit);
+
+	/**
+	 * A contract bound in a scope has been resolved, right after
+	 * {@link #resolved(Class)}
+	 * 
+	 * @param contract
+	 *            the requested contract
+	 * @param hit
+	 *            false when the scope built a new instance on this thread
+	 */
+	public void scopeLookup(Class<?> contract, boolean hit);
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import com.google.common.base.Objects;
+
+/**
+ * Identifies a binding by a type, generic or not, and an optional name. The
+ * type arguments are part of the key, so List&lt;Foo&gt; and List&lt;Bar&gt;
+ * are distinct contracts. A generic type is captured by an anonymous
+ * subclass:
+ * 
+ * <pre>
+ * Key&lt;List&lt;Foo&gt;&gt; foos = new Key&lt;List&lt;Foo&gt;&gt;() {};
+ * </pre>
+ * 
+ * The hash code is computed once, and the key of a class without a name is
+ * cached, so getting it again does not allocate.
+ * 
+ * @param <T>
+ *            the type of the instances
+ */
+public class Key<T> {
+
+	private static final ClassValue<Key<?>> CLASS_KEYS = new ClassValue<Key<?>>() {
+		@Override
+		protected Key<?> computeValue(Class<?> type) {
+			return new Key<Object>(type, null);
+		}
+	};
+
+	private final Type type;
+
+	private final Class<?> rawType;
+
+	private final String name;
+
+	private final int hashCode;
+
+	/**
+	 * Capture the type argument of an anonymous subclass
+	 */
+	protected Key() {
+		this(null);
+	}
+
+	/**
+	 * Capture the type argument of an anonymous subclass
+	 * 
+	 * @param name
+	 *            the name qualifying the type, or null
+	 */
+	protected Key(String name) {
+		Type superclass = getClass().getGenericSuperclass();
+		checkArgument(superclass instanceof ParameterizedType,
+				"%s does not declare the type of the key", getClass());
+		this.type = checkType(((ParameterizedType) superclass)
+				.getActualTypeArguments()[0]);
+		this.rawType = rawType(type);
+		this.name = name;
+		this.hashCode = hashCode(type, name);
+	}
+
+	private Key(Type type, String name) {
+		this.type = checkType(type);
+		this.rawType = rawType(type);
+		this.name = name;
+		this.hashCode = hashCode(type, name);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> Key<T> get(Class<T> type) {
+		checkNotNull(type, "The type cannot be null");
+		return (Key<T>) CLASS_KEYS.get(type);
+	}
+
+	public static <T> Key<T> get(Class<T> type, String name) {
+		checkNotNull(type, "The type cannot be null");
+		if (name == null) {
+			return get(type);
+		}
+		return new Key<T>(type, name);
+	}
+
+	/**
+	 * @param type
+	 *            a class or a parameterized type, with no type variable
+	 * @param name
+	 *            the name qualifying the type, or null
+	 * @return the key
+	 */
+	public static Key<?> get(Type type, String name) {
+		checkNotNull(type, "The type cannot be null");
+		if (type instanceof Class<?> && name == null) {
+			return CLASS_KEYS.get((Class<?>) type);
+		}
+		return new Key<Object>(type, name);
+	}
+
+	/**
+	 * @param type
+	 *            a type declared by an injection point
+	 * @return true when a key can be made of the type
+	 */
+	public static boolean isSpecified(Type type) {
+		if (type instanceof Class<?>) {
+			return true;
+		}
+		if (!(type instanceof ParameterizedType)) {
+			return false;
+		}
+		for (Type argument : ((ParameterizedType) type)
+				.getActualTypeArguments()) {
+			if (!isSpecified(argument)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Type checkType(Type type) {
+		checkNotNull(type, "The type cannot be null");
+		checkArgument(isSpecified(type),
+				"%s is not a class or a parameterized type of classes", type);
+		return type;
+	}
+
+	private static Class<?> rawType(Type type) {
+		if (type instanceof ParameterizedType) {
+			return (Class<?>) ((ParameterizedType) type).getRawType();
+		}
+		return (Class<?>) type;
+	}
+
+	private static int hashCode(Type type, String name) {
+		return 31 * type.hashCode() + (name == null ? 0 : name.hashCode());
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return the class of the type, without its type arguments
+	 */
+	public Class<?> getRawType() {
+		return rawType;
+	}
+
+	/**
+	 * @return the name qualifying the type, or null
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the key of the raw type with the same name, this key when the
+	 *         type is a class
+	 */
+	public Key<?> withoutTypeArguments() {
+		if (type == rawType) {
+			return this;
+		}
+		return get(rawType, name);
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (!(object instanceof Key<?>)) {
+			return false;
+		}
+		Key<?> other = (Key<?>) object;
+		return hashCode == other.hashCode && type.equals(other.type)
+				&& Objects.equal(name, other.name);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public String toString() {
+		String typeName = type instanceof Class<?> ? ((Class<?>) type)
+				.getName() : type.toString();
+		return name == null ? typeName : "@Named(" + name + ") " + typeName;
+	}
+}
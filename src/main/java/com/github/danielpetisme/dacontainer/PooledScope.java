@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reuses the instances of a binding through an {@link InstancePool}, for
+ * objects costly to build and not thread-safe, such as parsers or buffers.
+ * Each binding using the scope gets its own pool. Created by
+ * {@link Scopes#pooled(int)}.
+ */
+public final class PooledScope implements Scope {
+
+	private final int capacity;
+
+	private final Class<?> resettable;
+
+	private final InstancePool.Reset<?> reset;
+
+	private final ConcurrentMap<Key<?>, InstancePool<?>> pools = new ConcurrentHashMap<Key<?>, InstancePool<?>>();
+
+	PooledScope(int capacity, Class<?> resettable, InstancePool.Reset<?> reset) {
+		checkArgument(capacity > 0, "The capacity must be positive");
+		checkNotNull(resettable, "The type cannot be null");
+
+		this.capacity = capacity;
+		this.resettable = resettable;
+		this.reset = reset;
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> Provider<T> scope(Key<?> key, Provider<T> unscoped) {
+		checkNotNull(unscoped, "The provider cannot be null");
+		checkArgument(resettable.isAssignableFrom(key.getRawType()),
+				"%s cannot be reset as a %s", key, resettable);
+
+		// Checked above, every instance of the contract is a resettable one
+		InstancePool<T> pool = new InstancePool<T>(unscoped, capacity,
+				(InstancePool.Reset<? super T>) reset);
+		pools.put(key, pool);
+		return pool;
+	}
+
+	/**
+	 * @param contract
+	 *            a contract bound with this scope, without name
+	 * @return the pool of the binding, to release the instances and read its
+	 *         counters
+	 */
+	public <T> InstancePool<T> getPool(Class<T> contract) {
+		return getPool(Key.get(contract));
+	}
+
+	/**
+	 * @param key
+	 *            a key bound with this scope
+	 * @return the pool of the binding, to release the instances and read its
+	 *         counters
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> InstancePool<T> getPool(Key<T> key) {
+		InstancePool<?> pool = pools.get(key);
+		checkArgument(pool != null, "%s is not bound with this scope", key);
+		return (InstancePool<T>) pool;
+	}
+
+	@Override
+	public String toString() {
+		return "POOLED(" + capacity + ")";
+	}
+}
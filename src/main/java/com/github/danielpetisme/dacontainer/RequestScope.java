@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.danielpetisme.dacontainer.annotations.PreDestroy;
+import com.github.danielpetisme.dacontainer.internal.ResolutionPath;
+
+/**
+ * Records the unscoped instances built by its thread while it is open, the
+ * dependencies included, so a request releases what it created in one step.
+ * The scope belongs to the thread, not to a container: the instances of
+ * every container resolving on the thread are recorded. The singletons and
+ * the other scoped instances are left to their scope.
+ * <p>
+ * Closing the scope calls, newest instance first, the {@link PreDestroy}
+ * methods of each instance, then close() on an {@link AutoCloseable} one
+ * unless it is one of them. A failing callback does not stop the others,
+ * those of the same instance included: once all have run, an
+ * IllegalStateException is thrown with each distinct failure suppressed.
+ * The PreDestroy methods are checked when the class is bound.
+ * <p>
+ * A scope is closed by the thread which opened it, after the scopes opened
+ * inside it. The instances built on other threads, by getInstanceAsync for
+ * instance, are not recorded.
+ */
+public final class RequestScope implements Closeable {
+
+	private static final Method[] NO_METHODS = new Method[0];
+
+	private final ResolutionPath path;
+
+	private final Thread thread;
+
+	private final int start;
+
+	private final int depth;
+
+	private boolean closed;
+
+	private RequestScope() {
+		this.path = ResolutionPath.current();
+		this.thread = Thread.currentThread();
+		this.start = path.openScope();
+		this.depth = path.getScopeDepth();
+	}
+
+	/**
+	 * Open a scope recording the unscoped instances this thread builds until
+	 * it is closed, to dispose of them together
+	 * 
+	 * @return the scope, to close in a finally block
+	 */
+	public static RequestScope open() {
+		return new RequestScope();
+	}
+
+	/**
+	 * @return the number of instances recorded so far, the ones of the
+	 *         nested scopes still open included
+	 */
+	public int size() {
+		checkState(!closed, "The scope is closed");
+		checkState(Thread.currentThread() == thread,
+				"The scope belongs to another thread");
+		return path.getInstanceCount() - start;
+	}
+
+	/**
+	 * Dispose of the recorded instances, newest first, and forget them
+	 * 
+	 * @throws IllegalStateException
+	 *             when called by another thread, or with a nested scope still
+	 *             open
+	 */
+	public void close() {
+		if (closed) {
+			return;
+		}
+		checkState(Thread.currentThread() == thread,
+				"The scope belongs to another thread");
+		checkState(path.getScopeDepth() == depth,
+				"A scope opened inside this one is still open");
+		closed = true;
+
+		Object[] instances = path.closeScope(start);
+		List<Throwable> failures = new ArrayList<Throwable>();
+		for (int i = instances.length - 1; i >= 0; i--) {
+			dispose(instances[i], failures);
+		}
+		if (!failures.isEmpty()) {
+			IllegalStateException failure = new IllegalStateException(
+					"Cannot dispose of the scope");
+			for (Throwable e : failures) {
+				failure.addSuppressed(e);
+			}
+			throw failure;
+		}
+	}
+
+	/**
+	 * Run the callbacks of the instance, whatever they throw
+	 * 
+	 * @param failures
+	 *            the failures of the scope so far, completed
+	 */
+	private static void dispose(Object instance, List<Throwable> failures) {
+		Method[] methods = NO_METHODS;
+		try {
+			methods = DaContainerImpl.getPreDestroyMethods(instance.getClass());
+		} catch (RuntimeException e) {
+			// Checked at binding time, close() is still called
+			failed(failures, e);
+		}
+		// Only looked up when a callback may be the close() method
+		Method close = methods.length > 0 ? closeMethod(instance) : null;
+		boolean closed = false;
+		for (Method method : methods) {
+			try {
+				method.invoke(instance);
+			} catch (InvocationTargetException e) {
+				failed(failures, e.getCause());
+			} catch (Exception e) {
+				failed(failures, e);
+			}
+			closed |= method.equals(close);
+		}
+		if (!closed && instance instanceof AutoCloseable) {
+			try {
+				((AutoCloseable) instance).close();
+			} catch (Throwable e) {
+				failed(failures, e);
+			}
+		}
+	}
+
+	/**
+	 * @return the close() method implementing {@link AutoCloseable} for the
+	 *         instance, or null when it is not closeable
+	 */
+	private static Method closeMethod(Object instance) {
+		if (!(instance instanceof AutoCloseable)) {
+			return null;
+		}
+		try {
+			return instance.getClass().getMethod("close");
+		} catch (NoSuchMethodException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Add a failure, unless the very same one was already thrown: a cached
+	 * exception, or one a close() rethrows
+	 */
+	private static void failed(List<Throwable> failures, Throwable e) {
+		for (Throwable failure : failures) {
+			if (failure == e) {
+				return;
+			}
+		}
+		failures.add(e);
+	}
+}
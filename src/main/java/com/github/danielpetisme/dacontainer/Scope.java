@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer;
+
+/**
+ * Decides when a binding reuses an instance instead of building a new one.
+ * The common scopes are in {@link Scopes}.
+ */
+public interface Scope {
+
+	/**
+	 * Called once per binding
+	 * 
+	 * @param key
+	 *            the bound contract, two bindings of a raw type have
+	 *            distinct keys
+	 * @param unscoped
+	 *            builds a new instance on each call
+	 * @return the provider used for every resolution of the binding
+	 */
+	public <T> Provider<T> scope(Key<?> key, Provider<T> unscoped);
+}
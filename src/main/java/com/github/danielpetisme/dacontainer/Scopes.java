@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The built-in scopes.
+ */
+public final class Scopes {
+
+	/**
+	 * A new instance for each resolution, the default
+	 */
+	public static final Scope NO_SCOPE = new Scope() {
+		public <T> Provider<T> scope(Key<?> key, Provider<T> unscoped) {
+			checkNotNull(unscoped, "The provider cannot be null");
+			return unscoped;
+		}
+
+		@Override
+		public String toString() {
+			return "NO_SCOPE";
+		}
+	};
+
+	/**
+	 * One instance per binding. The first resolution builds it under the
+	 * lock of the binding only, the next ones are a single volatile read.
+	 */
+	public static final Scope SINGLETON = new Scope() {
+		public <T> Provider<T> scope(Key<?> key, Provider<T> unscoped) {
+			checkNotNull(unscoped, "The provider cannot be null");
+			return new SingletonProvider<T>(unscoped);
+		}
+
+		@Override
+		public String toString() {
+			return "SINGLETON";
+		}
+	};
+
+	/**
+	 * One instance per binding and per thread
+	 */
+	public static final Scope THREAD = new Scope() {
+		public <T> Provider<T> scope(Key<?> key, Provider<T> unscoped) {
+			checkNotNull(unscoped, "The provider cannot be null");
+			return new ThreadProvider<T>(unscoped);
+		}
+
+		@Override
+		public String toString() {
+			return "THREAD";
+		}
+	};
+
+	/**
+	 * Reuse the instances through a pool per binding, see
+	 * {@link PooledScope}
+	 * 
+	 * @param capacity
+	 *            the maximum number of idle instances per binding
+	 */
+	public static PooledScope pooled(int capacity) {
+		return new PooledScope(capacity, Object.class, null);
+	}
+
+	/**
+	 * Reuse the instances through a pool per binding, resetting each
+	 * released instance
+	 * 
+	 * @param capacity
+	 *            the maximum number of idle instances per binding
+	 * @param type
+	 *            a supertype of the contracts bound with the scope
+	 * @param reset
+	 *            called on each released instance
+	 */
+	public static <T> PooledScope pooled(int capacity, Class<T> type,
+			InstancePool.Reset<? super T> reset) {
+		checkNotNull(reset, "The reset cannot be null");
+		return new PooledScope(capacity, type, reset);
+	}
+
+	private Scopes() {
+	}
+
+	static final class SingletonProvider<T> implements Provider<T> {
+
+		private final Provider<T> unscoped;
+
+		private volatile T instance;
+
+		SingletonProvider(Provider<T> unscoped) {
+			this.unscoped = unscoped;
+		}
+
+		public T get() {
+			T result = instance;
+			if (result == null) {
+				synchronized (this) {
+					result = instance;
+					if (result == null) {
+						result = unscoped.get();
+						instance = result;
+					}
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * @return the instance, null until built
+		 */
+		T peek() {
+			return instance;
+		}
+	}
+
+	private static final class ThreadProvider<T> implements Provider<T> {
+
+		private final Provider<T> unscoped;
+
+		private final ThreadLocal<T> instances = new ThreadLocal<T>();
+
+		ThreadProvider(Provider<T> unscoped) {
+			this.unscoped = unscoped;
+		}
+
+		public T get() {
+			T result = instances.get();
+			if (result == null) {
+				result = unscoped.get();
+				instances.set(result);
+			}
+			return result;
+		}
+	}
+}
@@ -20,7 +20,12 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
-@Target(ElementType.FIELD)
+/**
+ * On a field, injects the constant of that name. On an injected field or
+ * parameter, qualifies the contract, see
+ * {@link com.github.danielpetisme.dacontainer.Key}.
+ */
+@Target({ ElementType.FIELD, ElementType.PARAMETER })
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Named {
 
@@ -21,12 +21,16 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.DaContainer;
 import com.github.danielpetisme.dacontainer.annotations.AnnotationInjection;
 import com.github.danielpetisme.dacontainer.annotations.Named;
+import com.github.danielpetisme.dacontainer.internal.Dependency;
+import com.github.danielpetisme.dacontainer.internal.InjectionPoint;
 
 public class AnnotationInjectionImpl implements DaAnnotation {
 
@@ -34,43 +38,90 @@ public class AnnotationInjectionImpl implements DaAnnotation {
 
 	private final static Logger LOG = Logger.getLogger(TAG);
 
+	private static final Dependency[] NO_DEPENDENCIES = new Dependency[0];
+
 	@Override
-	public <T> T apply(T instance, AccessibleObject annotedObject)
-			throws IllegalArgumentException, IllegalAccessException {
+	public <T> T apply(DaContainer container, T instance,
+			InjectionPoint injectionPoint) throws IllegalArgumentException,
+			IllegalAccessException {
+		checkNotNull(container);
 		checkNotNull(instance);
-		checkNotNull(annotedObject);
-		checkArgument(annotedObject instanceof Field,
-				"The annotedObject is not a field");
+		checkNotNull(injectionPoint);
+		checkArgument(isFieldOrSetter(injectionPoint),
+				"The annotedObject is not a field or a setter");
 		T instanceInjected = null;
-		if (annotedObject instanceof Field) {
-			Field field = (Field) annotedObject;
-			instanceInjected = apply(instance, field);
+		if (injectionPoint.isField()) {
+			instanceInjected = apply(container, instance, injectionPoint,
+					(Field) injectionPoint.getMember());
+		} else {
+			instanceInjected = apply(container, instance, injectionPoint,
+					(Method) injectionPoint.getMember());
 		}
 		return instanceInjected;
 	}
 
-	private <T> T apply(T instance, Field field)
+	private static boolean isFieldOrSetter(InjectionPoint injectionPoint) {
+		return injectionPoint.isField()
+				|| (injectionPoint.isMethod() && injectionPoint
+						.getParameterTypes().length == 1);
+	}
+
+	private <T> T apply(DaContainer container, T instance,
+			InjectionPoint injectionPoint, Field field)
 			throws IllegalArgumentException, IllegalAccessException {
-		Annotation[] annotations = field.getAnnotations();
-		Annotation customAnnotation = null;
-		for (Annotation annotation : annotations) {
-			if (annotation.annotationType().isAnnotationPresent(AnnotationInjection.class)) {
-				customAnnotation = annotation;
-				break;
+		injectionPoint.setConstant(container, instance, 0);
+		if (LOG.isLoggable(Level.FINE)) {
+			LOG.log(Level.FINE, "Injecting  value {0} on field {1}",
+					new Object[] { injectionPoint.getConstant(container, 0),
+							field });
+		}
+
+		return instance;
+	}
+
+	private <T> T apply(DaContainer container, T instance,
+			InjectionPoint injectionPoint, Method method)
+			throws IllegalArgumentException, IllegalAccessException {
+		Object value = injectionPoint.getConstant(container, 0);
+		try {
+			injectionPoint.invoke(instance, new Object[] { value });
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.log(Level.FINE, "Injecting  value {0} on method {1}",
+						new Object[] { value, method });
 			}
+		} catch (InvocationTargetException e) {
+			LOG.log(Level.SEVERE, "Methods injection", e);
 		}
-		Object value = DaContainerImpl.INSTANCE.getConstant(customAnnotation.annotationType().getName());
-		field.set(instance, value);
-		LOG.log(Level.FINE, "Injecting  value {0} on field {1}", new Object[] {
-				value, field });
 
 		return instance;
 	}
 
 	@Override
-	public <T> T apply(AccessibleObject annotedObject) {
-		// TODO Auto-generated method stub
-		return null;
+	public <T> T apply(DaContainer container, InjectionPoint injectionPoint) {
+		throw new IllegalArgumentException("Not a constructor handler");
+	}
+
+	@Override
+	public Dependency[] getDependencies(InjectionPoint injectionPoint) {
+		return NO_DEPENDENCIES;
+	}
+
+	@Override
+	public String[] getConstants(InjectionPoint injectionPoint) {
+		checkNotNull(injectionPoint);
+		checkArgument(isFieldOrSetter(injectionPoint),
+				"The annotedObject is not a field or a setter");
+
+		AccessibleObject member = injectionPoint.getMember();
+		Annotation[] annotations = member.getAnnotations();
+		Annotation customAnnotation = null;
+		for (Annotation annotation : annotations) {
+			if (annotation.annotationType().isAnnotationPresent(AnnotationInjection.class)) {
+				customAnnotation = annotation;
+				break;
+			}
+		}
+		return new String[] { customAnnotation.annotationType().getName() };
 	}
 
 }
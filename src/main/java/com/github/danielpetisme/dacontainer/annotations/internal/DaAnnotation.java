@@ -15,24 +15,54 @@
  */
 package com.github.danielpetisme.dacontainer.annotations.internal;
 
-import java.lang.reflect.AccessibleObject;
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.internal.Dependency;
+import com.github.danielpetisme.dacontainer.internal.InjectionPoint;
 
+/**
+ * Handles the members carrying an annotation. The container resolves one
+ * handler per annotation and shares it between all the injection points, so
+ * the handlers must be stateless.
+ */
 public interface DaAnnotation {
 
 	/**
 	 * Applying a treatment on a accesible object (Field or Method)
 	 * 
-	 * @param annotedObject
+	 * @param container
+	 *            the container resolving the dependencies
+	 * @param injectionPoint
 	 *            a FIELD or METHOD
 	 */
-	public <T> T apply(T instance, AccessibleObject annotedObject)
-			throws IllegalArgumentException, IllegalAccessException;
+	public <T> T apply(DaContainer container, T instance,
+			InjectionPoint injectionPoint) throws IllegalArgumentException,
+			IllegalAccessException;
 
 	/**
 	 * 
-	 * @param annotedObject
+	 * @param container
+	 *            the container resolving the dependencies
+	 * @param injectionPoint
 	 *            a CONSTRUCTOR
 	 * @return an instance
 	 */
-	public <T> T apply(AccessibleObject annotedObject);
+	public <T> T apply(DaContainer container, InjectionPoint injectionPoint);
+
+	/**
+	 * Called once when the plan is created
+	 * 
+	 * @param injectionPoint
+	 *            a CONSTRUCTOR, FIELD or METHOD
+	 * @return the contracts the injection point resolves
+	 */
+	public Dependency[] getDependencies(InjectionPoint injectionPoint);
+
+	/**
+	 * Called once when the plan is created
+	 * 
+	 * @param injectionPoint
+	 *            a CONSTRUCTOR, FIELD or METHOD
+	 * @return the names of the constants the injection point reads
+	 */
+	public String[] getConstants(InjectionPoint injectionPoint);
 }
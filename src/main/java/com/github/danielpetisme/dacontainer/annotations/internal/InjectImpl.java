@@ -18,17 +18,24 @@ package com.github.danielpetisme.dacontainer.annotations.internal;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.lang.reflect.AccessibleObject;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.Key;
+import com.github.danielpetisme.dacontainer.Lazy;
+import com.github.danielpetisme.dacontainer.Provider;
+import com.github.danielpetisme.dacontainer.annotations.Named;
+import com.github.danielpetisme.dacontainer.internal.Dependency;
+import com.github.danielpetisme.dacontainer.internal.InjectionPoint;
 
 public class InjectImpl implements DaAnnotation {
 
@@ -36,58 +43,60 @@ public class InjectImpl implements DaAnnotation {
 
 	private final static Logger LOG = Logger.getLogger(TAG);
 
+	private static final String[] NO_CONSTANTS = new String[0];
+
 	/**
 	 * Inject instance in a field
 	 * 
 	 * @throws IllegalAccessException
 	 * @throws IllegalArgumentException
 	 */
-	public <T> T apply(T instance, AccessibleObject accessibleObject)
-			throws IllegalArgumentException, IllegalAccessException {
+	public <T> T apply(DaContainer container, T instance,
+			InjectionPoint injectionPoint) throws IllegalArgumentException,
+			IllegalAccessException {
+		checkNotNull(container);
 		checkNotNull(instance);
-		checkNotNull(accessibleObject);
-		checkArgument(accessibleObject instanceof Field
-				|| accessibleObject instanceof Method,
+		checkNotNull(injectionPoint);
+		checkArgument(injectionPoint.isField() || injectionPoint.isMethod(),
 				"The argument can not be treated is not a Field, a Method or a Constructor");
 		T injectedInstance = null;
-		if (accessibleObject instanceof Field) {
-			Field field = (Field) accessibleObject;
-			injectedInstance = apply(instance, field);
-		} else if (accessibleObject instanceof Method) {
-			Method method = (Method) accessibleObject;
-			injectedInstance = apply(instance, method);
+		if (injectionPoint.isField()) {
+			injectedInstance = applyField(container, instance, injectionPoint);
+		} else if (injectionPoint.isMethod()) {
+			injectedInstance = applyMethod(container, instance,
+					injectionPoint);
 		}
 
 		return injectedInstance;
 
 	}
 
-	private <T> T apply(T instance, Field field)
-			throws IllegalArgumentException, IllegalAccessException {
-		Class<?> type = field.getType();
-		Object dependency = DaContainerImpl.INSTANCE.getInstance(type);
-		field.set(instance, dependency);
-		LOG.log(Level.FINE, "Injecting  {0} on field {1}", new Object[] {
-				dependency, field });
+	private <T> T applyField(DaContainer container, T instance,
+			InjectionPoint injectionPoint) throws IllegalArgumentException,
+			IllegalAccessException {
+		Field field = (Field) injectionPoint.getMember();
+		Object dependency = injectionPoint.getDependency(container, 0);
+		injectionPoint.set(instance, dependency);
+		if (LOG.isLoggable(Level.FINE)) {
+			LOG.log(Level.FINE, "Injecting  {0} on field {1}", new Object[] {
+					dependency, field });
+		}
 
 		return instance;
 	}
 
-	private <T> T apply(T instance, Method method)
-			throws IllegalArgumentException, IllegalAccessException {
-		Class<?>[] types = method.getParameterTypes();
-		List<Object> parameters = new ArrayList<Object>();
-		for (Class<?> type : types) {
-			Object dependency = DaContainerImpl.INSTANCE.getInstance(type);
-			checkNotNull(dependency, "No bindind found for {0}",
-					new Object[] { type });
-			parameters.add(dependency);
-		}
+	private <T> T applyMethod(DaContainer container, T instance,
+			InjectionPoint injectionPoint) throws IllegalArgumentException,
+			IllegalAccessException {
+		Object[] parameters = resolve(container, injectionPoint);
 
 		try {
-			method.invoke(instance, parameters.toArray());
-			LOG.log(Level.FINE, "Injecting  {0} on method {1}", new Object[] {
-					parameters.toArray(), method });
+			injectionPoint.invoke(instance, parameters);
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.log(Level.FINE, "Injecting  {0} on method {1}",
+						new Object[] { Arrays.toString(parameters),
+								injectionPoint });
+			}
 		} catch (InvocationTargetException e) {
 			LOG.log(Level.SEVERE, "Methods injection", e);
 		}
@@ -97,23 +106,18 @@ public class InjectImpl implements DaAnnotation {
 	}
 
 	@SuppressWarnings("unchecked")
-	public <T> T apply(AccessibleObject annotedObject) {
+	public <T> T apply(DaContainer container, InjectionPoint injectionPoint) {
 		T instance = null;
-		if (annotedObject instanceof Constructor<?>) {
-			Constructor<?> constructor = (Constructor<?>) annotedObject;
-			Class<?>[] types = constructor.getParameterTypes();
-			List<Object> parameters = new ArrayList<Object>();
-			for (Class<?> type : types) {
-				Object dependency = DaContainerImpl.INSTANCE.getInstance(type);
-				checkNotNull(dependency, "No bindind found for {0}",
-						new Object[] { type });
-				parameters.add(dependency);
-			}
+		if (injectionPoint.isConstructor()) {
+			Object[] parameters = resolve(container, injectionPoint);
 
 			try {
-				instance = (T) constructor.newInstance(parameters.toArray());
-				LOG.log(Level.FINE, "Injecting  {0} on constructor {1}",
-						new Object[] { parameters.toArray(), constructor });
+				instance = (T) injectionPoint.newInstance(parameters);
+				if (LOG.isLoggable(Level.FINE)) {
+					LOG.log(Level.FINE, "Injecting  {0} on constructor {1}",
+							new Object[] { Arrays.toString(parameters),
+									injectionPoint });
+				}
 			} catch (IllegalArgumentException e) {
 				LOG.log(Level.SEVERE, "Constructor injection", e);
 			} catch (InstantiationException e) {
@@ -127,4 +131,116 @@ public class InjectImpl implements DaAnnotation {
 
 		return instance;
 	}
+
+	public Dependency[] getDependencies(InjectionPoint injectionPoint) {
+		checkNotNull(injectionPoint);
+		Class<?>[] types;
+		Type[] genericTypes;
+		String[] names;
+		if (injectionPoint.isField()) {
+			Field field = (Field) injectionPoint.getMember();
+			types = new Class<?>[] { field.getType() };
+			genericTypes = new Type[] { field.getGenericType() };
+			names = new String[] { name(field.getAnnotations()) };
+		} else if (injectionPoint.isMethod()) {
+			Method method = (Method) injectionPoint.getMember();
+			types = injectionPoint.getParameterTypes();
+			genericTypes = method.getGenericParameterTypes();
+			names = names(method.getParameterAnnotations(), types.length);
+		} else {
+			Constructor<?> constructor = (Constructor<?>) injectionPoint
+					.getMember();
+			types = injectionPoint.getParameterTypes();
+			genericTypes = constructor.getGenericParameterTypes();
+			names = names(constructor.getParameterAnnotations(), types.length);
+		}
+
+		// Constructors of inner classes have no generic outer parameter
+		if (genericTypes.length != types.length) {
+			genericTypes = types;
+		}
+
+		Dependency[] dependencies = new Dependency[types.length];
+		for (int i = 0; i < types.length; i++) {
+			dependencies[i] = dependency(injectionPoint, types[i],
+					genericTypes[i], names[i]);
+		}
+		return dependencies;
+	}
+
+	/**
+	 * @return the value of the {@link Named} annotation qualifying the
+	 *         contract, or null
+	 */
+	private static String name(Annotation[] annotations) {
+		for (Annotation annotation : annotations) {
+			if (annotation instanceof Named) {
+				return ((Named) annotation).value();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param count
+	 *            the number of parameters, the annotations of an outer
+	 *            instance parameter may be missing
+	 */
+	private static String[] names(Annotation[][] annotations, int count) {
+		String[] names = new String[count];
+		int offset = count - annotations.length;
+		for (int i = 0; i < annotations.length; i++) {
+			names[offset + i] = name(annotations[i]);
+		}
+		return names;
+	}
+
+	/**
+	 * A Provider&lt;T&gt; or a Lazy&lt;T&gt; is injected with a provider of
+	 * the T binding. A type variable is resolved by its erasure.
+	 */
+	private static Dependency dependency(InjectionPoint injectionPoint,
+			Class<?> type, Type genericType, String name) {
+		if (type == Provider.class || type == Lazy.class) {
+			checkArgument(genericType instanceof ParameterizedType,
+					"%s must declare the provided type", injectionPoint);
+			Type provided = ((ParameterizedType) genericType)
+					.getActualTypeArguments()[0];
+			checkArgument(Key.isSpecified(provided),
+					"%s must declare the provided type", injectionPoint);
+			Key<?> key = Key.get(provided, name);
+			return type == Lazy.class ? Dependency.lazy(key) : Dependency
+					.provider(key);
+		}
+		return Dependency.instance(Key.get(
+				Key.isSpecified(genericType) ? genericType : type, name));
+	}
+
+	public String[] getConstants(InjectionPoint injectionPoint) {
+		return NO_CONSTANTS;
+	}
+
+	/**
+	 * Retrieve an instance for each parameter
+	 * 
+	 * @param container
+	 *            the container resolving the parameters
+	 * @param injectionPoint
+	 *            a METHOD or a CONSTRUCTOR
+	 * @return the parameters
+	 */
+	private Object[] resolve(DaContainer container,
+			InjectionPoint injectionPoint) {
+		Object[] parameters = new Object[injectionPoint.getDependencyCount()];
+		for (int i = 0; i < parameters.length; i++) {
+			Object dependency = injectionPoint.getDependency(container, i);
+			// Only build the message of the failure
+			if (dependency == null) {
+				throw new NullPointerException("No binding found for "
+						+ injectionPoint.getDependencies()[i]);
+			}
+			parameters[i] = dependency;
+		}
+		return parameters;
+	}
 }
@@ -15,13 +15,14 @@
  */
 package com.github.danielpetisme.dacontainer.annotations.internal;
 
-import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.DaContainer;
 import com.github.danielpetisme.dacontainer.annotations.Named;
+import com.github.danielpetisme.dacontainer.internal.Dependency;
+import com.github.danielpetisme.dacontainer.internal.InjectionPoint;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -32,36 +33,54 @@ public class NamedImpl implements DaAnnotation {
 
 	private final static Logger LOG = Logger.getLogger(TAG);
 
-	public <T> T apply(T instance, AccessibleObject annotedObject)
-			throws IllegalArgumentException, IllegalAccessException {
+	private static final Dependency[] NO_DEPENDENCIES = new Dependency[0];
+
+	public <T> T apply(DaContainer container, T instance,
+			InjectionPoint injectionPoint) throws IllegalArgumentException,
+			IllegalAccessException {
+		checkNotNull(container);
 		checkNotNull(instance);
-		checkNotNull(annotedObject);
-		checkArgument(annotedObject instanceof Field,
+		checkNotNull(injectionPoint);
+		checkArgument(injectionPoint.isField(),
 				"The annotedObject is not a field");
 
 		T instanceInjected = null;
-		if (annotedObject instanceof Field) {
-			Field field = (Field) annotedObject;
-			instanceInjected = apply(instance, field);
+		if (injectionPoint.isField()) {
+			instanceInjected = apply(container, instance, injectionPoint,
+					(Field) injectionPoint.getMember());
 		}
 		return instanceInjected;
 	}
 
-	private <T> T apply(T instance, Field field)
+	private <T> T apply(DaContainer container, T instance,
+			InjectionPoint injectionPoint, Field field)
 			throws IllegalArgumentException, IllegalAccessException {
-		String constantName = field.getAnnotation(Named.class).value();
-		Object value = DaContainerImpl.INSTANCE.getConstant(constantName);
-		field.set(instance, value);
-		LOG.log(Level.FINE, "Injecting  value {0} on field {1}", new Object[] {
-				value, field });
+		injectionPoint.setConstant(container, instance, 0);
+		if (LOG.isLoggable(Level.FINE)) {
+			LOG.log(Level.FINE, "Injecting  value {0} on field {1}",
+					new Object[] { injectionPoint.getConstant(container, 0),
+							field });
+		}
 
 		return instance;
 
 	}
 
-	public <T> T apply(AccessibleObject annotedObject) {
-		// TODO Auto-generated method stub
-		return null;
+	public <T> T apply(DaContainer container, InjectionPoint injectionPoint) {
+		throw new IllegalArgumentException("Not a constructor handler");
+	}
+
+	public Dependency[] getDependencies(InjectionPoint injectionPoint) {
+		return NO_DEPENDENCIES;
+	}
+
+	public String[] getConstants(InjectionPoint injectionPoint) {
+		checkNotNull(injectionPoint);
+		checkArgument(injectionPoint.isField(),
+				"The annotedObject is not a field");
+
+		Field field = (Field) injectionPoint.getMember();
+		return new String[] { field.getAnnotation(Named.class).value() };
 	}
 
 }
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer.internal;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * The executor of the asynchronous resolutions when none is given: a
+ * virtual thread per task when the JVM has them, since a constructor doing
+ * blocking I/O then does not hold a platform thread, else a cached pool of
+ * daemon threads.
+ */
+public final class AsyncExecutors {
+
+	private final static String TAG = AsyncExecutors.class.getName();
+
+	private final static Logger LOG = Logger.getLogger(TAG);
+
+	private AsyncExecutors() {
+	}
+
+	/**
+	 * @return the shared executor, created on the first call
+	 */
+	public static Executor defaultExecutor() {
+		return Holder.EXECUTOR;
+	}
+
+	private static Executor create() {
+		try {
+			// Looked up, the sources target a JVM without virtual threads
+			Method factory = Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor");
+			Executor executor = (Executor) factory.invoke(null);
+			LOG.log(Level.FINE, "Resolving asynchronously on virtual threads");
+			return executor;
+		} catch (ReflectiveOperationException e) {
+			LOG.log(Level.FINE, "No virtual threads, using a thread pool");
+		}
+		return Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+				.setDaemon(true).setNameFormat("dacontainer-async-%d").build());
+	}
+
+	private static final class Holder {
+
+		static final Executor EXECUTOR = create();
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.github.danielpetisme.dacontainer.Key;
+import com.github.danielpetisme.dacontainer.Provider;
+import com.github.danielpetisme.dacontainer.Scope;
+
+/**
+ * A contract bound to its implementation, with the scoped provider resolving
+ * it.
+ */
+public final class Binding {
+
+	private final Key<?> key;
+
+	private final Class<?> implementation;
+
+	private final Scope scope;
+
+	private final Provider<?> unscoped;
+
+	private final Provider<?> provider;
+
+	/**
+	 * @param key
+	 *            the bound contract
+	 * @param implementation
+	 *            the class to build
+	 * @param scope
+	 *            the scope of the binding
+	 * @param unscoped
+	 *            builds a new instance of the implementation on each call
+	 */
+	public Binding(Key<?> key, Class<?> implementation, Scope scope,
+			Provider<?> unscoped) {
+		checkNotNull(key, "The key cannot be null");
+		checkNotNull(implementation, "The class cannot be null");
+		checkNotNull(scope, "The scope cannot be null");
+		checkNotNull(unscoped, "The provider cannot be null");
+
+		this.key = key;
+		this.implementation = implementation;
+		this.scope = scope;
+		this.unscoped = unscoped;
+		this.provider = scope.scope(key, unscoped);
+		checkNotNull(provider, "The scope %s returned no provider", scope);
+	}
+
+	public Key<?> getKey() {
+		return key;
+	}
+
+	public Class<?> getImplementation() {
+		return implementation;
+	}
+
+	public Scope getScope() {
+		return scope;
+	}
+
+	/**
+	 * @return the provider building a new instance on each call
+	 */
+	public Provider<?> getUnscoped() {
+		return unscoped;
+	}
+
+	/**
+	 * @return the provider resolving the binding in its scope
+	 */
+	public Provider<?> getProvider() {
+		return provider;
+	}
+
+	@Override
+	public String toString() {
+		return key + " -> " + implementation.getName() + " ("
+				+ scope + ")";
+	}
+}
@@ -0,0 +1,317 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The components listed by the index resources of a class loader, written
+ * at build time by the injector processor of dacontainer-processor. Only
+ * names are read: a class is loaded, and its members resolved, when its
+ * component is first used.
+ * 
+ * <pre>
+ * line     implementation flag contracts point*
+ * flag     I when an injector was generated, - otherwise
+ * point    kind:annotation:declaringClass:name:parameterTypes
+ * </pre>
+ * 
+ * The fields of a line are separated by spaces, the contracts and the
+ * parameter types by commas. The kind is K for the constructor, F for a
+ * field and M for a method. A line starting with # is a comment.
+ */
+public final class ComponentIndex {
+
+	private final static String TAG = ComponentIndex.class.getName();
+
+	private final static Logger LOG = Logger.getLogger(TAG);
+
+	public static final String RESOURCE = "META-INF/dacontainer/components";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final char CONSTRUCTOR = 'K';
+
+	private static final char FIELD = 'F';
+
+	private static final char METHOD = 'M';
+
+	// By implementation name, the first listed wins
+	private final Map<String, Component> components;
+
+	// By contract name, without the ambiguous contracts
+	private final Map<String, Component> contracts = new LinkedHashMap<String, Component>();
+
+	private ComponentIndex(Map<String, Component> components) {
+		this.components = components;
+		Set<String> ambiguous = new HashSet<String>();
+		for (Component component : components.values()) {
+			for (String contract : component.contracts) {
+				if (ambiguous.contains(contract)) {
+					continue;
+				}
+				if (contracts.put(contract, component) != null) {
+					LOG.log(Level.FINE,
+							"{0} has several components, none is bound",
+							contract);
+					contracts.remove(contract);
+					ambiguous.add(contract);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read all the index resources of the class loader
+	 * 
+	 * @param loader
+	 *            where the resources and, later, the classes are read
+	 * @return the index, empty without resource
+	 */
+	public static ComponentIndex read(ClassLoader loader) throws IOException {
+		return read(loader, null);
+	}
+
+	/**
+	 * Same as {@link #read(ClassLoader)}, adding the components of the class
+	 * loader to the previous ones
+	 */
+	public static ComponentIndex read(ClassLoader loader,
+			ComponentIndex previous) throws IOException {
+		checkNotNull(loader, "The class loader cannot be null");
+		Map<String, Component> components = new LinkedHashMap<String, Component>();
+		if (previous != null) {
+			components.putAll(previous.components);
+		}
+		Enumeration<URL> resources = loader.getResources(RESOURCE);
+		while (resources.hasMoreElements()) {
+			read(resources.nextElement(), loader, components);
+		}
+		return new ComponentIndex(components);
+	}
+
+	private static void read(URL resource, ClassLoader loader,
+			Map<String, Component> components) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				resource.openStream(), UTF_8));
+		try {
+			int number = 0;
+			for (String line = reader.readLine(); line != null; line = reader
+					.readLine()) {
+				number++;
+				line = line.trim();
+				if (line.isEmpty() || line.charAt(0) == '#') {
+					continue;
+				}
+				try {
+					Component component = new Component(line, loader);
+					if (!components.containsKey(component.implementation)) {
+						components.put(component.implementation, component);
+					}
+				} catch (IllegalArgumentException e) {
+					throw new IOException("Malformed line " + number + " of "
+							+ resource + ": " + e.getMessage(), e);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * @return the only component implementing the contract, null when none
+	 *         or several do
+	 */
+	public Component get(String contract) {
+		return contracts.get(contract);
+	}
+
+	public Collection<Component> getComponents() {
+		return Collections.unmodifiableCollection(components.values());
+	}
+
+	/**
+	 * A line of the index
+	 */
+	public static final class Component {
+
+		private final ClassLoader loader;
+
+		private final String implementation;
+
+		private final boolean injector;
+
+		private final List<String> contracts;
+
+		private final Point constructor;
+
+		private final List<Point> members = new ArrayList<Point>();
+
+		Component(String line, ClassLoader loader) {
+			this.loader = loader;
+			String[] fields = line.split(" +");
+			if (fields.length < 3) {
+				throw new IllegalArgumentException(
+						"expected an implementation, a flag and contracts");
+			}
+			implementation = fields[0];
+			injector = fields[1].equals("I");
+			contracts = Collections.unmodifiableList(Arrays.asList(fields[2]
+					.split(",")));
+			Point annotated = null;
+			for (int i = 3; i < fields.length; i++) {
+				Point point = new Point(fields[i], loader);
+				if (point.kind == CONSTRUCTOR) {
+					annotated = point;
+				} else {
+					members.add(point);
+				}
+			}
+			constructor = annotated;
+		}
+
+		public String getImplementationName() {
+			return implementation;
+		}
+
+		/**
+		 * @return the implementation, loaded but not initialized
+		 */
+		public Class<?> getImplementation() throws ClassNotFoundException {
+			return Snapshot.load(implementation, loader);
+		}
+
+		/**
+		 * @return the names of the class and of the interfaces it implements
+		 */
+		public List<String> getContracts() {
+			return contracts;
+		}
+
+		/**
+		 * @return one of the contracts, loaded but not initialized
+		 */
+		public Class<?> getContract(String contract)
+				throws ClassNotFoundException {
+			return Snapshot.load(contract, loader);
+		}
+
+		/**
+		 * @return true when the processor generated an injector for the
+		 *         implementation
+		 */
+		public boolean isInjector() {
+			return injector;
+		}
+
+		/**
+		 * @return the annotated constructor or null
+		 */
+		public MemberReference getConstructor() {
+			return constructor;
+		}
+
+		/**
+		 * @return the annotated fields and methods, superclass first, in the
+		 *         order of the sources
+		 */
+		public List<? extends MemberReference> getMembers() {
+			return Collections.unmodifiableList(members);
+		}
+
+		@Override
+		public String toString() {
+			return implementation;
+		}
+	}
+
+	private static final class Point implements MemberReference {
+
+		private final ClassLoader loader;
+
+		private final char kind;
+
+		private final String annotation;
+
+		private final String declaringClass;
+
+		private final String name;
+
+		private final String[] parameterTypes;
+
+		Point(String field, ClassLoader loader) {
+			this.loader = loader;
+			String[] parts = field.split(":", -1);
+			kind = parts[0].isEmpty() ? 0 : parts[0].charAt(0);
+			if (parts.length != 5 || parts[0].length() != 1
+					|| (kind != CONSTRUCTOR && kind != FIELD && kind != METHOD)) {
+				throw new IllegalArgumentException("unknown point " + field);
+			}
+			annotation = parts[1];
+			declaringClass = parts[2];
+			name = parts[3];
+			parameterTypes = parts[4].isEmpty() ? new String[0] : parts[4]
+					.split(",");
+		}
+
+		public Class<? extends Annotation> getAnnotation()
+				throws ClassNotFoundException {
+			return Snapshot.load(annotation, loader).asSubclass(
+					Annotation.class);
+		}
+
+		public AccessibleObject resolve() throws ClassNotFoundException,
+				NoSuchFieldException, NoSuchMethodException {
+			Class<?> owner = Snapshot.load(declaringClass, loader);
+			if (kind == FIELD) {
+				return owner.getDeclaredField(name);
+			}
+			Class<?>[] parameters = new Class<?>[parameterTypes.length];
+			for (int i = 0; i < parameters.length; i++) {
+				parameters[i] = Snapshot.load(parameterTypes[i], loader);
+			}
+			if (kind == CONSTRUCTOR) {
+				return owner.getConstructor(parameters);
+			}
+			return owner.getDeclaredMethod(name, parameters);
+		}
+
+		@Override
+		public String toString() {
+			return declaringClass + "." + name;
+		}
+	}
+}
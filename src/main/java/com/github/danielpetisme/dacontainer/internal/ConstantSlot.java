@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Primitives;
+
+/**
+ * The type of the field a constant is injected in, resolved once when the
+ * plan is created. The value is checked against it before the first
+ * injection, and a primitive field is written with its typed setter.
+ * Like {@link java.lang.reflect.Field#set}, a primitive field accepts a value
+ * that unboxes to a narrower primitive type. The injectors generated by
+ * dacontainer-processor read their constants through {@link #convert}, so
+ * both backends accept and reject the same values.
+ */
+public final class ConstantSlot {
+
+	private enum Kind {
+		INT, LONG, BOOLEAN, DOUBLE, OTHER
+	}
+
+	// The numeric primitive types, each widening to the following ones
+	private static final List<Class<?>> WIDENING = ImmutableList
+			.<Class<?>> of(byte.class, short.class, int.class, long.class,
+					float.class, double.class);
+
+	private final Class<?> type;
+
+	// The field type, boxed
+	private final Class<?> boxed;
+
+	private final Kind kind;
+
+	private ConstantSlot(Class<?> type, Kind kind) {
+		this.type = type;
+		this.boxed = Primitives.wrap(type);
+		this.kind = kind;
+	}
+
+	/**
+	 * @param type
+	 *            the type of the field
+	 * @return the slot of the field
+	 */
+	public static ConstantSlot of(Class<?> type) {
+		checkNotNull(type, "The type cannot be null");
+
+		Kind kind = Kind.OTHER;
+		if (type == int.class) {
+			kind = Kind.INT;
+		} else if (type == long.class) {
+			kind = Kind.LONG;
+		} else if (type == boolean.class) {
+			kind = Kind.BOOLEAN;
+		} else if (type == double.class) {
+			kind = Kind.DOUBLE;
+		}
+		return new ConstantSlot(type, kind);
+	}
+
+	/**
+	 * @param name
+	 *            the name of the constant
+	 * @param value
+	 *            the value bound to the constant
+	 * @return the value
+	 * @throws IllegalArgumentException
+	 *             if the value cannot be written in the field
+	 */
+	public Object check(String name, Object value) {
+		checkNotNull(value, "The value cannot be null");
+		if (!boxed.isInstance(value) && !widens(value.getClass())) {
+			throw new IllegalArgumentException(String.format(
+					"The constant %s is a %s, it cannot be injected as a %s",
+					name, value.getClass().getName(), type.getName()));
+		}
+		return value;
+	}
+
+	private boolean widens(Class<?> from) {
+		// A char widens to int like a short does
+		int source = WIDENING.indexOf(from == Character.class ? short.class
+				: Primitives.unwrap(from));
+		return source >= 0 && source < WIDENING.indexOf(type);
+	}
+
+	/**
+	 * @param name
+	 *            the name of the constant
+	 * @param value
+	 *            the value bound to the constant, or null when it is unbound
+	 * @return the value, widened to the boxed type of a primitive field
+	 * @throws IllegalArgumentException
+	 *             if the value cannot be written in the field
+	 */
+	public Object convert(String name, Object value) {
+		if (value == null) {
+			return null;
+		}
+		check(name, value);
+		return boxed.isInstance(value) ? value : widen(value);
+	}
+
+	/**
+	 * @param invoker
+	 *            the invoker of the field
+	 * @param target
+	 *            the instance owning the field
+	 * @param value
+	 *            a checked value
+	 */
+	public void write(Invoker invoker, Object target, Object value)
+			throws IllegalAccessException {
+		switch (kind) {
+		case INT:
+			invoker.setInt(target, number(value).intValue());
+			break;
+		case LONG:
+			invoker.setLong(target, number(value).longValue());
+			break;
+		case BOOLEAN:
+			invoker.setBoolean(target, ((Boolean) value).booleanValue());
+			break;
+		case DOUBLE:
+			invoker.setDouble(target, number(value).doubleValue());
+			break;
+		default:
+			invoker.set(target, boxed.isInstance(value) ? value : widen(value));
+		}
+	}
+
+	private static Number number(Object value) {
+		if (value instanceof Character) {
+			return Integer.valueOf(((Character) value).charValue());
+		}
+		return (Number) value;
+	}
+
+	// A checked value of a narrower type, a byte field has none
+	private Object widen(Object value) {
+		Number number = number(value);
+		if (type == short.class) {
+			return Short.valueOf(number.shortValue());
+		} else if (type == int.class) {
+			return Integer.valueOf(number.intValue());
+		} else if (type == long.class) {
+			return Long.valueOf(number.longValue());
+		} else if (type == float.class) {
+			return Float.valueOf(number.floatValue());
+		}
+		return Double.valueOf(number.doubleValue());
+	}
+}
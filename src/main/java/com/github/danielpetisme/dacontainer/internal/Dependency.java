@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.Key;
+import com.github.danielpetisme.dacontainer.Lazy;
+import com.github.danielpetisme.dacontainer.Provider;
+
+/**
+ * A contract required by an injection point, and how it is injected.
+ */
+public final class Dependency {
+
+	public enum Kind {
+
+		/**
+		 * An instance resolved before the injection
+		 */
+		INSTANCE,
+
+		/**
+		 * A {@link Provider} resolving an instance on each get()
+		 */
+		PROVIDER,
+
+		/**
+		 * A {@link Lazy} resolving an instance on the first get()
+		 */
+		LAZY
+	}
+
+	private final Key<?> key;
+
+	private final Kind kind;
+
+	private Dependency(Key<?> key, Kind kind) {
+		checkNotNull(key, "The key cannot be null");
+		checkNotNull(kind, "The kind cannot be null");
+
+		this.key = key;
+		this.kind = kind;
+	}
+
+	public static Dependency instance(Key<?> key) {
+		return new Dependency(key, Kind.INSTANCE);
+	}
+
+	public static Dependency provider(Key<?> key) {
+		return new Dependency(key, Kind.PROVIDER);
+	}
+
+	public static Dependency lazy(Key<?> key) {
+		return new Dependency(key, Kind.LAZY);
+	}
+
+	/**
+	 * @return the key of the required binding
+	 */
+	public Key<?> getKey() {
+		return key;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return true when the contract is not resolved by the injection, so it
+	 *         cannot be part of a cycle
+	 */
+	public boolean isDeferred() {
+		return kind != Kind.INSTANCE;
+	}
+
+	/**
+	 * @param container
+	 *            the container resolving the contract
+	 * @return the value to inject
+	 */
+	public Object resolve(final DaContainer container) {
+		if (kind == Kind.INSTANCE) {
+			return container.getInstance(key);
+		}
+		Provider<Object> provider = new Provider<Object>() {
+			public Object get() {
+				return container.getInstance(key);
+			}
+		};
+		return kind == Kind.LAZY ? new Memoizer<Object>(provider) : provider;
+	}
+
+	/**
+	 * @param provider
+	 *            the provider of the bound contract
+	 * @return the value to inject
+	 */
+	public Object resolve(Provider<?> provider) {
+		switch (kind) {
+		case PROVIDER:
+			return provider;
+		case LAZY:
+			return new Memoizer<Object>(provider);
+		default:
+			return provider.get();
+		}
+	}
+
+	@Override
+	public String toString() {
+		switch (kind) {
+		case PROVIDER:
+			return "Provider<" + key + ">";
+		case LAZY:
+			return "Lazy<" + key + ">";
+		default:
+			return key.toString();
+		}
+	}
+
+	/**
+	 * Each injected {@link Lazy} memoizes its own instance
+	 */
+	private static final class Memoizer<T> implements Lazy<T> {
+
+		private volatile Provider<? extends T> provider;
+
+		private T instance;
+
+		Memoizer(Provider<? extends T> provider) {
+			this.provider = provider;
+		}
+
+		public T get() {
+			if (provider != null) {
+				synchronized (this) {
+					Provider<? extends T> pending = provider;
+					if (pending != null) {
+						instance = pending.get();
+						provider = null;
+					}
+				}
+			}
+			return instance;
+		}
+
+		@Override
+		public String toString() {
+			return "Lazy(" + (provider == null ? instance : provider) + ")";
+		}
+	}
+}
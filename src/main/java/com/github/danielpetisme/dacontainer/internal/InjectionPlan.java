@@ -0,0 +1,258 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.Injector;
+import com.github.danielpetisme.dacontainer.annotations.internal.DaAnnotation;
+import com.google.common.base.Throwables;
+
+/**
+ * Immutable recipe to build and wire a bound class. The reflective scan is
+ * done once when the plan is created, then every resolution only replays it.
+ */
+public final class InjectionPlan {
+
+	private final static String TAG = InjectionPlan.class.getName();
+
+	private final static Logger LOG = Logger.getLogger(TAG);
+
+	static final Object[] NO_ARGUMENTS = new Object[0];
+
+	private final Class<?> type;
+
+	// null when the class is built with its default constructor
+	private final InjectionPoint constructor;
+
+	// null when the class has no public default constructor
+	private final Invoker defaultConstructor;
+
+	private final DaAnnotation constructorHandler;
+
+	// Fields first, then methods, each one with its handler at the same index
+	private final InjectionPoint[] members;
+
+	private final DaAnnotation[] handlers;
+
+	// Replaces the injection points when the class has a generated injector
+	private final Injector<?> injector;
+
+	/**
+	 * @param type
+	 *            the class to build
+	 * @param constructor
+	 *            the annotated constructor or null
+	 * @param constructorHandler
+	 *            the handler of the annotated constructor or null
+	 * @param defaultConstructor
+	 *            the public default constructor used when no constructor is
+	 *            annotated, or null
+	 * @param members
+	 *            the annotated fields and methods
+	 * @param handlers
+	 *            the handler of each member
+	 */
+	public InjectionPlan(Class<?> type, InjectionPoint constructor,
+			DaAnnotation constructorHandler, Invoker defaultConstructor,
+			List<InjectionPoint> members,
+			List<? extends DaAnnotation> handlers) {
+		checkNotNull(type, "The type cannot be null");
+		checkArgument((constructor == null) == (constructorHandler == null),
+				"A constructor needs its handler");
+		checkArgument(members.size() == handlers.size(),
+				"Each member needs its handler");
+
+		this.type = type;
+		this.constructor = constructor;
+		this.constructorHandler = constructorHandler;
+		this.defaultConstructor = defaultConstructor;
+		this.members = members.toArray(new InjectionPoint[members.size()]);
+		this.handlers = handlers.toArray(new DaAnnotation[handlers.size()]);
+		this.injector = null;
+	}
+
+	/**
+	 * @param type
+	 *            the class to build
+	 * @param injector
+	 *            the injector generated for the class
+	 */
+	public InjectionPlan(Class<?> type, Injector<?> injector) {
+		checkNotNull(type, "The type cannot be null");
+		checkNotNull(injector, "The injector cannot be null");
+
+		this.type = type;
+		this.constructor = null;
+		this.constructorHandler = null;
+		this.defaultConstructor = null;
+		this.members = new InjectionPoint[0];
+		this.handlers = new DaAnnotation[0];
+		this.injector = injector;
+	}
+
+	/**
+	 * @param constructor
+	 *            the new annotated constructor or null
+	 * @param members
+	 *            the new fields and methods, one per handler
+	 * @return a copy of the plan with other injection points
+	 */
+	public InjectionPlan withInjectionPoints(InjectionPoint constructor,
+			List<InjectionPoint> members) {
+		if (injector != null) {
+			return this;
+		}
+		return new InjectionPlan(type, constructor, constructorHandler,
+				defaultConstructor, members, Arrays.asList(handlers));
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	/**
+	 * @return the annotated constructor or null
+	 */
+	public InjectionPoint getConstructor() {
+		return constructor;
+	}
+
+	/**
+	 * @return the annotated fields and methods
+	 */
+	public List<InjectionPoint> getMembers() {
+		return Collections.unmodifiableList(Arrays.asList(members));
+	}
+
+	/**
+	 * @return the handler of the annotated constructor or null
+	 */
+	public DaAnnotation getConstructorHandler() {
+		return constructorHandler;
+	}
+
+	/**
+	 * @return the handler of each member
+	 */
+	public List<DaAnnotation> getHandlers() {
+		return Collections.unmodifiableList(Arrays.asList(handlers));
+	}
+
+	/**
+	 * @return the public default constructor, or null
+	 */
+	Invoker getDefaultConstructor() {
+		return defaultConstructor;
+	}
+
+	/**
+	 * @return the generated injector replacing the injection points, or null
+	 */
+	public Injector<?> getInjector() {
+		return injector;
+	}
+
+	/**
+	 * @return the constructor, fields and methods injected in each instance
+	 */
+	public int getInjectionPointCount() {
+		if (injector != null) {
+			return injector.getInjectionPointCount();
+		}
+		return members.length + (constructor != null ? 1 : 0);
+	}
+
+	/**
+	 * @return false when the class has neither an annotated nor a public
+	 *         default constructor
+	 */
+	public boolean isConstructible() {
+		return injector != null || constructor != null
+				|| defaultConstructor != null;
+	}
+
+	/**
+	 * Construct the object then inject its fields and methods
+	 * 
+	 * @param container
+	 *            the container resolving the dependencies
+	 * @return an instance or null
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T newInstance(DaContainer container) {
+		T instance = null;
+
+		if (injector != null) {
+			return (T) injector.newInstance(container);
+		} else if (constructor != null) {
+			instance = constructorHandler.apply(container, constructor);
+		} else if (defaultConstructor != null) {
+			try {
+				instance = (T) defaultConstructor.newInstance(NO_ARGUMENTS);
+			} catch (InstantiationException e) {
+				LOG.log(Level.SEVERE, "Instantiation impossible", e);
+			} catch (IllegalAccessException e) {
+				LOG.log(Level.SEVERE, "Illegal Access", e);
+			} catch (InvocationTargetException e) {
+				// Same as Class.newInstance, the constructor failure goes up
+				Throwables.propagateIfPossible(e.getCause());
+				LOG.log(Level.SEVERE, "Instantiation impossible", e);
+			}
+		} else {
+			try {
+				instance = (T) type.newInstance();
+			} catch (InstantiationException e) {
+				LOG.log(Level.SEVERE, "Instantiation impossible", e);
+			} catch (IllegalAccessException e) {
+				LOG.log(Level.SEVERE, "Illegal Access", e);
+			}
+		}
+
+		if (instance != null) {
+			inject(container, instance);
+		}
+
+		return instance;
+	}
+
+	/**
+	 * apply every handler on its member
+	 * 
+	 * @param container
+	 * @param instance
+	 */
+	private <T> void inject(DaContainer container, T instance) {
+		for (int i = 0; i < members.length; i++) {
+			try {
+				handlers[i].apply(container, instance, members[i]);
+			} catch (IllegalArgumentException e) {
+				LOG.log(Level.SEVERE, "Illegal Argument", e);
+			} catch (IllegalAccessException e) {
+				LOG.log(Level.SEVERE, "Illegal Access", e);
+			}
+		}
+	}
+}
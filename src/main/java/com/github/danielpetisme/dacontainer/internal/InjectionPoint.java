@@ -0,0 +1,286 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.Provider;
+
+/**
+ * An annotated member of an injection plan, along with its compiled invoker
+ * and what it needs from the container: the contracts it resolves and the
+ * constants it reads. Once linked, those come straight from the providers
+ * and values given at link time instead of the container.
+ */
+public final class InjectionPoint {
+
+	private static final Class<?>[] NO_PARAMETERS = new Class<?>[0];
+
+	private static final Dependency[] NO_DEPENDENCIES = new Dependency[0];
+
+	private static final String[] NO_CONSTANTS = new String[0];
+
+	private final AccessibleObject member;
+
+	private final Invoker invoker;
+
+	// Cached, getParameterTypes() copies the array on each call
+	private final Class<?>[] parameterTypes;
+
+	private final Dependency[] dependencies;
+
+	private final String[] constants;
+
+	// The field type a constant is written as, null unless a field
+	private final ConstantSlot slot;
+
+	// The last value checked for each constant of an unlinked point
+	private final Object[] checkedValues;
+
+	// null until linked
+	private final Provider<?>[] dependencyProviders;
+
+	private final Object[] constantValues;
+
+	public InjectionPoint(AccessibleObject member, Invoker invoker) {
+		this(member, invoker, parameterTypes(member), NO_DEPENDENCIES,
+				NO_CONSTANTS, null, null, null);
+	}
+
+	private InjectionPoint(AccessibleObject member, Invoker invoker,
+			Class<?>[] parameterTypes, Dependency[] dependencies,
+			String[] constants, ConstantSlot slot,
+			Provider<?>[] dependencyProviders, Object[] constantValues) {
+		checkNotNull(member, "The member cannot be null");
+		checkNotNull(invoker, "The invoker cannot be null");
+
+		this.member = member;
+		this.invoker = invoker;
+		this.parameterTypes = parameterTypes;
+		this.dependencies = dependencies;
+		this.constants = constants;
+		this.slot = slot;
+		this.checkedValues = new Object[constants.length];
+		this.dependencyProviders = dependencyProviders;
+		this.constantValues = constantValues;
+	}
+
+	private static Class<?>[] parameterTypes(AccessibleObject member) {
+		if (member instanceof Constructor<?>) {
+			return ((Constructor<?>) member).getParameterTypes();
+		} else if (member instanceof Method) {
+			return ((Method) member).getParameterTypes();
+		}
+		return NO_PARAMETERS;
+	}
+
+	/**
+	 * @param dependencies
+	 *            the contracts resolved by the point
+	 * @param constants
+	 *            the names of the constants read by the point
+	 * @return a copy of the point with its requirements
+	 */
+	public InjectionPoint withRequirements(Dependency[] dependencies,
+			String[] constants) {
+		checkNotNull(dependencies, "The dependencies cannot be null");
+		checkNotNull(constants, "The constants cannot be null");
+
+		ConstantSlot slot = member instanceof Field ? ConstantSlot
+				.of(((Field) member).getType()) : null;
+		return new InjectionPoint(member, invoker, parameterTypes,
+				dependencies.clone(), constants.clone(), slot, null, null);
+	}
+
+	/**
+	 * @param providers
+	 *            a provider for each dependency
+	 * @param values
+	 *            a value for each constant, null for an unbound constant
+	 *            which is still looked up on injection
+	 * @return a copy of the point which no longer looks its requirements up
+	 * @throws IllegalArgumentException
+	 *             if a value cannot be written in the field
+	 */
+	public InjectionPoint link(Provider<?>[] providers, Object[] values) {
+		checkArgument(providers.length == dependencies.length,
+				"A provider is needed for each dependency of %s", member);
+		checkArgument(values.length == constants.length,
+				"A value is needed for each constant of %s", member);
+
+		Object[] linkedValues = values.clone();
+		for (int i = 0; i < linkedValues.length; i++) {
+			if (linkedValues[i] != null) {
+				checkConstant(i, linkedValues[i]);
+			}
+		}
+		return new InjectionPoint(member, invoker, parameterTypes,
+				dependencies, constants, slot, providers.clone(),
+				linkedValues);
+	}
+
+	/**
+	 * @param index
+	 *            the index of the constant
+	 * @param value
+	 *            the value bound to the constant
+	 * @throws IllegalArgumentException
+	 *             if the value cannot be written in the field
+	 */
+	public void checkConstant(int index, Object value) {
+		if (slot != null) {
+			slot.check(constants[index], value);
+		}
+	}
+
+	/**
+	 * @return a CONSTRUCTOR, a FIELD or a METHOD
+	 */
+	public AccessibleObject getMember() {
+		return member;
+	}
+
+	/**
+	 * @return the parameter types of a CONSTRUCTOR or a METHOD, none for a
+	 *         FIELD
+	 */
+	public Class<?>[] getParameterTypes() {
+		return parameterTypes;
+	}
+
+	public Dependency[] getDependencies() {
+		return dependencies.clone();
+	}
+
+	public String[] getConstants() {
+		return constants.clone();
+	}
+
+	public int getDependencyCount() {
+		return dependencies.length;
+	}
+
+	public boolean isLinked() {
+		return dependencyProviders != null;
+	}
+
+	/**
+	 * @param container
+	 *            the container resolving an unlinked point
+	 * @param index
+	 *            the index of the dependency
+	 * @return an instance of the dependency, or its provider
+	 */
+	public Object getDependency(DaContainer container, int index) {
+		if (dependencyProviders != null) {
+			return dependencies[index].resolve(dependencyProviders[index]);
+		}
+		return dependencies[index].resolve(container);
+	}
+
+	/**
+	 * @param index
+	 *            the index of the dependency
+	 * @return the provider linked to the dependency, null until linked
+	 */
+	Provider<?> getProvider(int index) {
+		return dependencyProviders != null ? dependencyProviders[index] : null;
+	}
+
+	/**
+	 * @param container
+	 *            the container resolving an unlinked point
+	 * @param index
+	 *            the index of the constant
+	 * @return the value of the constant
+	 */
+	public Object getConstant(DaContainer container, int index) {
+		if (constantValues != null && constantValues[index] != null) {
+			return constantValues[index];
+		}
+		return container.getConstant(constants[index]);
+	}
+
+	/**
+	 * Write a constant in the field of the point, with the typed setter of a
+	 * primitive field
+	 * 
+	 * @param container
+	 *            the container resolving an unlinked point
+	 * @param target
+	 *            the instance owning the field
+	 * @param index
+	 *            the index of the constant
+	 */
+	public void setConstant(DaContainer container, Object target, int index)
+			throws IllegalAccessException {
+		if (slot == null) {
+			throw new UnsupportedOperationException("Not a field");
+		}
+		if (constantValues != null && constantValues[index] != null) {
+			slot.write(invoker, target, constantValues[index]);
+			return;
+		}
+		Object value = container.getConstant(constants[index]);
+		// Checked again only when the constant is rebound, a stale read only
+		// checks it twice
+		if (checkedValues[index] != value) {
+			checkConstant(index, value);
+			checkedValues[index] = value;
+		}
+		slot.write(invoker, target, value);
+	}
+
+	public boolean isField() {
+		return member instanceof Field;
+	}
+
+	public boolean isMethod() {
+		return member instanceof Method;
+	}
+
+	public boolean isConstructor() {
+		return member instanceof Constructor<?>;
+	}
+
+	public Object newInstance(Object[] arguments)
+			throws InstantiationException, IllegalAccessException,
+			InvocationTargetException {
+		return invoker.newInstance(arguments);
+	}
+
+	public void set(Object target, Object value) throws IllegalAccessException {
+		invoker.set(target, value);
+	}
+
+	public Object invoke(Object target, Object[] arguments)
+			throws IllegalAccessException, InvocationTargetException {
+		return invoker.invoke(target, arguments);
+	}
+
+	@Override
+	public String toString() {
+		return member.toString();
+	}
+}
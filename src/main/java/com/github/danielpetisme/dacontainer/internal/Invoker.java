@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer.internal;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Compiled access to a constructor, a field or a method. Only the operation
+ * matching the member kind is supported, the others throw an
+ * UnsupportedOperationException.
+ */
+public abstract class Invoker {
+
+	/**
+	 * Call the constructor
+	 * 
+	 * @param arguments
+	 *            one value per parameter
+	 * @return the new instance
+	 */
+	public Object newInstance(Object[] arguments)
+			throws InstantiationException, IllegalAccessException,
+			InvocationTargetException {
+		throw new UnsupportedOperationException("Not a constructor");
+	}
+
+	/**
+	 * Write the field
+	 * 
+	 * @param target
+	 *            the instance owning the field
+	 * @param value
+	 *            the value to write
+	 */
+	public void set(Object target, Object value)
+			throws IllegalAccessException {
+		throw new UnsupportedOperationException("Not a field");
+	}
+
+	/**
+	 * Write an int field, boxing the value unless overridden
+	 */
+	public void setInt(Object target, int value) throws IllegalAccessException {
+		set(target, Integer.valueOf(value));
+	}
+
+	/**
+	 * Write a long field, boxing the value unless overridden
+	 */
+	public void setLong(Object target, long value)
+			throws IllegalAccessException {
+		set(target, Long.valueOf(value));
+	}
+
+	/**
+	 * Write a boolean field
+	 */
+	public void setBoolean(Object target, boolean value)
+			throws IllegalAccessException {
+		set(target, Boolean.valueOf(value));
+	}
+
+	/**
+	 * Write a double field, boxing the value unless overridden
+	 */
+	public void setDouble(Object target, double value)
+			throws IllegalAccessException {
+		set(target, Double.valueOf(value));
+	}
+
+	/**
+	 * Call the method
+	 * 
+	 * @param target
+	 *            the instance owning the method
+	 * @param arguments
+	 *            one value per parameter
+	 * @return the method result
+	 */
+	public Object invoke(Object target, Object[] arguments)
+			throws IllegalAccessException, InvocationTargetException {
+		throw new UnsupportedOperationException("Not a method");
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer.internal;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+
+/**
+ * An annotated member of an injection plan known by its name, found again
+ * without scanning its class. Read from a {@link Snapshot} or from a
+ * {@link ComponentIndex}.
+ */
+public interface MemberReference {
+
+	/**
+	 * @return the annotation whose handler injects the member
+	 */
+	public Class<? extends Annotation> getAnnotation()
+			throws ClassNotFoundException;
+
+	/**
+	 * @return the member, not yet accessible
+	 * @throws ReflectiveOperationException
+	 *             if the class changed since the member was written
+	 */
+	public AccessibleObject resolve() throws ReflectiveOperationException;
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Invokers delegating to Constructor.newInstance, Field.set and
+ * Method.invoke. It handles every member and is the fallback of the other
+ * backends.
+ */
+public class ReflectionInvokerFactory implements InvokerFactory {
+
+	public Invoker create(AccessibleObject member) {
+		checkNotNull(member, "The member cannot be null");
+		checkArgument(member instanceof Constructor<?>
+				|| member instanceof Field || member instanceof Method,
+				"The member is not a Field, a Method or a Constructor");
+
+		if (member instanceof Constructor<?>) {
+			final Constructor<?> constructor = (Constructor<?>) member;
+			return new Invoker() {
+				@Override
+				public Object newInstance(Object[] arguments)
+						throws InstantiationException, IllegalAccessException,
+						InvocationTargetException {
+					return constructor.newInstance(arguments);
+				}
+			};
+		} else if (member instanceof Field) {
+			final Field field = (Field) member;
+			return new Invoker() {
+				@Override
+				public void set(Object target, Object value)
+						throws IllegalAccessException {
+					field.set(target, value);
+				}
+
+				@Override
+				public void setInt(Object target, int value)
+						throws IllegalAccessException {
+					field.setInt(target, value);
+				}
+
+				@Override
+				public void setLong(Object target, long value)
+						throws IllegalAccessException {
+					field.setLong(target, value);
+				}
+
+				@Override
+				public void setBoolean(Object target, boolean value)
+						throws IllegalAccessException {
+					field.setBoolean(target, value);
+				}
+
+				@Override
+				public void setDouble(Object target, double value)
+						throws IllegalAccessException {
+					field.setDouble(target, value);
+				}
+			};
+		} else {
+			final Method method = (Method) member;
+			return new Invoker() {
+				@Override
+				public Object invoke(Object target, Object[] arguments)
+						throws IllegalAccessException,
+						InvocationTargetException {
+					return method.invoke(target, arguments);
+				}
+			};
+		}
+	}
+}
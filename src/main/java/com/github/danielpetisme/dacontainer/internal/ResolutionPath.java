@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer.internal;
+
+import java.util.Arrays;
+
+/**
+ * The classes being constructed by the current thread, innermost last. Used
+ * to fail fast on a dependency cycle instead of overflowing the stack.
+ * <p>
+ * While a request scope is open, the path also records the unscoped
+ * instances the thread builds, in the order they are completed, in an
+ * append-only array shared by the nested scopes. The dependencies of an
+ * instance kept by a scope, a singleton for instance, belong to it and are
+ * not recorded.
+ */
+public final class ResolutionPath {
+
+	private static final ThreadLocal<ResolutionPath> CURRENT = new ThreadLocal<ResolutionPath>() {
+		@Override
+		protected ResolutionPath initialValue() {
+			return new ResolutionPath();
+		}
+	};
+
+	private static final Object[] NO_INSTANCES = new Object[0];
+
+	private Class<?>[] classes = new Class<?>[16];
+
+	private int size;
+
+	private Object[] instances = NO_INSTANCES;
+
+	private int count;
+
+	// The open scopes, nothing is recorded without one
+	private int scopes;
+
+	// The scoped instances being built, nothing is recorded inside one
+	private int scoped;
+
+	// The scoped instances built so far, wraps around
+	private int scopedBuilds;
+
+	private ResolutionPath() {
+	}
+
+	/**
+	 * @return the path of the current thread
+	 */
+	public static ResolutionPath current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Enter the construction of a class
+	 * 
+	 * @param clazz
+	 *            the class to construct
+	 * @throws IllegalStateException
+	 *             when the class is already being constructed
+	 */
+	public void push(Class<?> clazz) {
+		for (int i = 0; i < size; i++) {
+			if (classes[i] == clazz) {
+				throw new IllegalStateException("Dependency cycle "
+						+ chain(i, clazz));
+			}
+		}
+		if (size == classes.length) {
+			classes = Arrays.copyOf(classes, size * 2);
+		}
+		classes[size++] = clazz;
+	}
+
+	/**
+	 * Leave the construction of the innermost class
+	 */
+	public void pop() {
+		classes[--size] = null;
+	}
+
+	/**
+	 * Open a scope nested in the open ones
+	 * 
+	 * @return where the instances of the scope start
+	 */
+	public int openScope() {
+		scopes++;
+		return count;
+	}
+
+	/**
+	 * @return the number of open scopes
+	 */
+	public int getScopeDepth() {
+		return scopes;
+	}
+
+	/**
+	 * Enter the construction of an instance kept by a scope
+	 */
+	public void enterScoped() {
+		scoped++;
+		scopedBuilds++;
+	}
+
+	/**
+	 * Leave the construction of an instance kept by a scope
+	 */
+	public void leaveScoped() {
+		scoped--;
+	}
+
+	/**
+	 * @return a counter of the scoped instances the thread built, unchanged
+	 *         when a scope returned an instance it already held
+	 */
+	public int getScopedBuilds() {
+		return scopedBuilds;
+	}
+
+	/**
+	 * @return the number of instances recorded by the open scopes
+	 */
+	public int getInstanceCount() {
+		return count;
+	}
+
+	/**
+	 * Record a built instance in the open scopes, a single array store,
+	 * unless it is built for a scoped instance
+	 * 
+	 * @param instance
+	 *            an unscoped instance
+	 */
+	public void track(Object instance) {
+		if (scopes == 0 || scoped > 0) {
+			return;
+		}
+		if (count == instances.length) {
+			instances = Arrays.copyOf(instances, Math.max(16, count * 2));
+		}
+		instances[count++] = instance;
+	}
+
+	/**
+	 * Close the innermost scope
+	 * 
+	 * @param start
+	 *            where its instances start
+	 * @return its instances, oldest first, no longer referenced by the path
+	 */
+	public Object[] closeScope(int start) {
+		Object[] closed = Arrays.copyOfRange(instances, start, count);
+		Arrays.fill(instances, start, count, null);
+		count = start;
+		// The thread keeps no array larger than one request needed
+		if (--scopes == 0) {
+			instances = NO_INSTANCES;
+		}
+		return closed;
+	}
+
+	private String chain(int from, Class<?> clazz) {
+		StringBuilder chain = new StringBuilder();
+		for (int i = from; i < size; i++) {
+			chain.append(classes[i].getName()).append(" -> ");
+		}
+		return chain.append(clazz.getName()).toString();
+	}
+}
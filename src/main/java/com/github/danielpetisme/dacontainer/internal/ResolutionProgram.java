@@ -0,0 +1,540 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer.internal;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.github.danielpetisme.dacontainer.Instrumentation;
+import com.github.danielpetisme.dacontainer.Instrumentations;
+import com.github.danielpetisme.dacontainer.Provider;
+import com.github.danielpetisme.dacontainer.annotations.internal.AnnotationInjectionImpl;
+import com.github.danielpetisme.dacontainer.annotations.internal.DaAnnotation;
+import com.github.danielpetisme.dacontainer.annotations.internal.InjectImpl;
+import com.github.danielpetisme.dacontainer.annotations.internal.NamedImpl;
+import com.google.common.base.Throwables;
+
+/**
+ * A linked injection plan flattened into a linear program: the dependencies
+ * of the constructor, the construction, then the dependencies and the
+ * injection of each member. An unscoped dependency having a program of its
+ * own is a call to it, run by the same loop with an explicit stack of frames
+ * and operands reused by the thread, so the depth of the graph does not
+ * deepen the thread stack. Only a scope building its first instance, or a
+ * dependency without program, runs in a nested call.
+ * <p>
+ * The failures are handled as the built-in handlers do: a member failing
+ * with an IllegalArgumentException or an IllegalAccessException is skipped,
+ * anything else fails the resolution.
+ * <p>
+ * An instrumented frame reports its construction when it returns, timed from
+ * its entry so its dependencies are included, as the construction of a plan
+ * is.
+ */
+public final class ResolutionProgram {
+
+	private final static String TAG = ResolutionProgram.class.getName();
+
+	private final static Logger LOG = Logger.getLogger(TAG);
+
+	/**
+	 * The provider of an unscoped binding with a program, called in place by
+	 * the programs depending on it. Its instances are recorded by the open
+	 * request scope.
+	 */
+	public interface Callee {
+
+		/**
+		 * @return the program building the instances, or null to call the
+		 *         provider instead
+		 */
+		public ResolutionProgram getProgram();
+
+		/**
+		 * @return notified of the constructions of the program
+		 */
+		public Instrumentation getInstrumentation();
+	}
+
+	// Each instruction is an opcode, an operand index and an int argument
+
+	// Run the program of a Callee provider, or get() it
+	private static final int CALL = 0;
+
+	// Push the instance of a provider
+	private static final int PROVIDE = 1;
+
+	// Push the Provider or the Lazy of a dependency, the provider follows it
+	private static final int RESOLVE = 2;
+
+	// Build the instance from the arguments on the stack
+	private static final int NEW = 3;
+
+	// Build the instance with the default constructor, null to use the class
+	private static final int NEW_DEFAULT = 4;
+
+	// Enter a member, the argument is where the next member starts
+	private static final int MEMBER = 5;
+
+	private static final int FIELD = 6;
+
+	private static final int METHOD = 7;
+
+	private static final int CONSTANT = 8;
+
+	private static final ThreadLocal<Interpreter> INTERPRETER = new ThreadLocal<Interpreter>() {
+		@Override
+		protected Interpreter initialValue() {
+			return new Interpreter();
+		}
+	};
+
+	private final Class<?> type;
+
+	private final int[] code;
+
+	private final Object[] operands;
+
+	private final int injectionPoints;
+
+	private ResolutionProgram(Class<?> type, int[] code, Object[] operands,
+			int injectionPoints) {
+		this.type = type;
+		this.code = code;
+		this.operands = operands;
+		this.injectionPoints = injectionPoints;
+	}
+
+	/**
+	 * @param plan
+	 *            a linked plan
+	 * @return the program of the plan, or null when the plan has a generated
+	 *         injector, an unlinked point or a handler that is not built-in
+	 */
+	public static ResolutionProgram compile(InjectionPlan plan) {
+		if (plan.getInjector() != null) {
+			return null;
+		}
+		Builder builder = new Builder();
+
+		InjectionPoint constructor = plan.getConstructor();
+		if (constructor != null) {
+			if (!constructor.isLinked()
+					|| plan.getConstructorHandler().getClass() != InjectImpl.class) {
+				return null;
+			}
+			builder.dependencies(constructor);
+			builder.emit(NEW, builder.operand(constructor), constructor
+					.getDependencyCount());
+		} else {
+			builder.emit(NEW_DEFAULT,
+					builder.operand(plan.getDefaultConstructor()), 0);
+		}
+
+		List<InjectionPoint> members = plan.getMembers();
+		List<DaAnnotation> handlers = plan.getHandlers();
+		for (int i = 0; i < members.size(); i++) {
+			InjectionPoint member = members.get(i);
+			Class<?> handler = handlers.get(i).getClass();
+			if (!member.isLinked()) {
+				return null;
+			}
+			int start = builder.emit(MEMBER, 0, 0);
+			if (handler == InjectImpl.class && member.isField()) {
+				builder.dependencies(member);
+				builder.emit(FIELD, builder.operand(member), 0);
+			} else if (handler == InjectImpl.class && member.isMethod()) {
+				builder.dependencies(member);
+				builder.emit(METHOD, builder.operand(member), member
+						.getDependencyCount());
+			} else if ((handler == NamedImpl.class || handler == AnnotationInjectionImpl.class)
+					&& member.isField()) {
+				builder.emit(CONSTANT, builder.operand(member), 0);
+			} else {
+				return null;
+			}
+			builder.code.set(start + 2, builder.code.size());
+		}
+		return builder.build(plan.getType(), plan.getInjectionPointCount());
+	}
+
+	/**
+	 * Build an instance on the current thread
+	 * 
+	 * @param tracked
+	 *            true to record the instance in the open request scope, its
+	 *            unscoped dependencies are
+	 * @param observer
+	 *            notified of the construction
+	 * @return the instance, or null when its constructor failed
+	 * @throws IllegalStateException
+	 *             on a dependency cycle
+	 */
+	public Object run(boolean tracked, Instrumentation observer) {
+		return INTERPRETER.get().run(this, tracked, observer);
+	}
+
+	@Override
+	public String toString() {
+		return "ResolutionProgram [" + type.getName() + ", "
+				+ code.length / 3 + " instructions]";
+	}
+
+	private static final class Builder {
+
+		final List<Integer> code = new ArrayList<Integer>();
+
+		final List<Object> operands = new ArrayList<Object>();
+
+		/**
+		 * @return the position of the instruction
+		 */
+		int emit(int opcode, int operand, int argument) {
+			int position = code.size();
+			code.add(opcode);
+			code.add(operand);
+			code.add(argument);
+			return position;
+		}
+
+		int operand(Object operand) {
+			operands.add(operand);
+			return operands.size() - 1;
+		}
+
+		/**
+		 * Push each dependency of a linked point, in order
+		 */
+		void dependencies(InjectionPoint injectionPoint) {
+			Dependency[] dependencies = injectionPoint.getDependencies();
+			for (int i = 0; i < dependencies.length; i++) {
+				Provider<?> provider = injectionPoint.getProvider(i);
+				if (dependencies[i].isDeferred()) {
+					int operand = operand(dependencies[i]);
+					operand(provider);
+					emit(RESOLVE, operand, 0);
+				} else {
+					emit(provider instanceof Callee ? CALL : PROVIDE,
+							operand(provider), 0);
+				}
+			}
+		}
+
+		ResolutionProgram build(Class<?> type, int injectionPoints) {
+			int[] instructions = new int[code.size()];
+			for (int i = 0; i < instructions.length; i++) {
+				instructions[i] = code.get(i);
+			}
+			return new ResolutionProgram(type, instructions,
+					operands.toArray(), injectionPoints);
+		}
+	}
+
+	/**
+	 * The frames and the operands of a thread, reused by all its resolutions.
+	 * A frame owns the operands from its base, its instance lies at the base
+	 * once built.
+	 */
+	private static final class Interpreter {
+
+		private final ResolutionPath path = ResolutionPath.current();
+
+		private Object[] stack = new Object[32];
+
+		private int sp;
+
+		private ResolutionProgram[] programs = new ResolutionProgram[16];
+
+		private int[] pcs = new int[16];
+
+		private int[] bases = new int[16];
+
+		// The stack pointer when the current member was entered, -1 outside
+		// of a member
+		private int[] members = new int[16];
+
+		private int[] nextMembers = new int[16];
+
+		// Whether the instance of the frame is recorded once built
+		private boolean[] tracked = new boolean[16];
+
+		private Instrumentation[] observers = new Instrumentation[16];
+
+		// When an instrumented frame was entered
+		private long[] starts = new long[16];
+
+		private int frames;
+
+		/**
+		 * Reentrant, a nested run works above the frames of the outer ones
+		 */
+		Object run(ResolutionProgram program, boolean track,
+				Instrumentation observer) {
+			int bottom = frames;
+			enter(program, track, observer);
+			while (frames > bottom) {
+				int frame = frames - 1;
+				ResolutionProgram current = programs[frame];
+				int pc = pcs[frame];
+				if (pc == current.code.length) {
+					leave();
+					continue;
+				}
+				pcs[frame] = pc + 3;
+				try {
+					execute(current, frame, current.code[pc],
+							current.code[pc + 1], current.code[pc + 2]);
+				} catch (Throwable failure) {
+					unwind(failure, bottom);
+				}
+			}
+			Object instance = stack[--sp];
+			stack[sp] = null;
+			return instance;
+		}
+
+		private void execute(ResolutionProgram current, int frame,
+				int opcode, int operand, int argument) throws Exception {
+			Object[] operands = current.operands;
+			switch (opcode) {
+			case CALL: {
+				Provider<?> provider = (Provider<?>) operands[operand];
+				ResolutionProgram callee = ((Callee) provider).getProgram();
+				if (callee != null) {
+					enter(callee, true,
+							((Callee) provider).getInstrumentation());
+				} else {
+					push(provider.get());
+				}
+				break;
+			}
+			case PROVIDE:
+				push(((Provider<?>) operands[operand]).get());
+				break;
+			case RESOLVE:
+				push(((Dependency) operands[operand])
+						.resolve((Provider<?>) operands[operand + 1]));
+				break;
+			case NEW:
+				construct(current, frame, (InjectionPoint) operands[operand],
+						argument);
+				break;
+			case NEW_DEFAULT:
+				constructByDefault(current, frame, (Invoker) operands[operand]);
+				break;
+			case MEMBER:
+				members[frame] = sp;
+				nextMembers[frame] = argument;
+				break;
+			case FIELD: {
+				Object value = pop();
+				((InjectionPoint) operands[operand]).set(stack[bases[frame]],
+						value);
+				members[frame] = -1;
+				break;
+			}
+			case METHOD:
+				invoke(frame, (InjectionPoint) operands[operand], argument);
+				members[frame] = -1;
+				break;
+			case CONSTANT:
+				// Linked, the container is not looked up
+				((InjectionPoint) operands[operand]).setConstant(null,
+						stack[bases[frame]], 0);
+				members[frame] = -1;
+				break;
+			default:
+				throw new IllegalStateException("Unknown opcode " + opcode);
+			}
+		}
+
+		private void construct(ResolutionProgram current, int frame,
+				InjectionPoint constructor, int count) {
+			Object[] arguments = arguments(constructor, count);
+			Object instance = null;
+			try {
+				instance = constructor.newInstance(arguments);
+			} catch (IllegalArgumentException e) {
+				LOG.log(Level.SEVERE, "Constructor injection", e);
+			} catch (InstantiationException e) {
+				LOG.log(Level.SEVERE, "Constructor injection", e);
+			} catch (IllegalAccessException e) {
+				LOG.log(Level.SEVERE, "Constructor injection", e);
+			} catch (InvocationTargetException e) {
+				LOG.log(Level.SEVERE, "Constructor injection", e);
+			}
+			constructed(current, frame, instance);
+		}
+
+		private void constructByDefault(ResolutionProgram current, int frame,
+				Invoker defaultConstructor) {
+			Object instance = null;
+			try {
+				if (defaultConstructor != null) {
+					instance = defaultConstructor
+							.newInstance(InjectionPlan.NO_ARGUMENTS);
+				} else {
+					instance = current.type.newInstance();
+				}
+			} catch (InstantiationException e) {
+				LOG.log(Level.SEVERE, "Instantiation impossible", e);
+			} catch (IllegalAccessException e) {
+				LOG.log(Level.SEVERE, "Illegal Access", e);
+			} catch (InvocationTargetException e) {
+				// Same as Class.newInstance, the constructor failure goes up
+				Throwables.propagateIfPossible(e.getCause());
+				LOG.log(Level.SEVERE, "Instantiation impossible", e);
+			}
+			constructed(current, frame, instance);
+		}
+
+		/**
+		 * Without instance, the members are not injected
+		 */
+		private void constructed(ResolutionProgram current, int frame,
+				Object instance) {
+			push(instance);
+			if (instance == null) {
+				pcs[frame] = current.code.length;
+			}
+		}
+
+		private void invoke(int frame, InjectionPoint method, int count)
+				throws IllegalAccessException {
+			Object[] arguments = arguments(method, count);
+			try {
+				method.invoke(stack[bases[frame]], arguments);
+			} catch (InvocationTargetException e) {
+				LOG.log(Level.SEVERE, "Methods injection", e);
+			}
+		}
+
+		private Object[] arguments(InjectionPoint injectionPoint, int count) {
+			Object[] arguments = new Object[count];
+			for (int i = count - 1; i >= 0; i--) {
+				arguments[i] = pop();
+			}
+			for (int i = 0; i < count; i++) {
+				if (arguments[i] == null) {
+					throw new NullPointerException("No binding found for "
+							+ injectionPoint.getDependencies()[i]);
+				}
+			}
+			return arguments;
+		}
+
+		private void enter(ResolutionProgram program, boolean track,
+				Instrumentation observer) {
+			// Throws on a cycle, before the frame exists
+			path.push(program.type);
+			if (frames == programs.length) {
+				int length = frames * 2;
+				programs = Arrays.copyOf(programs, length);
+				pcs = Arrays.copyOf(pcs, length);
+				bases = Arrays.copyOf(bases, length);
+				members = Arrays.copyOf(members, length);
+				nextMembers = Arrays.copyOf(nextMembers, length);
+				tracked = Arrays.copyOf(tracked, length);
+				observers = Arrays.copyOf(observers, length);
+				starts = Arrays.copyOf(starts, length);
+			}
+			programs[frames] = program;
+			pcs[frames] = 0;
+			bases[frames] = sp;
+			members[frames] = -1;
+			tracked[frames] = track;
+			observers[frames] = observer;
+			if (observer != Instrumentations.NONE) {
+				starts[frames] = System.nanoTime();
+			}
+			frames++;
+		}
+
+		/**
+		 * Return the instance of the innermost frame to its caller
+		 */
+		private void leave() {
+			int frame = --frames;
+			ResolutionProgram program = programs[frame];
+			Instrumentation observer = observers[frame];
+			Object instance = stack[bases[frame]];
+			clear(bases[frame]);
+			programs[frame] = null;
+			observers[frame] = null;
+			if (observer != Instrumentations.NONE) {
+				observer.constructed(program.type, System.nanoTime()
+						- starts[frame], program.injectionPoints);
+			}
+			path.pop();
+			if (tracked[frame] && instance != null) {
+				path.track(instance);
+			}
+			push(instance);
+		}
+
+		/**
+		 * Skip the member the failure occurred in, or drop the frames up to
+		 * the one handling it
+		 */
+		private void unwind(Throwable failure, int bottom) {
+			while (frames > bottom) {
+				int frame = frames - 1;
+				if (members[frame] >= 0
+						&& (failure instanceof IllegalArgumentException || failure instanceof IllegalAccessException)) {
+					LOG.log(Level.SEVERE,
+							failure instanceof IllegalArgumentException ? "Illegal Argument"
+									: "Illegal Access", failure);
+					clear(members[frame]);
+					pcs[frame] = nextMembers[frame];
+					members[frame] = -1;
+					return;
+				}
+				frames--;
+				clear(bases[frame]);
+				programs[frame] = null;
+				observers[frame] = null;
+				path.pop();
+			}
+			throw Throwables.propagate(failure);
+		}
+
+		private void push(Object value) {
+			if (sp == stack.length) {
+				stack = Arrays.copyOf(stack, sp * 2);
+			}
+			stack[sp++] = value;
+		}
+
+		private Object pop() {
+			Object value = stack[--sp];
+			stack[sp] = null;
+			return value;
+		}
+
+		/**
+		 * Drop the operands above the given stack pointer
+		 */
+		private void clear(int from) {
+			while (sp > from) {
+				stack[--sp] = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,236 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.Key;
+
+/**
+ * Resolves a graph of singletons on an executor. A singleton is submitted
+ * once all the singletons it depends on are built, so the independent
+ * subtrees are built in parallel. The failures are collected and reported
+ * together once every singleton has been built or skipped.
+ */
+public final class SingletonBootstrap {
+
+	private final DaContainer container;
+
+	private final Executor executor;
+
+	private final Map<Key<?>, Node> nodes = new LinkedHashMap<Key<?>, Node>();
+
+	private final ConcurrentLinkedQueue<String> problems = new ConcurrentLinkedQueue<String>();
+
+	private final ConcurrentLinkedQueue<Throwable> causes = new ConcurrentLinkedQueue<Throwable>();
+
+	private CountDownLatch remaining;
+
+	/**
+	 * @param container
+	 *            the container resolving the singletons
+	 * @param graph
+	 *            the singletons each singleton depends on
+	 * @param executor
+	 *            where the singletons are built
+	 */
+	public SingletonBootstrap(DaContainer container,
+			Map<Key<?>, Set<Key<?>>> graph, Executor executor) {
+		checkNotNull(container, "The container cannot be null");
+		checkNotNull(graph, "The graph cannot be null");
+		checkNotNull(executor, "The executor cannot be null");
+
+		this.container = container;
+		this.executor = executor;
+		for (Key<?> contract : graph.keySet()) {
+			nodes.put(contract, new Node(contract));
+		}
+		for (Map.Entry<Key<?>, Set<Key<?>>> entry : graph.entrySet()) {
+			Node node = nodes.get(entry.getKey());
+			for (Key<?> dependency : entry.getValue()) {
+				Node required = nodes.get(dependency);
+				if (required != null && required != node) {
+					required.dependents.add(node);
+					node.pending.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Build every singleton and wait for the end
+	 * 
+	 * @throws IllegalStateException
+	 *             listing every singleton that failed, was skipped or is part
+	 *             of a cycle
+	 */
+	public void run() {
+		List<Node> reachable = sort();
+		Set<Node> sorted = new HashSet<Node>(reachable);
+		for (Node node : nodes.values()) {
+			if (!sorted.contains(node)) {
+				problems.add(node.contract
+						+ " is part of, or depends on, a dependency cycle");
+			}
+		}
+
+		// Picked before the first submission, as a built root may already
+		// release and submit its dependents
+		List<Node> roots = new ArrayList<Node>();
+		for (Node node : reachable) {
+			if (node.pending.get() == 0) {
+				roots.add(node);
+			}
+		}
+		remaining = new CountDownLatch(reachable.size());
+		for (Node root : roots) {
+			submit(root);
+		}
+		try {
+			remaining.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Bootstrap interrupted", e);
+		}
+
+		if (!problems.isEmpty()) {
+			StringBuilder report = new StringBuilder("Bootstrap failed:");
+			for (String problem : problems) {
+				report.append("\n - ").append(problem);
+			}
+			IllegalStateException failure = new IllegalStateException(
+					report.toString(), causes.peek());
+			for (Throwable cause : causes) {
+				if (cause != failure.getCause()) {
+					failure.addSuppressed(cause);
+				}
+			}
+			throw failure;
+		}
+	}
+
+	/**
+	 * Kahn's algorithm on a copy of the counters
+	 * 
+	 * @return the singletons in dependency order, without the ones blocked by
+	 *         a cycle
+	 */
+	private List<Node> sort() {
+		Map<Node, Integer> pending = new LinkedHashMap<Node, Integer>();
+		Deque<Node> ready = new ArrayDeque<Node>();
+		for (Node node : nodes.values()) {
+			pending.put(node, node.pending.get());
+			if (node.pending.get() == 0) {
+				ready.add(node);
+			}
+		}
+		List<Node> sorted = new ArrayList<Node>();
+		while (!ready.isEmpty()) {
+			Node node = ready.poll();
+			sorted.add(node);
+			for (Node dependent : node.dependents) {
+				int count = pending.get(dependent) - 1;
+				pending.put(dependent, count);
+				if (count == 0) {
+					ready.add(dependent);
+				}
+			}
+		}
+		return sorted;
+	}
+
+	private void submit(final Node node) {
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					build(node);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			fail(node, e);
+			complete(node, false);
+		}
+	}
+
+	private void build(Node node) {
+		boolean built = false;
+		try {
+			if (node.failedDependency != null) {
+				problems.add(node.contract + " skipped, "
+						+ node.failedDependency + " failed");
+			} else {
+				container.getInstance(node.contract);
+				built = true;
+			}
+		} catch (Throwable e) {
+			fail(node, e);
+		} finally {
+			complete(node, built);
+		}
+	}
+
+	private void fail(Node node, Throwable e) {
+		problems.add(node.contract + " failed: " + e);
+		causes.add(e);
+	}
+
+	/**
+	 * Release the dependents whose last dependency was this node
+	 */
+	private void complete(Node node, boolean built) {
+		for (Node dependent : node.dependents) {
+			if (!built && dependent.failedDependency == null) {
+				dependent.failedDependency = node.failedDependency != null ? node.failedDependency
+						: node.contract;
+			}
+			if (dependent.pending.decrementAndGet() == 0) {
+				submit(dependent);
+			}
+		}
+		remaining.countDown();
+	}
+
+	private static final class Node {
+
+		final Key<?> contract;
+
+		final List<Node> dependents = new ArrayList<Node>();
+
+		final AtomicInteger pending = new AtomicInteger();
+
+		// The first failure among the dependencies, skips the node
+		volatile Key<?> failedDependency;
+
+		Node(Key<?> contract) {
+			this.contract = contract;
+		}
+	}
+}
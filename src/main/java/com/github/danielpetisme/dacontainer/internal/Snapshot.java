@@ -0,0 +1,474 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.danielpetisme.dacontainer.Key;
+import com.github.danielpetisme.dacontainer.Scope;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.google.common.base.Objects;
+
+/**
+ * A snapshot file written by {@link SnapshotWriter}, memory mapped. Only the
+ * header is read when it is opened: the settings, the constants and the
+ * index of the bindings, by key descriptor. A binding is decoded, and its
+ * classes and members loaded, when it is read.
+ * 
+ * <pre>
+ * header   magic version backend constants annotations index
+ * binding  type name implementation scope plan
+ * plan     INJECTOR | SCANNED constructor? members
+ * member   annotation kind declaringClass name parameterTypes
+ * </pre>
+ */
+public final class Snapshot {
+
+	static final int MAGIC = 0xDAC05A17;
+
+	static final short VERSION = 1;
+
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	static final byte PLAN_SCANNED = 0;
+
+	static final byte PLAN_INJECTOR = 1;
+
+	static final byte CONSTRUCTOR = 'K';
+
+	static final byte FIELD = 'F';
+
+	static final byte METHOD = 'M';
+
+	static final byte CLASS_TYPE = 'C';
+
+	static final byte PARAMETERIZED_TYPE = 'P';
+
+	// Indexed by their tag
+	static final List<Scope> SCOPES = Collections.unmodifiableList(Arrays
+			.asList(Scopes.NO_SCOPE, Scopes.SINGLETON, Scopes.THREAD));
+
+	private static final Map<String, Class<?>> PRIMITIVES = new HashMap<String, Class<?>>();
+	static {
+		for (Class<?> primitive : new Class<?>[] { boolean.class, byte.class,
+				char.class, short.class, int.class, long.class, float.class,
+				double.class, void.class }) {
+			PRIMITIVES.put(primitive.getName(), primitive);
+		}
+	}
+
+	private final ByteBuffer buffer;
+
+	private final ClassLoader loader;
+
+	private final String backend;
+
+	private final Map<String, Object> constants;
+
+	private final List<String> annotations;
+
+	// Key descriptor to the position of the binding
+	private final Map<String, Integer> index;
+
+	private Snapshot(ByteBuffer buffer, ClassLoader loader) throws IOException {
+		this.buffer = buffer;
+		this.loader = loader;
+		if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+			throw new IOException("Not a snapshot, or of another version");
+		}
+		backend = readString(buffer);
+
+		int count = buffer.getInt();
+		constants = new LinkedHashMap<String, Object>();
+		for (int i = 0; i < count; i++) {
+			constants.put(readString(buffer), readConstant(buffer));
+		}
+
+		count = buffer.getInt();
+		annotations = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			annotations.add(readString(buffer));
+		}
+
+		count = buffer.getInt();
+		index = new LinkedHashMap<String, Integer>();
+		for (int i = 0; i < count; i++) {
+			index.put(readString(buffer), buffer.getInt());
+		}
+		int bindings = buffer.position();
+		for (Map.Entry<String, Integer> entry : index.entrySet()) {
+			entry.setValue(bindings + entry.getValue());
+		}
+	}
+
+	/**
+	 * @param file
+	 *            a snapshot file
+	 * @param loader
+	 *            loads the classes of the bindings
+	 * @return the snapshot, with only its header read
+	 */
+	public static Snapshot open(File file, ClassLoader loader)
+			throws IOException {
+		checkNotNull(file, "The file cannot be null");
+		checkNotNull(loader, "The loader cannot be null");
+
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = input.getChannel();
+			// Stays mapped once the channel is closed
+			return new Snapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size()), loader);
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * @return true for the scopes a snapshot can hold: NO_SCOPE, SINGLETON
+	 *         and THREAD
+	 */
+	public static boolean isBuiltIn(Scope scope) {
+		return SCOPES.contains(scope);
+	}
+
+	/**
+	 * @return the name of the injection backend
+	 */
+	public String getBackend() {
+		return backend;
+	}
+
+	public Map<String, Object> getConstants() {
+		return Collections.unmodifiableMap(constants);
+	}
+
+	/**
+	 * @return the class names of the managed annotations
+	 */
+	public List<String> getAnnotations() {
+		return Collections.unmodifiableList(annotations);
+	}
+
+	/**
+	 * @return the descriptors of the bound keys
+	 */
+	public List<String> getDescriptors() {
+		return new ArrayList<String>(index.keySet());
+	}
+
+	public boolean contains(String descriptor) {
+		return index.containsKey(descriptor);
+	}
+
+	/**
+	 * @param descriptor
+	 *            the descriptor of a bound key
+	 * @return the binding, its classes loaded
+	 * @throws ClassNotFoundException
+	 *             if a class of the binding no longer exists
+	 */
+	public Entry read(String descriptor) throws ClassNotFoundException {
+		Integer position = index.get(descriptor);
+		if (position == null) {
+			return null;
+		}
+		ByteBuffer input = buffer.duplicate();
+		input.position(position);
+		return new Entry(input);
+	}
+
+	/**
+	 * @return a string naming the key without loading any class
+	 */
+	public static String descriptor(Key<?> key) {
+		String type = descriptor(key.getType());
+		return key.getName() == null ? type : type + "#" + key.getName();
+	}
+
+	private static String descriptor(Type type) {
+		if (type instanceof Class<?>) {
+			return ((Class<?>) type).getName();
+		}
+		ParameterizedType parameterized = (ParameterizedType) type;
+		StringBuilder descriptor = new StringBuilder(
+				descriptor(parameterized.getRawType())).append('<');
+		Type[] arguments = parameterized.getActualTypeArguments();
+		for (int i = 0; i < arguments.length; i++) {
+			if (i > 0) {
+				descriptor.append(',');
+			}
+			descriptor.append(descriptor(arguments[i]));
+		}
+		return descriptor.append('>').toString();
+	}
+
+	private Class<?> load(String name) throws ClassNotFoundException {
+		return load(name, loader);
+	}
+
+	/**
+	 * @return the class of the binary name, or the primitive of the name,
+	 *         not initialized
+	 */
+	static Class<?> load(String name, ClassLoader loader)
+			throws ClassNotFoundException {
+		Class<?> primitive = PRIMITIVES.get(name);
+		if (primitive != null) {
+			return primitive;
+		}
+		return Class.forName(name, false, loader);
+	}
+
+	private Type readType(ByteBuffer input) throws ClassNotFoundException {
+		byte tag = input.get();
+		Class<?> raw = load(readString(input));
+		if (tag == CLASS_TYPE) {
+			return raw;
+		}
+		Type[] arguments = new Type[input.get()];
+		for (int i = 0; i < arguments.length; i++) {
+			arguments[i] = readType(input);
+		}
+		return new RestoredParameterizedType(raw, arguments);
+	}
+
+	static String readString(ByteBuffer input) {
+		byte[] bytes = new byte[input.getInt()];
+		input.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private static Object readConstant(ByteBuffer input) {
+		byte tag = input.get();
+		switch (tag) {
+		case 'S':
+			return readString(input);
+		case 'Z':
+			return Boolean.valueOf(input.get() != 0);
+		case 'B':
+			return Byte.valueOf(input.get());
+		case 'C':
+			return Character.valueOf(input.getChar());
+		case 'H':
+			return Short.valueOf(input.getShort());
+		case 'I':
+			return Integer.valueOf(input.getInt());
+		case 'J':
+			return Long.valueOf(input.getLong());
+		case 'F':
+			return Float.valueOf(input.getFloat());
+		case 'D':
+			return Double.valueOf(input.getDouble());
+		default:
+			throw new IllegalStateException("Unknown constant tag " + tag);
+		}
+	}
+
+	/**
+	 * A binding read from the snapshot
+	 */
+	public final class Entry {
+
+		private final Key<?> key;
+
+		private final Class<?> implementation;
+
+		private final Scope scope;
+
+		private final boolean injector;
+
+		private final Member constructor;
+
+		private final List<Member> members = new ArrayList<Member>();
+
+		Entry(ByteBuffer input) throws ClassNotFoundException {
+			Type type = readType(input);
+			String name = input.get() != 0 ? readString(input) : null;
+			key = Key.get(type, name);
+			implementation = load(readString(input));
+			scope = SCOPES.get(input.get());
+			injector = input.get() == PLAN_INJECTOR;
+			if (injector) {
+				constructor = null;
+				return;
+			}
+			constructor = input.get() != 0 ? new Member(input) : null;
+			int count = input.getShort();
+			for (int i = 0; i < count; i++) {
+				members.add(new Member(input));
+			}
+		}
+
+		public Key<?> getKey() {
+			return key;
+		}
+
+		public Class<?> getImplementation() {
+			return implementation;
+		}
+
+		public Scope getScope() {
+			return scope;
+		}
+
+		/**
+		 * @return true when the class was built by its generated injector
+		 */
+		public boolean isInjector() {
+			return injector;
+		}
+
+		/**
+		 * @return the annotated constructor or null
+		 */
+		public Member getConstructor() {
+			return constructor;
+		}
+
+		/**
+		 * @return the annotated fields and methods, in the plan order
+		 */
+		public List<Member> getMembers() {
+			return Collections.unmodifiableList(members);
+		}
+	}
+
+	/**
+	 * An annotated member of a plan, found again by its name and parameter
+	 * types instead of scanning its class
+	 */
+	public final class Member implements MemberReference {
+
+		private final String annotation;
+
+		private final byte kind;
+
+		private final String declaringClass;
+
+		private final String name;
+
+		private final String[] parameterTypes;
+
+		Member(ByteBuffer input) {
+			annotation = readString(input);
+			kind = input.get();
+			declaringClass = readString(input);
+			name = readString(input);
+			parameterTypes = new String[input.get()];
+			for (int i = 0; i < parameterTypes.length; i++) {
+				parameterTypes[i] = readString(input);
+			}
+		}
+
+		public Class<? extends Annotation> getAnnotation()
+				throws ClassNotFoundException {
+			return load(annotation).asSubclass(Annotation.class);
+		}
+
+		public AccessibleObject resolve() throws ClassNotFoundException,
+				NoSuchFieldException, NoSuchMethodException {
+			Class<?> owner = load(declaringClass);
+			if (kind == FIELD) {
+				return owner.getDeclaredField(name);
+			}
+			Class<?>[] parameters = new Class<?>[parameterTypes.length];
+			for (int i = 0; i < parameters.length; i++) {
+				parameters[i] = load(parameterTypes[i]);
+			}
+			if (kind == CONSTRUCTOR) {
+				return owner.getConstructor(parameters);
+			}
+			return owner.getDeclaredMethod(name, parameters);
+		}
+
+		@Override
+		public String toString() {
+			return declaringClass + "." + name;
+		}
+	}
+
+	/**
+	 * Equal to the parameterized types of the reflection, so a restored key
+	 * finds the binding of the key it was written from
+	 */
+	private static final class RestoredParameterizedType implements
+			ParameterizedType {
+
+		private final Class<?> rawType;
+
+		private final Type[] arguments;
+
+		RestoredParameterizedType(Class<?> rawType, Type[] arguments) {
+			this.rawType = rawType;
+			this.arguments = arguments;
+		}
+
+		public Type[] getActualTypeArguments() {
+			return arguments.clone();
+		}
+
+		public Type getRawType() {
+			return rawType;
+		}
+
+		public Type getOwnerType() {
+			return rawType.getDeclaringClass();
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof ParameterizedType)) {
+				return false;
+			}
+			ParameterizedType other = (ParameterizedType) object;
+			return rawType.equals(other.getRawType())
+					&& Objects.equal(getOwnerType(), other.getOwnerType())
+					&& Arrays.equals(arguments, other.getActualTypeArguments());
+		}
+
+		@Override
+		public int hashCode() {
+			// As the reflection computes it
+			return Arrays.hashCode(arguments)
+					^ (getOwnerType() == null ? 0 : getOwnerType().hashCode())
+					^ rawType.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return descriptor(this);
+		}
+	}
+}
@@ -0,0 +1,252 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.dacontainer.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+
+import com.github.danielpetisme.dacontainer.Key;
+import com.github.danielpetisme.dacontainer.annotations.internal.DaAnnotation;
+
+/**
+ * Writes the bindings and the plans of a frozen container in the format
+ * read by {@link Snapshot}. Each plan is written as the references of its
+ * members, which are found again without scanning their class.
+ */
+public final class SnapshotWriter {
+
+	private final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+
+	private final DataOutputStream header = new DataOutputStream(headerBytes);
+
+	private final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+
+	private final DataOutputStream index = new DataOutputStream(indexBytes);
+
+	private final ByteArrayOutputStream bindingBytes = new ByteArrayOutputStream();
+
+	private final DataOutputStream bindings = new DataOutputStream(
+			bindingBytes);
+
+	private int bindingCount;
+
+	/**
+	 * @param backend
+	 *            the name of the injection backend
+	 * @param constants
+	 *            the constants, strings or boxed primitives
+	 * @param annotations
+	 *            the managed annotations
+	 */
+	public SnapshotWriter(String backend, Map<String, Object> constants,
+			List<Class<? extends Annotation>> annotations) throws IOException {
+		checkNotNull(backend, "The backend cannot be null");
+
+		header.writeInt(Snapshot.MAGIC);
+		header.writeShort(Snapshot.VERSION);
+		writeString(header, backend);
+		header.writeInt(constants.size());
+		for (Map.Entry<String, Object> constant : constants.entrySet()) {
+			writeString(header, constant.getKey());
+			writeConstant(constant.getKey(), constant.getValue());
+		}
+		header.writeInt(annotations.size());
+		for (Class<? extends Annotation> annotation : annotations) {
+			writeString(header, annotation.getName());
+		}
+	}
+
+	/**
+	 * @param binding
+	 *            a binding in one of the built-in scopes
+	 * @param plan
+	 *            the plan of its implementation
+	 * @param table
+	 *            the dispatch table the plan was created with
+	 */
+	public void write(Binding binding, InjectionPlan plan,
+			Map<Class<? extends Annotation>, DaAnnotation> table)
+			throws IOException {
+		int scope = Snapshot.SCOPES.indexOf(binding.getScope());
+		checkArgument(scope >= 0, "The scope of %s is not a built-in scope",
+				binding);
+
+		Key<?> key = binding.getKey();
+		writeString(index, Snapshot.descriptor(key));
+		index.writeInt(bindings.size());
+		bindingCount++;
+
+		writeType(key.getType());
+		bindings.writeBoolean(key.getName() != null);
+		if (key.getName() != null) {
+			writeString(bindings, key.getName());
+		}
+		writeString(bindings, binding.getImplementation().getName());
+		bindings.writeByte(scope);
+		if (plan.getInjector() != null) {
+			bindings.writeByte(Snapshot.PLAN_INJECTOR);
+			return;
+		}
+		bindings.writeByte(Snapshot.PLAN_SCANNED);
+		InjectionPoint constructor = plan.getConstructor();
+		bindings.writeBoolean(constructor != null);
+		if (constructor != null) {
+			writeMember(constructor.getMember(),
+					plan.getConstructorHandler(), table);
+		}
+		List<InjectionPoint> members = plan.getMembers();
+		List<DaAnnotation> handlers = plan.getHandlers();
+		bindings.writeShort(members.size());
+		for (int i = 0; i < members.size(); i++) {
+			writeMember(members.get(i).getMember(), handlers.get(i), table);
+		}
+	}
+
+	public void writeTo(File file) throws IOException {
+		checkNotNull(file, "The file cannot be null");
+
+		header.writeInt(bindingCount);
+		OutputStream output = new FileOutputStream(file);
+		try {
+			headerBytes.writeTo(output);
+			indexBytes.writeTo(output);
+			bindingBytes.writeTo(output);
+		} finally {
+			output.close();
+		}
+	}
+
+	private void writeMember(AccessibleObject member, DaAnnotation handler,
+			Map<Class<? extends Annotation>, DaAnnotation> table)
+			throws IOException {
+		writeString(bindings, annotationOf(member, handler, table).getName());
+		Class<?>[] parameterTypes;
+		if (member instanceof Field) {
+			Field field = (Field) member;
+			bindings.writeByte(Snapshot.FIELD);
+			writeString(bindings, field.getDeclaringClass().getName());
+			writeString(bindings, field.getName());
+			parameterTypes = new Class<?>[0];
+		} else if (member instanceof Method) {
+			Method method = (Method) member;
+			bindings.writeByte(Snapshot.METHOD);
+			writeString(bindings, method.getDeclaringClass().getName());
+			writeString(bindings, method.getName());
+			parameterTypes = method.getParameterTypes();
+		} else {
+			Constructor<?> constructor = (Constructor<?>) member;
+			bindings.writeByte(Snapshot.CONSTRUCTOR);
+			writeString(bindings, constructor.getDeclaringClass().getName());
+			writeString(bindings, "<init>");
+			parameterTypes = constructor.getParameterTypes();
+		}
+		bindings.writeByte(parameterTypes.length);
+		for (Class<?> parameterType : parameterTypes) {
+			writeString(bindings, parameterType.getName());
+		}
+	}
+
+	/**
+	 * @return the annotation of the member the handler was dispatched from
+	 */
+	private static Class<? extends Annotation> annotationOf(
+			AccessibleObject member, DaAnnotation handler,
+			Map<Class<? extends Annotation>, DaAnnotation> table) {
+		for (Annotation annotation : member.getAnnotations()) {
+			if (table.get(annotation.annotationType()) == handler) {
+				return annotation.annotationType();
+			}
+		}
+		throw new IllegalStateException(member + " has no annotation of "
+				+ handler);
+	}
+
+	private void writeType(Type type) throws IOException {
+		if (type instanceof Class<?>) {
+			bindings.writeByte(Snapshot.CLASS_TYPE);
+			writeString(bindings, ((Class<?>) type).getName());
+			return;
+		}
+		ParameterizedType parameterized = (ParameterizedType) type;
+		bindings.writeByte(Snapshot.PARAMETERIZED_TYPE);
+		writeString(bindings,
+				((Class<?>) parameterized.getRawType()).getName());
+		Type[] arguments = parameterized.getActualTypeArguments();
+		bindings.writeByte(arguments.length);
+		for (Type argument : arguments) {
+			writeType(argument);
+		}
+	}
+
+	private void writeConstant(String name, Object value) throws IOException {
+		if (value instanceof String) {
+			header.writeByte('S');
+			writeString(header, (String) value);
+		} else if (value instanceof Boolean) {
+			header.writeByte('Z');
+			header.writeBoolean((Boolean) value);
+		} else if (value instanceof Byte) {
+			header.writeByte('B');
+			header.writeByte((Byte) value);
+		} else if (value instanceof Character) {
+			header.writeByte('C');
+			header.writeChar((Character) value);
+		} else if (value instanceof Short) {
+			header.writeByte('H');
+			header.writeShort((Short) value);
+		} else if (value instanceof Integer) {
+			header.writeByte('I');
+			header.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			header.writeByte('J');
+			header.writeLong((Long) value);
+		} else if (value instanceof Float) {
+			header.writeByte('F');
+			header.writeFloat((Float) value);
+		} else if (value instanceof Double) {
+			header.writeByte('D');
+			header.writeDouble((Double) value);
+		} else {
+			throw new IllegalArgumentException(String.format(
+					"The constant %s is a %s, only strings and primitives "
+							+ "are written in a snapshot", name, value
+							.getClass().getName()));
+		}
+	}
+
+	private static void writeString(DataOutputStream output, String value)
+			throws IOException {
+		byte[] bytes = value.getBytes(Snapshot.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+}
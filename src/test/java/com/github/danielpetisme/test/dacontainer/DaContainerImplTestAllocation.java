@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+import com.github.danielpetisme.dacontainer.annotations.Named;
+
+/**
+ * A resolution in steady state allocates the objects it builds, and the
+ * arguments of the injected constructors and methods, nothing else. Each
+ * case is compared to the same objects built by hand.
+ */
+public class DaContainerImplTestAllocation {
+
+	private static final int WARMUP = 100000;
+
+	private static final int ITERATIONS = 100000;
+
+	// Makes the objects escape, so the JIT cannot remove the allocations
+	private static volatile Object sink;
+
+	private com.sun.management.ThreadMXBean threads;
+
+	private DaContainer tested;
+
+	@Before
+	public void setUp() throws Exception {
+		Object bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		threads = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported()
+				&& threads.isThreadAllocatedMemoryEnabled());
+
+		tested = new DaContainerImpl();
+		tested.bind(Engine.class);
+		tested.bind(Car.class);
+		tested.bind(Gearbox.class);
+		tested.bindConstant("car.name", "Da car");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	@Test
+	public void testFieldInjection() {
+		assertAllocatesAsByHand(new Runnable() {
+			public void run() {
+				sink = tested.getInstance(Car.class);
+			}
+		}, new Runnable() {
+			public void run() {
+				Car car = new Car();
+				car.engine = new Engine();
+				car.name = "Da car";
+				sink = car;
+			}
+		});
+	}
+
+	@Test
+	public void testConstructorInjection() {
+		assertAllocatesAsByHand(new Runnable() {
+			public void run() {
+				sink = tested.getInstance(Gearbox.class);
+			}
+		}, new Runnable() {
+			public void run() {
+				Object[] arguments = new Object[] { new Engine() };
+				sink = arguments;
+				sink = new Gearbox((Engine) arguments[0]);
+			}
+		});
+	}
+
+	@Test
+	public void testFrozenContainer() {
+		tested.freeze();
+
+		testFieldInjection();
+		testConstructorInjection();
+	}
+
+	private void assertAllocatesAsByHand(Runnable resolution, Runnable byHand) {
+		long expected = allocatedBytes(byHand);
+		long actual = allocatedBytes(resolution);
+
+		assertTrue("Allocated " + actual + " bytes per resolution instead of "
+				+ expected, actual <= expected);
+	}
+
+	private long allocatedBytes(Runnable runnable) {
+		for (int i = 0; i < WARMUP; i++) {
+			runnable.run();
+		}
+		long thread = Thread.currentThread().getId();
+		long start = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < ITERATIONS; i++) {
+			runnable.run();
+		}
+		long end = threads.getThreadAllocatedBytes(thread);
+		return (end - start) / ITERATIONS;
+	}
+
+	public static class Engine {
+	}
+
+	public static class Car {
+
+		@Inject
+		Engine engine;
+
+		@Named("car.name")
+		String name;
+	}
+
+	public static class Gearbox {
+
+		final Engine engine;
+
+		@Inject
+		public Gearbox(Engine engine) {
+			this.engine = engine;
+		}
+	}
+}
@@ -19,6 +19,7 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Before;
@@ -28,10 +29,17 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 import com.github.danielpetisme.dacontainer.DaContainer;
 import com.github.danielpetisme.dacontainer.DaContainerImpl;
 import com.github.danielpetisme.dacontainer.annotations.AnnotationInjection;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+import com.github.danielpetisme.dacontainer.annotations.internal.AnnotationInjectionImpl;
+import com.github.danielpetisme.dacontainer.annotations.internal.DaAnnotation;
+import com.github.danielpetisme.dacontainer.annotations.internal.InjectImpl;
+import com.github.danielpetisme.dacontainer.annotations.internal.NamedImpl;
+import com.github.danielpetisme.dacontainer.internal.InjectionPoint;
 
 public class DaContainerImplTestAnnotationInjection {
 
@@ -63,6 +71,20 @@ public class DaContainerImplTestAnnotationInjection {
 		}
 	}
 
+	@Test
+	public void testAnnotationBindingAfterResolution() throws Exception {
+
+		tested.bind(MyClient.class);
+		MyClient client = tested.getInstance(MyClient.class);
+		assertThat(client.getPort(), is(nullValue()));
+
+		// The class has already been resolved once
+		tested.bindAnnotation(ServerPort.class, "8080");
+		client = tested.getInstance(MyClient.class);
+
+		assertThat(client.getPort(), is("8080"));
+	}
+
 	@Test
 	public void testInvalidAnnotation() throws Exception {
 		try {
@@ -72,6 +94,61 @@ public class DaContainerImplTestAnnotationInjection {
 		}
 	}
 
+	@Test
+	public void testHandlersResolvedOnceAtRegistration() throws Exception {
+		DaContainer container = new DaContainerImpl();
+		container.bind(Inject.class, CountingInjectImpl.class);
+		container.bindAnnotation(ServerName.class, "localhost");
+		container.bindAnnotation(ServerPort.class, "8080");
+		container.bind(MyServer.class);
+		container.bind(MyClient.class);
+		container.bind(MyCluster.class);
+		CountingInjectImpl.CREATED.set(0);
+
+		MyCluster cluster = container.getInstance(MyCluster.class);
+		container.getInstance(MyCluster.class);
+
+		assertThat(cluster.server.getServerName(), is("localhost"));
+		assertThat(cluster.client.getPort(), is("8080"));
+		assertThat(CountingInjectImpl.CREATED.get(), is(0));
+
+		// Rebinding the handler replaces it in the dispatch table
+		container.bind(Inject.class, CountingInjectImpl.class);
+		assertThat(CountingInjectImpl.CREATED.get(), is(1));
+	}
+
+	@Test
+	public void testConstantHandlersRejectConstructors() throws Exception {
+		DaAnnotation[] handlers = { new NamedImpl(),
+				new AnnotationInjectionImpl() };
+		for (DaAnnotation handler : handlers) {
+			try {
+				handler.apply(tested, (InjectionPoint) null);
+				fail(handler + " built an instance");
+			} catch (IllegalArgumentException e) {
+				assertThat(e.getMessage(), is(not(nullValue())));
+			}
+		}
+	}
+
+	public static class CountingInjectImpl extends InjectImpl {
+
+		static final AtomicInteger CREATED = new AtomicInteger();
+
+		public CountingInjectImpl() {
+			CREATED.incrementAndGet();
+		}
+	}
+
+	public static class MyCluster {
+
+		@Inject
+		MyServer server;
+
+		@Inject
+		MyClient client;
+	}
+
 	public static @interface InvalidAnnotation {
 	}
 
@@ -81,6 +158,22 @@ public class DaContainerImplTestAnnotationInjection {
 	public static @interface ServerName {
 	}
 
+	@AnnotationInjection
+	@Target(value = ElementType.FIELD)
+	@Retention(RetentionPolicy.RUNTIME)
+	public static @interface ServerPort {
+	}
+
+	public static class MyClient {
+
+		@ServerPort
+		private String port;
+
+		public String getPort() {
+			return this.port;
+		}
+	}
+
 	public static class MyServer {
 
 		@ServerName
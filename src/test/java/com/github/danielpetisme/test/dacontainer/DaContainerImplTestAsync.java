@@ -0,0 +1,234 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.Key;
+import com.github.danielpetisme.dacontainer.Provider;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+import com.github.danielpetisme.dacontainer.annotations.Named;
+
+public class DaContainerImplTestAsync {
+
+	// Counted down by each slow dependency, which only goes on once the
+	// others are being built too
+	static volatile CountDownLatch building;
+
+	private DaContainer tested;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws Exception {
+		tested = new DaContainerImpl();
+		executor = Executors.newCachedThreadPool();
+		building = new CountDownLatch(3);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		executor.shutdown();
+	}
+
+	@Test
+	public void testDependenciesResolvedConcurrently() throws Exception {
+		bindDashboard(tested);
+
+		Dashboard dashboard = tested.getInstanceAsync(
+				Key.get(Dashboard.class), executor).get(10, TimeUnit.SECONDS);
+
+		assertTrue(dashboard.orders.concurrent);
+		assertTrue(dashboard.stock.concurrent);
+		assertTrue(dashboard.prices.concurrent);
+		assertThat(dashboard.cache, is(sameInstance(tested
+				.getInstance(Cache.class))));
+		assertThat(dashboard.title, is("Sales"));
+	}
+
+	@Test
+	public void testDefaultExecutor() throws Exception {
+		bindDashboard(tested);
+		tested.freeze();
+
+		Dashboard dashboard = tested.getInstanceAsync(Dashboard.class).get(
+				10, TimeUnit.SECONDS);
+
+		assertTrue(dashboard.orders.concurrent);
+		assertTrue(dashboard.stock.concurrent);
+		assertTrue(dashboard.prices.concurrent);
+		assertThat(dashboard.pricesProvider.get(), is(not(sameInstance(dashboard.prices))));
+	}
+
+	@Test
+	public void testScopedBinding() throws Exception {
+		tested.bind(Cache.class, Cache.class, Scopes.SINGLETON);
+		tested.bind(Warehouse.class, Warehouse.class, Scopes.SINGLETON);
+
+		Warehouse warehouse = tested.getInstanceAsync(
+				Key.get(Warehouse.class), executor).get(10, TimeUnit.SECONDS);
+
+		assertThat(warehouse, is(sameInstance(tested
+				.getInstance(Warehouse.class))));
+		assertThat(warehouse.cache, is(instanceOf(Cache.class)));
+	}
+
+	@Test
+	public void testUnboundContract() throws Exception {
+		try {
+			tested.getInstanceAsync(Key.get(Warehouse.class), executor).get();
+			fail();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), is(instanceOf(IllegalArgumentException.class)));
+		}
+	}
+
+	@Test
+	public void testUnboundConstant() throws Exception {
+		tested.bind(Cache.class, Cache.class, Scopes.SINGLETON);
+		tested.bind(Shelf.class);
+
+		Shelf shelf = tested.getInstanceAsync(Key.get(Shelf.class), executor)
+				.get(10, TimeUnit.SECONDS);
+
+		// Skipped like a synchronous injection does
+		assertThat(shelf.cache, is(instanceOf(Cache.class)));
+		assertThat(shelf.label, is(nullValue()));
+	}
+
+	@Test
+	public void testCycle() throws Exception {
+		tested.bind(Chicken.class);
+		tested.bind(Egg.class);
+
+		try {
+			tested.getInstanceAsync(Key.get(Chicken.class), executor).get();
+			fail();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), is(instanceOf(IllegalStateException.class)));
+		}
+	}
+
+	private static void bindDashboard(DaContainer container) {
+		container.bind(Cache.class, Cache.class, Scopes.SINGLETON);
+		container.bind(OrdersReport.class);
+		container.bind(StockReport.class);
+		container.bind(PricesReport.class);
+		container.bind(Dashboard.class);
+		container.bindConstant("dashboard.title", "Sales");
+	}
+
+	public static class Cache {
+	}
+
+	public static abstract class SlowReport {
+
+		final boolean concurrent;
+
+		SlowReport() {
+			CountDownLatch latch = building;
+			latch.countDown();
+			boolean others;
+			try {
+				others = latch.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				others = false;
+			}
+			this.concurrent = others;
+		}
+	}
+
+	public static class OrdersReport extends SlowReport {
+	}
+
+	public static class StockReport extends SlowReport {
+	}
+
+	public static class PricesReport extends SlowReport {
+	}
+
+	public static class Dashboard {
+
+		final OrdersReport orders;
+
+		final StockReport stock;
+
+		@Inject
+		PricesReport prices;
+
+		@Inject
+		Provider<PricesReport> pricesProvider;
+
+		@Inject
+		Cache cache;
+
+		@Named("dashboard.title")
+		String title;
+
+		@Inject
+		public Dashboard(OrdersReport orders, StockReport stock) {
+			this.orders = orders;
+			this.stock = stock;
+		}
+	}
+
+	public static class Warehouse {
+
+		@Inject
+		Cache cache;
+	}
+
+	public static class Shelf {
+
+		@Inject
+		Cache cache;
+
+		@Named("shelf.label")
+		String label;
+	}
+
+	public static class Chicken {
+
+		@Inject
+		Egg egg;
+	}
+
+	public static class Egg {
+
+		@Inject
+		Chicken chicken;
+	}
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+
+public class DaContainerImplTestAutoBind {
+
+	private static final String INJECT = Inject.class.getName();
+
+	private static final String CAR = Car.class.getName() + " - "
+			+ Car.class.getName() + "," + Vehicle.class.getName() + ","
+			+ Hauler.class.getName() + " F:" + INJECT + ":"
+			+ Car.class.getName() + ":engine: M:" + INJECT + ":"
+			+ Car.class.getName() + ":setSpare:" + Engine.class.getName();
+
+	private static final String TRUCK = Truck.class.getName() + " - "
+			+ Truck.class.getName() + "," + Hauler.class.getName() + " F:"
+			+ INJECT + ":" + Truck.class.getName() + ":engine:";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private DaContainer tested;
+
+	@Before
+	public void setUp() {
+		tested = new DaContainerImpl();
+		tested.bind(Engine.class);
+	}
+
+	@Test
+	public void testBoundOnFirstLookup() throws Exception {
+		RecordingLoader loader = index("# Components", CAR, TRUCK);
+		tested.autoBind(loader);
+		assertTrue(loader.loaded.isEmpty());
+
+		Car car = (Car) tested.getInstance(Vehicle.class);
+		assertThat(car.engine, is(notNullValue()));
+		assertThat(car.spare, is(notNullValue()));
+		assertTrue(loader.loaded.contains(Car.class.getName()));
+		assertThat(loader.loaded.contains(Truck.class.getName()), is(false));
+	}
+
+	@Test
+	public void testAmbiguousContract() throws Exception {
+		tested.autoBind(index(CAR, TRUCK));
+		assertThat(tested.getInstance(Truck.class), is(instanceOf(Truck.class)));
+		try {
+			tested.getInstance(Hauler.class);
+			fail("Hauler has two components");
+		} catch (IllegalArgumentException e) {
+			// Not bound
+		}
+	}
+
+	@Test
+	public void testBindingWins() throws Exception {
+		tested.autoBind(index(CAR));
+		tested.bind(Vehicle.class, Bike.class);
+		assertThat(tested.getInstance(Vehicle.class), is(instanceOf(Bike.class)));
+	}
+
+	@Test
+	public void testOutOfDateIndex() throws Exception {
+		tested.autoBind(index(CAR.replace(":engine:", ":motor:")));
+		Car car = tested.getInstance(Car.class);
+		assertThat(car.engine, is(notNullValue()));
+	}
+
+	@Test
+	public void testFreezeBindsAll() throws Exception {
+		RecordingLoader loader = index(CAR, TRUCK);
+		tested.autoBind(loader);
+		tested.freeze();
+		assertTrue(loader.loaded.contains(Car.class.getName()));
+		assertTrue(loader.loaded.contains(Truck.class.getName()));
+
+		Car car = tested.getInstance(Vehicle.class);
+		assertThat(car.spare, is(notNullValue()));
+	}
+
+	@Test(expected = IOException.class)
+	public void testMalformedIndex() throws Exception {
+		tested.autoBind(index(Car.class.getName()));
+	}
+
+	private RecordingLoader index(String... lines) throws IOException {
+		File resource = new File(folder.getRoot(),
+				"META-INF/dacontainer/components");
+		resource.getParentFile().mkdirs();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(resource),
+				"UTF-8");
+		try {
+			for (String line : lines) {
+				writer.write(line + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+		return new RecordingLoader(folder.getRoot().toURI().toURL());
+	}
+
+	/**
+	 * Records the classes the container asks for
+	 */
+	private static class RecordingLoader extends URLClassLoader {
+
+		final Set<String> loaded = Collections
+				.synchronizedSet(new HashSet<String>());
+
+		RecordingLoader(URL root) {
+			super(new URL[] { root }, DaContainerImplTestAutoBind.class
+					.getClassLoader());
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve)
+				throws ClassNotFoundException {
+			loaded.add(name);
+			return super.loadClass(name, resolve);
+		}
+	}
+
+	public interface Vehicle {
+	}
+
+	public interface Hauler {
+	}
+
+	public static class Engine {
+	}
+
+	public static class Car implements Vehicle, Hauler {
+
+		@Inject
+		public Engine engine;
+
+		public Engine spare;
+
+		@Inject
+		public void setSpare(Engine spare) {
+			this.spare = spare;
+		}
+	}
+
+	public static class Truck implements Hauler {
+
+		@Inject
+		public Engine engine;
+	}
+
+	public static class Bike implements Vehicle {
+	}
+}
@@ -32,6 +32,8 @@ import org.junit.Test;
 
 import com.github.danielpetisme.dacontainer.DaContainer;
 import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
 
 public class DaContainerImplTestBasics {
 
@@ -92,5 +94,48 @@ public class DaContainerImplTestBasics {
 		// must throw a IllegalArgumentException
 		tested.getInstance(Map.class);
 	}
-	
+
+	@Test
+	public final void testGetInstances() {
+		DaContainer container = new DaContainerImpl();
+		container.bind(Tool.class, Tool.class, Scopes.SINGLETON);
+		container.bind(Worker.class);
+		Tool tool = container.getInstance(Tool.class);
+
+		List<Worker> workers = container.getInstances(Worker.class, 3);
+
+		assertThat(workers.size(), is(3));
+		assertThat(workers.get(0), is(not(sameInstance(workers.get(1)))));
+		assertThat(workers.get(1), is(not(sameInstance(workers.get(2)))));
+		for (Worker worker : workers) {
+			assertThat(worker.tool, is(sameInstance(tool)));
+		}
+	}
+
+	@Test
+	public final void testGetInstancesScoped() {
+		DaContainer container = new DaContainerImpl();
+		container.bind(Tool.class, Tool.class, Scopes.SINGLETON);
+		container.freeze();
+
+		List<Tool> tools = container.getInstances(Tool.class, 2);
+
+		assertThat(tools.get(0), is(sameInstance(tools.get(1))));
+		assertTrue(container.getInstances(Tool.class, 0).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testGetInstancesNegativeCount() {
+		tested.bind(List.class, ArrayList.class);
+		tested.getInstances(List.class, -1);
+	}
+
+	public static class Tool {
+	}
+
+	public static class Worker {
+
+		@Inject
+		Tool tool;
+	}
 }
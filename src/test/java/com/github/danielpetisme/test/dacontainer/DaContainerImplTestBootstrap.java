@@ -0,0 +1,228 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.matchers.JUnitMatchers.containsString;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+
+public class DaContainerImplTestBootstrap {
+
+	private static final List<Class<?>> BUILT = new CopyOnWriteArrayList<Class<?>>();
+
+	// Both loaders wait for each other, so they must be built in parallel
+	private static CyclicBarrier loaders;
+
+	private static final AtomicInteger REQUESTS = new AtomicInteger();
+
+	private DaContainer tested;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws Exception {
+		tested = new DaContainerImpl();
+		executor = Executors.newFixedThreadPool(4);
+		BUILT.clear();
+		REQUESTS.set(0);
+		loaders = new CyclicBarrier(2);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testParallelInDependencyOrder() {
+		tested.bind(CacheLoader.class, CacheLoader.class, Scopes.SINGLETON);
+		tested.bind(FileLoader.class, FileLoader.class, Scopes.SINGLETON);
+		tested.bind(Client.class);
+		tested.bind(Service.class, Service.class, Scopes.SINGLETON);
+		tested.bind(Request.class);
+
+		tested.bootstrap(executor);
+
+		assertThat(BUILT.size(), is(3));
+		assertThat(BUILT.get(2), is((Object) Service.class));
+		assertThat(REQUESTS.get(), is(0));
+
+		// The singletons are not built again
+		Service service = tested.getInstance(Service.class);
+		assertThat(BUILT.size(), is(3));
+		assertTrue(service.client.cache == tested.getInstance(CacheLoader.class));
+	}
+
+	@Test
+	public void testDefaultPool() {
+		// The pool may have a single thread, no barrier here
+		tested.bind(Unrelated.class, Unrelated.class, Scopes.SINGLETON);
+		tested.bind(Request.class);
+
+		tested.bootstrap();
+
+		assertThat(BUILT.size(), is(1));
+		assertThat(REQUESTS.get(), is(0));
+	}
+
+	@Test
+	public void testFailuresReportedTogether() {
+		tested.bind(Broken.class, Broken.class, Scopes.SINGLETON);
+		tested.bind(AlsoBroken.class, AlsoBroken.class, Scopes.SINGLETON);
+		tested.bind(NeedsBroken.class, NeedsBroken.class, Scopes.SINGLETON);
+		tested.bind(Unrelated.class, Unrelated.class, Scopes.SINGLETON);
+
+		try {
+			tested.bootstrap(executor);
+			fail("Two singletons cannot be built");
+		} catch (IllegalStateException e) {
+			assertThat(e.getMessage(), containsString(Broken.class.getName()
+					+ " failed"));
+			assertThat(e.getMessage(),
+					containsString(AlsoBroken.class.getName() + " failed"));
+			assertThat(e.getMessage(),
+					containsString(NeedsBroken.class.getName() + " skipped"));
+			assertThat(e.getSuppressed().length, is(1));
+		}
+		assertThat(BUILT,
+				is(Collections.<Class<?>> singletonList(Unrelated.class)));
+	}
+
+	@Test
+	public void testCycle() {
+		tested.bind(Left.class, Left.class, Scopes.SINGLETON);
+		tested.bind(Right.class, Right.class, Scopes.SINGLETON);
+
+		try {
+			tested.bootstrap(executor);
+			fail("Left -> Right -> Left");
+		} catch (IllegalStateException e) {
+			assertThat(e.getMessage(), containsString(Left.class.getName()
+					+ " is part of, or depends on, a dependency cycle"));
+		}
+	}
+
+	private static void await() {
+		try {
+			loaders.await(10, TimeUnit.SECONDS);
+		} catch (Exception e) {
+			throw new IllegalStateException("Not built in parallel", e);
+		}
+	}
+
+	public static class CacheLoader {
+
+		public CacheLoader() {
+			await();
+			BUILT.add(CacheLoader.class);
+		}
+	}
+
+	public static class FileLoader {
+
+		public FileLoader() {
+			await();
+			BUILT.add(FileLoader.class);
+		}
+	}
+
+	public static class Client {
+
+		@Inject
+		CacheLoader cache;
+
+		@Inject
+		FileLoader files;
+	}
+
+	public static class Service {
+
+		final Client client;
+
+		@Inject
+		public Service(Client client) {
+			this.client = client;
+			BUILT.add(Service.class);
+		}
+	}
+
+	public static class Request {
+
+		public Request() {
+			REQUESTS.incrementAndGet();
+		}
+	}
+
+	public static class Broken {
+
+		public Broken() {
+			throw new IllegalStateException("Broken");
+		}
+	}
+
+	public static class AlsoBroken {
+
+		public AlsoBroken() {
+			throw new IllegalStateException("Also broken");
+		}
+	}
+
+	public static class NeedsBroken {
+
+		@Inject
+		Broken broken;
+	}
+
+	public static class Unrelated {
+
+		public Unrelated() {
+			BUILT.add(Unrelated.class);
+		}
+	}
+
+	public static class Left {
+
+		@Inject
+		public Left(Right right) {
+		}
+	}
+
+	public static class Right {
+
+		@Inject
+		Left left;
+	}
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.github.danielpetisme.dacontainer.annotations.AnnotationInjection;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+import com.github.danielpetisme.dacontainer.annotations.Named;
+
+public class DaContainerImplTestChildren {
+
+	private DaContainer tested;
+
+	@Before
+	public void setUp() throws Exception {
+		tested = new DaContainerImpl();
+		tested.bind(Repository.class, MemoryRepository.class);
+		tested.bind(Service.class, Service.class);
+		tested.bind(Configuration.class, Configuration.class,
+				Scopes.SINGLETON);
+		tested.bindConstant("url", "jdbc:memory");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	@Test
+	public void testFallThrough() {
+		DaContainer child = tested.createChild();
+
+		Service service = child.getInstance(Service.class);
+		Object url = child.getConstant("url");
+
+		assertThat(service.repository, is(instanceOf(MemoryRepository.class)));
+		assertThat(url, is((Object) "jdbc:memory"));
+	}
+
+	@Test
+	public void testOverride() {
+		DaContainer child = tested.createChild();
+		child.bind(Repository.class, FileRepository.class);
+		child.bindConstant("url", "file:/tmp");
+
+		// Service is bound by the parent but built with the child's bindings
+		Service service = child.getInstance(Service.class);
+		Object url = child.getConstant("url");
+		Object repository = tested.getInstance(Repository.class);
+
+		assertThat(service.repository, is(instanceOf(FileRepository.class)));
+		assertThat(url, is((Object) "file:/tmp"));
+		assertThat(repository, is(instanceOf(MemoryRepository.class)));
+	}
+
+	@Test
+	public void testParentSingletonShared() {
+		DaContainer child1 = tested.createChild();
+		DaContainer child2 = tested.createChild();
+
+		Configuration configuration = tested.getInstance(Configuration.class);
+		Configuration configuration1 = child1.getInstance(Configuration.class);
+		Configuration configuration2 = child2.getInstance(Configuration.class);
+
+		assertThat(configuration1, is(sameInstance(configuration)));
+		assertThat(configuration2, is(sameInstance(configuration)));
+	}
+
+	@Test
+	public void testChildBindingsNotVisibleToParent() {
+		DaContainer child = tested.createChild();
+		child.bind(Session.class, Session.class);
+
+		try {
+			tested.getInstance(Session.class);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testGrandChild() {
+		DaContainer child = tested.createChild();
+		child.bind(Repository.class, FileRepository.class);
+		DaContainer grandChild = child.createChild();
+
+		Service service = grandChild.getInstance(Service.class);
+
+		assertThat(service.repository, is(instanceOf(FileRepository.class)));
+	}
+
+	@Test
+	public void testChildAnnotation() {
+		DaContainer child = tested.createChild();
+		child.bindAnnotation(Host.class, "child.local");
+		child.bind(Client.class, Client.class);
+
+		Client client = child.getInstance(Client.class);
+		tested.bind(Client.class, Client.class);
+		Client parentClient = tested.getInstance(Client.class);
+
+		assertThat(client.host, is("child.local"));
+		assertThat(parentClient.host, is(not("child.local")));
+	}
+
+	@Test
+	public void testChildAnnotationKeepsInheritedHandlers() {
+		DaContainer child = tested.createChild();
+		child.bindAnnotation(Host.class, "child.local");
+		child.bind(Session.class, Session.class);
+
+		Session session = child.getInstance(Session.class);
+
+		assertThat(session.service.repository,
+				is(instanceOf(MemoryRepository.class)));
+		assertThat(session.url, is("jdbc:memory"));
+	}
+
+	@Test
+	public void testFreezeChild() {
+		tested.freeze();
+		DaContainer child = tested.createChild();
+		child.bind(Repository.class, FileRepository.class);
+		child.bind(Session.class, Session.class);
+		child.freeze();
+
+		Session session = child.getInstance(Session.class);
+
+		assertThat(session.service.repository,
+				is(instanceOf(FileRepository.class)));
+		assertThat(session.url, is("jdbc:memory"));
+	}
+
+	public static interface Repository {
+	}
+
+	public static class MemoryRepository implements Repository {
+	}
+
+	public static class FileRepository implements Repository {
+	}
+
+	public static class Service {
+
+		@Inject
+		Repository repository;
+	}
+
+	public static class Configuration {
+	}
+
+	public static class Session {
+
+		@Inject
+		Service service;
+
+		@Named("url")
+		String url;
+	}
+
+	@AnnotationInjection
+	@Target(value = ElementType.FIELD)
+	@Retention(RetentionPolicy.RUNTIME)
+	public static @interface Host {
+	}
+
+	public static class Client {
+
+		@Host
+		String host;
+	}
+}
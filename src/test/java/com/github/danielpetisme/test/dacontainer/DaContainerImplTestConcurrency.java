@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.github.danielpetisme.dacontainer.annotations.AnnotationInjection;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+import com.github.danielpetisme.dacontainer.annotations.Named;
+
+public class DaContainerImplTestConcurrency {
+
+	private static final int THREADS = 12;
+
+	private static final int ITERATIONS = 2000;
+
+	private DaContainer tested;
+
+	@Before
+	public void setUp() throws Exception {
+		tested = DaContainerImpl.INSTANCE;
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	@Test
+	public void testConcurrentRegistrationAndResolution() throws Exception {
+		tested.bind(Repository.class);
+		tested.bind(Cache.class, Cache.class, Scopes.SINGLETON);
+		tested.bind(Controller.class);
+		tested.bindConstant("stress.endpoint", "/stress");
+		tested.bindAnnotation(StressOwner.class, "owner");
+
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int i = 0; i < THREADS; i++) {
+			final int role = i % 3;
+			futures.add(executor.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					start.await();
+					for (int j = 0; j < ITERATIONS; j++) {
+						if (role == 0) {
+							tested.bind(Repository.class);
+							tested.bind(Controller.class);
+							tested.bindConstant("stress.endpoint", "/stress");
+						} else if (role == 1) {
+							tested.bindAnnotation(StressOwner.class, "owner");
+							tested.bindAnnotation(StressVersion.class, "v" + j);
+						} else {
+							Controller controller = tested
+									.getInstance(Controller.class);
+							assertThat(controller.repository,
+									is(not(nullValue())));
+							assertThat(controller.cache, is(not(nullValue())));
+							assertThat(controller.endpoint, is("/stress"));
+							assertThat(controller.owner, is("owner"));
+						}
+					}
+					return null;
+				}
+			}));
+		}
+		start.countDown();
+
+		// get() rethrows the first failure of each thread
+		for (Future<Void> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+
+		Controller controller = tested.getInstance(Controller.class);
+		assertThat(controller.version, is("v" + (ITERATIONS - 1)));
+	}
+
+	@AnnotationInjection
+	@Target(value = ElementType.FIELD)
+	@Retention(RetentionPolicy.RUNTIME)
+	public static @interface StressOwner {
+	}
+
+	@AnnotationInjection
+	@Target(value = ElementType.FIELD)
+	@Retention(RetentionPolicy.RUNTIME)
+	public static @interface StressVersion {
+	}
+
+	public static class Repository {
+	}
+
+	public static class Cache {
+	}
+
+	public static class Controller {
+
+		@Inject
+		Repository repository;
+
+		@Inject
+		Cache cache;
+
+		@Named("stress.endpoint")
+		String endpoint;
+
+		@StressOwner
+		String owner;
+
+		@StressVersion
+		String version;
+	}
+}
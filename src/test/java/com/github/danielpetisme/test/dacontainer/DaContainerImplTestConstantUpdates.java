@@ -0,0 +1,313 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.danielpetisme.dacontainer.ConstantListener;
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.github.danielpetisme.dacontainer.annotations.AnnotationInjection;
+import com.github.danielpetisme.dacontainer.annotations.Named;
+import com.github.danielpetisme.dacontainer.annotations.internal.AnnotationInjectionImpl;
+import com.github.danielpetisme.dacontainer.internal.InjectionPoint;
+
+public class DaContainerImplTestConstantUpdates {
+
+	private DaContainer tested;
+
+	@Before
+	public void setUp() {
+		tested = new DaContainerImpl();
+		tested.bindConstant("left", 0);
+		tested.bindConstant("right", 0);
+		tested.bindConstant("timeout", 10);
+	}
+
+	@Test
+	public void testUpdate() {
+		tested.updateConstants(constants(1, 1));
+		assertThat(tested.getConstant("left"), is((Object) 1));
+		assertThat(tested.getConstant("right"), is((Object) 1));
+		assertThat(tested.getConstant("timeout"), is((Object) 10));
+	}
+
+	@Test
+	public void testSingletonInjectedAgain() {
+		tested.bind(Settings.class, Settings.class, Scopes.SINGLETON);
+		Settings settings = tested.getInstance(Settings.class);
+
+		Map<String, Object> update = new HashMap<String, Object>();
+		update.put("timeout", 30);
+		update.put("left", 0);
+		tested.updateConstants(update);
+
+		Settings same = tested.getInstance(Settings.class);
+		assertThat(same, is(sameInstance(settings)));
+		assertThat(settings.timeout, is(30));
+		assertThat(settings.changes, is(Collections.singletonList(Collections
+				.singleton("timeout"))));
+	}
+
+	@Test
+	public void testSingletonSetterInjectedAgain() {
+		tested.bindAnnotation(Mode.class, "slow");
+		tested.bind(Throttle.class, Throttle.class, Scopes.SINGLETON);
+		Throttle throttle = tested.getInstance(Throttle.class);
+		assertThat(throttle.mode, is("slow"));
+
+		tested.updateConstants(Collections.singletonMap(Mode.class.getName(),
+				"fast"));
+
+		assertThat(throttle.mode, is("fast"));
+	}
+
+	@Test
+	public void testFailingSingletonIsolated() {
+		final List<Set<String>> changes = new ArrayList<Set<String>>();
+		tested.addConstantListener(new ConstantListener() {
+			public void constantsChanged(Set<String> names) {
+				changes.add(names);
+			}
+		});
+		tested.bindAnnotation(Mode.class, "slow");
+		tested.bindAnnotation(Lever.class, "released");
+		tested.bind(Lever.class, JammedLever.class);
+		tested.bind(Brake.class, Brake.class, Scopes.SINGLETON);
+		tested.bind(Throttle.class, Throttle.class, Scopes.SINGLETON);
+		Brake brake = tested.getInstance(Brake.class);
+		Throttle throttle = tested.getInstance(Throttle.class);
+		Map<String, Object> updates = new HashMap<String, Object>();
+		updates.put(Mode.class.getName(), "fast");
+		updates.put(Lever.class.getName(), "pulled");
+
+		// The lever jams once the update is published
+		tested.updateConstants(updates);
+
+		assertThat(tested.getConstant(Lever.class.getName()),
+				is((Object) "pulled"));
+		assertThat(brake.lever, is("released"));
+		assertThat(throttle.mode, is("fast"));
+		assertThat(changes.size(), is(1));
+		assertThat(changes.get(0), is(updates.keySet()));
+	}
+
+	@Test
+	public void testSettersCalledWithoutLock() {
+		tested.bindAnnotation(Mode.class, "slow");
+		tested.bind(Throttle.class, Throttle.class, Scopes.SINGLETON);
+		Throttle throttle = tested.getInstance(Throttle.class);
+		throttle.container = tested;
+
+		tested.updateConstants(Collections.singletonMap(Mode.class.getName(),
+				"fast"));
+
+		assertThat(throttle.mode, is("fast"));
+		assertThat(throttle.locked, is(false));
+	}
+
+	@Test
+	public void testListener() {
+		final List<Set<String>> changes = new ArrayList<Set<String>>();
+		tested.addConstantListener(new ConstantListener() {
+			public void constantsChanged(Set<String> names) {
+				changes.add(names);
+			}
+		});
+
+		tested.updateConstants(constants(0, 0));
+		assertTrue(changes.isEmpty());
+		tested.updateConstants(constants(0, 5));
+		assertThat(changes, is(Collections.singletonList(Collections
+				.singleton("right"))));
+	}
+
+	@Test
+	public void testFrozenLinkedAgain() {
+		tested.bind(Pair.class);
+		tested.freeze();
+		tested.getInstance(Pair.class);
+
+		tested.updateConstants(constants(7, 7));
+		Pair pair = tested.getInstance(Pair.class);
+		assertThat(pair.left, is(7));
+		assertThat(pair.right, is(7));
+	}
+
+	@Test
+	public void testFrozenRejectsWholeUpdate() {
+		tested.bind(Pair.class);
+		tested.freeze();
+
+		Map<String, Object> update = new HashMap<String, Object>();
+		update.put("left", 1);
+		update.put("right", "one");
+		try {
+			tested.updateConstants(update);
+			fail("An int field cannot hold a String");
+		} catch (IllegalArgumentException e) {
+			// Nothing published
+		}
+		assertThat(tested.getConstant("left"), is((Object) 0));
+		Pair pair = tested.getInstance(Pair.class);
+		assertThat(pair.left, is(0));
+	}
+
+	@Test
+	public void testRejectsWholeUpdate() {
+		tested.bind(Pair.class);
+		tested.getInstance(Pair.class);
+
+		Map<String, Object> update = new HashMap<String, Object>();
+		update.put("left", 1);
+		update.put("right", "one");
+		try {
+			tested.updateConstants(update);
+			fail("An int field cannot hold a String");
+		} catch (IllegalArgumentException e) {
+			// Nothing published
+		}
+		assertThat(tested.getConstant("left"), is((Object) 0));
+		assertThat(tested.getConstant("right"), is((Object) 0));
+	}
+
+	@Test
+	public void testReadersSeeWholeUpdates() throws Exception {
+		tested.bind(Pair.class);
+		tested.freeze();
+
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final List<String> torn = new CopyOnWriteArrayList<String>();
+		List<Thread> readers = new ArrayList<Thread>();
+		for (int i = 0; i < 4; i++) {
+			Thread reader = new Thread() {
+				@Override
+				public void run() {
+					while (running.get()) {
+						Pair pair = tested.getInstance(Pair.class);
+						if (pair.left != pair.right) {
+							torn.add(pair.left + "/" + pair.right);
+						}
+					}
+				}
+			};
+			reader.start();
+			readers.add(reader);
+		}
+		for (int i = 1; i <= 2000; i++) {
+			tested.updateConstants(constants(i, i));
+		}
+		running.set(false);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertTrue(torn.toString(), torn.isEmpty());
+	}
+
+	private static Map<String, Object> constants(int left, int right) {
+		Map<String, Object> constants = new HashMap<String, Object>();
+		constants.put("left", left);
+		constants.put("right", right);
+		return constants;
+	}
+
+	public static class Pair {
+
+		@Named("left")
+		public int left;
+
+		@Named("right")
+		public int right;
+	}
+
+	@AnnotationInjection
+	@Target(value = ElementType.METHOD)
+	@Retention(RetentionPolicy.RUNTIME)
+	public static @interface Mode {
+	}
+
+	public static class Throttle {
+
+		volatile String mode;
+
+		volatile Object container;
+
+		volatile boolean locked;
+
+		@Mode
+		public void setMode(String mode) {
+			this.mode = mode;
+			locked = container != null && Thread.holdsLock(container);
+		}
+	}
+
+	@AnnotationInjection
+	@Target(value = ElementType.FIELD)
+	@Retention(RetentionPolicy.RUNTIME)
+	public static @interface Lever {
+	}
+
+	public static class JammedLever extends AnnotationInjectionImpl {
+
+		@Override
+		public <T> T apply(DaContainer container, T instance,
+				InjectionPoint injectionPoint) throws IllegalAccessException {
+			if ("pulled".equals(container.getConstant(Lever.class.getName()))) {
+				throw new IllegalStateException("The lever is jammed");
+			}
+			return super.apply(container, instance, injectionPoint);
+		}
+	}
+
+	public static class Brake {
+
+		@Lever
+		volatile String lever;
+	}
+
+	public static class Settings implements ConstantListener {
+
+		@Named("timeout")
+		public volatile int timeout;
+
+		final List<Set<String>> changes = new ArrayList<Set<String>>();
+
+		public void constantsChanged(Set<String> names) {
+			changes.add(names);
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.Provider;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+
+public class DaContainerImplTestCycles {
+
+	private DaContainer tested;
+
+	@Before
+	public void setUp() throws Exception {
+		tested = new DaContainerImpl();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	@Test
+	public void testFieldCycle() {
+		tested.bind(Animal.class, Chicken.class);
+		tested.bind(Chicken.class);
+		tested.bind(Egg.class);
+
+		try {
+			tested.getInstance(Chicken.class);
+			fail("Chicken -> Egg -> Chicken");
+		} catch (IllegalStateException e) {
+			assertThat(e.getMessage(), is("Dependency cycle "
+					+ Chicken.class.getName() + " -> " + Egg.class.getName()
+					+ " -> " + Chicken.class.getName()));
+		}
+
+		// The path is cleaned up after the failure
+		tested.bind(Animal.class, Dinosaur.class);
+		Chicken chicken = tested.getInstance(Chicken.class);
+		assertThat(chicken.egg.parent, is(not(nullValue())));
+	}
+
+	@Test
+	public void testConstructorCycle() {
+		tested.bind(Left.class);
+		tested.bind(Right.class);
+		tested.bind(Middle.class);
+
+		try {
+			tested.getInstance(Left.class);
+			fail("Left -> Middle -> Right -> Left");
+		} catch (IllegalStateException e) {
+			assertThat(e.getMessage(), is("Dependency cycle "
+					+ Left.class.getName() + " -> " + Middle.class.getName()
+					+ " -> " + Right.class.getName() + " -> "
+					+ Left.class.getName()));
+		}
+	}
+
+	@Test
+	public void testSingletonCycle() {
+		tested.bind(Animal.class, Chicken.class, Scopes.SINGLETON);
+		tested.bind(Chicken.class, Chicken.class, Scopes.SINGLETON);
+		tested.bind(Egg.class, Egg.class, Scopes.SINGLETON);
+
+		try {
+			tested.getInstance(Egg.class);
+			fail("Egg -> Chicken -> Egg");
+		} catch (IllegalStateException e) {
+			assertThat(e.getMessage().startsWith("Dependency cycle"), is(true));
+		}
+	}
+
+	@Test
+	public void testProviderBreaksFieldCycle() {
+		tested.bind(Animal.class, Hen.class, Scopes.SINGLETON);
+		tested.bind(Egg.class);
+
+		assertTrue(tested.validate().isEmpty());
+		Hen hen = tested.getInstance(Animal.class);
+		Egg egg = hen.egg.get();
+
+		assertThat(egg.parent, is(sameInstance((Animal) hen)));
+		assertThat(hen.egg.get(), is(not(sameInstance(egg))));
+	}
+
+	@Test
+	public void testProviderBreaksMethodCycle() {
+		tested.bind(Nest.class);
+		tested.bind(Bird.class);
+
+		tested.freeze();
+		Nest nest = tested.getInstance(Nest.class);
+
+		assertThat(nest.bird.get().nest, is(not(nullValue())));
+	}
+
+	public static interface Animal {
+	}
+
+	public static class Chicken implements Animal {
+
+		@Inject
+		Egg egg;
+	}
+
+	public static class Hen implements Animal {
+
+		@Inject
+		Provider<Egg> egg;
+	}
+
+	public static class Dinosaur implements Animal {
+	}
+
+	public static class Egg {
+
+		@Inject
+		Animal parent;
+	}
+
+	public static class Nest {
+
+		Provider<Bird> bird;
+
+		@Inject
+		public void setBird(Provider<Bird> bird) {
+			this.bird = bird;
+		}
+	}
+
+	public static class Bird {
+
+		@Inject
+		Nest nest;
+	}
+
+	public static class Left {
+
+		@Inject
+		public Left(Middle middle) {
+		}
+	}
+
+	public static class Middle {
+
+		@Inject
+		public Middle(Right right) {
+		}
+	}
+
+	public static class Right {
+
+		@Inject
+		public Right(Left left) {
+		}
+	}
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.Lazy;
+import com.github.danielpetisme.dacontainer.Provider;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+import com.github.danielpetisme.dacontainer.annotations.Named;
+
+public class DaContainerImplTestDeepGraphs {
+
+	private DaContainer tested;
+
+	@Before
+	public void setUp() throws Exception {
+		tested = new DaContainerImpl();
+		tested.bind(Level1.class);
+		tested.bind(Level2.class);
+		tested.bind(Level3.class);
+		tested.bind(Level4.class);
+		tested.bind(Level5.class);
+		tested.bind(Level6.class);
+		tested.bind(Leaf.class);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	@Test
+	public void testStackDepthIndependentOfGraphDepth() {
+		tested.freeze();
+
+		int shallow = tested.<Level6> getInstance(Level6.class).leaf.stackDepth;
+		int deep = tested.<Level1> getInstance(Level1.class).next.next.next.next.next.leaf.stackDepth;
+
+		assertThat(deep, is(shallow));
+	}
+
+	@Test
+	public void testFrozenResolutionMatchesRecursiveOne() {
+		DaContainer frozen = new DaContainerImpl();
+		bindWorkshop(frozen);
+		frozen.freeze();
+		bindWorkshop(tested);
+
+		Workshop expected = tested.getInstance(Workshop.class);
+		Workshop actual = frozen.getInstance(Workshop.class);
+
+		assertThat(actual.leaf, is(not(nullValue())));
+		assertThat(actual.tool.leaf, is(not(sameInstance(actual.leaf))));
+		assertThat(actual.shared, is(sameInstance(frozen
+				.getInstance(Shared.class))));
+		assertThat(actual.fromMethod.shared, is(sameInstance(actual.shared)));
+		assertThat(actual.name, is(expected.name));
+		assertThat(actual.benches, is(expected.benches));
+		assertThat(actual.leaves.get(), is(not(sameInstance(actual.leaves
+				.get()))));
+		assertThat(actual.lazyTool.get(), is(sameInstance(actual.lazyTool
+				.get())));
+	}
+
+	@Test
+	public void testFailingMemberSkipped() {
+		tested.bind(Broken.class);
+		tested.bind(Repair.class);
+		tested.freeze();
+
+		Repair repair = tested.getInstance(Repair.class);
+
+		// As the recursive resolution, the member is logged and skipped
+		assertThat(repair.broken, is(nullValue()));
+		assertThat(repair.leaf, is(not(nullValue())));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFailingConstructorDependency() {
+		tested.bind(Broken.class);
+		tested.bind(Wreck.class);
+		tested.freeze();
+
+		tested.getInstance(Wreck.class);
+	}
+
+	private static void bindWorkshop(DaContainer container) {
+		container.bind(Leaf.class);
+		container.bind(Tool.class);
+		container.bind(Shared.class, Shared.class, Scopes.SINGLETON);
+		container.bind(Workshop.class);
+		container.bindConstant("workshop.name", "Garage");
+		container.bindConstant("workshop.benches", 4);
+	}
+
+	public static class Leaf {
+
+		final int stackDepth = new Throwable().getStackTrace().length;
+	}
+
+	public static class Level6 {
+
+		@Inject
+		Leaf leaf;
+	}
+
+	public static class Level5 {
+
+		@Inject
+		Level6 next;
+	}
+
+	public static class Level4 {
+
+		@Inject
+		Level5 next;
+	}
+
+	public static class Level3 {
+
+		@Inject
+		Level4 next;
+	}
+
+	public static class Level2 {
+
+		@Inject
+		Level3 next;
+	}
+
+	public static class Level1 {
+
+		final Level2 next;
+
+		@Inject
+		public Level1(Level2 next) {
+			this.next = next;
+		}
+	}
+
+	public static class Shared {
+	}
+
+	public static class Tool {
+
+		final Leaf leaf;
+
+		Shared shared;
+
+		@Inject
+		public Tool(Leaf leaf) {
+			this.leaf = leaf;
+		}
+
+		@Inject
+		void setShared(Shared shared) {
+			this.shared = shared;
+		}
+	}
+
+	public static class Workshop {
+
+		final Tool tool;
+
+		final Leaf leaf;
+
+		@Inject
+		Shared shared;
+
+		Tool fromMethod;
+
+		@Inject
+		Provider<Leaf> leaves;
+
+		@Inject
+		Lazy<Tool> lazyTool;
+
+		@Named("workshop.name")
+		String name;
+
+		@Named("workshop.benches")
+		int benches;
+
+		@Inject
+		public Workshop(Tool tool, Leaf leaf) {
+			this.tool = tool;
+			this.leaf = leaf;
+		}
+
+		@Inject
+		void setTool(Tool tool) {
+			this.fromMethod = tool;
+		}
+	}
+
+	public static class Broken {
+
+		public Broken() {
+			throw new IllegalArgumentException("Broken on purpose");
+		}
+	}
+
+	public static class Repair {
+
+		@Inject
+		Broken broken;
+
+		@Inject
+		Leaf leaf;
+	}
+
+	public static class Wreck {
+
+		@Inject
+		public Wreck(Broken broken) {
+		}
+	}
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.Lazy;
+import com.github.danielpetisme.dacontainer.Provider;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+
+public class DaContainerImplTestDeferredInjection {
+
+	private static final AtomicInteger CREATED = new AtomicInteger();
+
+	private DaContainer tested;
+
+	@Before
+	public void setUp() throws Exception {
+		tested = new DaContainerImpl();
+		tested.bind(Expensive.class);
+		CREATED.set(0);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	@Test
+	public void testProviderField() {
+		tested.bind(ProviderField.class);
+
+		ProviderField bean = tested.getInstance(ProviderField.class);
+		assertThat(CREATED.get(), is(0));
+
+		Expensive expensive = bean.expensive.get();
+		assertThat(CREATED.get(), is(1));
+		assertThat(bean.expensive.get(), is(not(sameInstance(expensive))));
+		assertThat(CREATED.get(), is(2));
+	}
+
+	@Test
+	public void testLazyField() {
+		tested.bind(LazyField.class);
+
+		LazyField bean = tested.getInstance(LazyField.class);
+		assertThat(CREATED.get(), is(0));
+
+		Expensive expensive = bean.expensive.get();
+		assertThat(bean.expensive.get(), is(sameInstance(expensive)));
+		assertThat(CREATED.get(), is(1));
+
+		// Each injected Lazy memoizes its own instance
+		LazyField other = tested.getInstance(LazyField.class);
+		assertThat(other.expensive.get(), is(not(sameInstance(expensive))));
+		assertThat(CREATED.get(), is(2));
+	}
+
+	@Test
+	public void testLazyMethod() {
+		tested.bind(LazyMethod.class);
+
+		LazyMethod bean = tested.getInstance(LazyMethod.class);
+		assertThat(CREATED.get(), is(0));
+
+		Expensive expensive = bean.expensive.get();
+		assertThat(bean.expensive.get(), is(sameInstance(expensive)));
+		assertThat(CREATED.get(), is(1));
+	}
+
+	@Test
+	public void testDeferredConstructor() {
+		tested.bind(DeferredConstructor.class);
+
+		DeferredConstructor bean = tested
+				.getInstance(DeferredConstructor.class);
+		assertThat(CREATED.get(), is(0));
+
+		bean.provider.get();
+		bean.lazy.get();
+		bean.lazy.get();
+		assertThat(CREATED.get(), is(2));
+	}
+
+	@Test
+	public void testDeferredAfterFreeze() {
+		tested.bind(LazyField.class);
+		tested.bind(DeferredConstructor.class);
+		assertTrue(tested.validate().isEmpty());
+		tested.freeze();
+
+		LazyField bean = tested.getInstance(LazyField.class);
+		DeferredConstructor other = tested
+				.getInstance(DeferredConstructor.class);
+		assertThat(CREATED.get(), is(0));
+
+		assertThat(bean.expensive.get(), is(sameInstance(bean.expensive.get())));
+		other.provider.get();
+		assertThat(CREATED.get(), is(2));
+	}
+
+	public static class Expensive {
+
+		public Expensive() {
+			CREATED.incrementAndGet();
+		}
+	}
+
+	public static class ProviderField {
+
+		@Inject
+		Provider<Expensive> expensive;
+	}
+
+	public static class LazyField {
+
+		@Inject
+		Lazy<Expensive> expensive;
+	}
+
+	public static class LazyMethod {
+
+		Lazy<Expensive> expensive;
+
+		@Inject
+		public void setExpensive(Lazy<Expensive> expensive) {
+			this.expensive = expensive;
+		}
+	}
+
+	public static class DeferredConstructor {
+
+		final Provider<Expensive> provider;
+
+		final Lazy<Expensive> lazy;
+
+		@Inject
+		public DeferredConstructor(Provider<Expensive> provider,
+				Lazy<Expensive> lazy) {
+			this.provider = provider;
+			this.lazy = lazy;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.matchers.JUnitMatchers.containsString;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.Injector;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+import com.github.danielpetisme.dacontainer.annotations.internal.InjectImpl;
+
+public class DaContainerImplTestGeneratedInjector {
+
+	private DaContainer tested;
+
+	@Before
+	public void setUp() throws Exception {
+		tested = new DaContainerImpl();
+		tested.bind(Wheel.class);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	@Test
+	public void testGeneratedInjectorUsed() {
+		tested.bind(Tyre.class);
+
+		Wheel wheel = tested.getInstance(Wheel.class);
+
+		assertThat(wheel.generated, is(true));
+		assertThat(wheel.tyre, is(not(nullValue())));
+	}
+
+	@Test
+	public void testReflectionWithCustomHandler() {
+		tested.bind(Tyre.class);
+		tested.bind(Inject.class, CustomInjectImpl.class);
+
+		Wheel wheel = tested.getInstance(Wheel.class);
+
+		assertThat(wheel.generated, is(false));
+		assertThat(wheel.tyre, is(not(nullValue())));
+	}
+
+	@Test
+	public void testValidationOfGeneratedInjector() {
+		List<String> problems = tested.validate();
+
+		assertThat(problems.size(), is(1));
+		assertThat(problems.get(0), containsString(Wheel$$DaInjector.class
+				.getName()));
+		assertThat(problems.get(0), containsString(Tyre.class.getName()));
+	}
+
+	public static class CustomInjectImpl extends InjectImpl {
+	}
+
+	public static class Tyre {
+	}
+
+	public static class Wheel {
+
+		@Inject
+		Tyre tyre;
+
+		boolean generated;
+	}
+
+	/**
+	 * Written as the annotation processor generates it
+	 */
+	public static final class Wheel$$DaInjector implements Injector<Wheel> {
+
+		public Wheel newInstance(DaContainer container) {
+			Wheel instance = new Wheel();
+			instance.tyre = container.<Tyre> getInstance(Tyre.class);
+			instance.generated = true;
+			return instance;
+		}
+
+		public Class<?>[] getDependencies() {
+			return new Class<?>[] { Tyre.class };
+		}
+
+		public String[] getConstants() {
+			return new String[0];
+		}
+
+		public Class<?>[] getAnnotations() {
+			return new Class<?>[] { Inject.class };
+		}
+
+		public int getInjectionPointCount() {
+			return 1;
+		}
+	}
+}
@@ -18,10 +18,12 @@ package com.github.danielpetisme.test.dacontainer;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.After;
@@ -30,7 +32,9 @@ import org.junit.Test;
 
 import com.github.danielpetisme.dacontainer.DaContainer;
 import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.Scopes;
 import com.github.danielpetisme.dacontainer.annotations.Inject;
+import com.github.danielpetisme.dacontainer.annotations.Named;
 
 public class DaContainerImplTestInjection {
 
@@ -83,6 +87,102 @@ public class DaContainerImplTestInjection {
 		assertThat(instance.getFriends().size(), is(0));
 	}
 
+	@Test
+	public final void testInjectionSuperclassFirst() throws Exception {
+		DaContainer container = new DaContainerImpl();
+		container.bind(Repository.class, Repository.class, Scopes.SINGLETON);
+		container.bind(OrderService.class);
+		container.bind(InvoiceService.class);
+		container.bindConstant("service.retries", 3);
+
+		OrderService orders = container.getInstance(OrderService.class);
+		InvoiceService invoices = container.getInstance(InvoiceService.class);
+
+		assertThat(orders.repository, is(sameInstance(container
+				.getInstance(Repository.class))));
+		assertThat(orders.retries, is(3));
+		assertThat(orders.injected, is(Arrays.asList("base", "service",
+				"orders")));
+		assertThat(invoices.repository, is(sameInstance(orders.repository)));
+		assertThat(invoices.injected, is(Arrays.asList("base", "service")));
+	}
+
+	@Test
+	public final void testInjectionOverriddenMethod() throws Exception {
+		DaContainer container = new DaContainerImpl();
+		container.bind(Repository.class);
+		container.bind(UninjectedService.class);
+		container.bind(ReinjectedService.class);
+
+		UninjectedService uninjected = container
+				.getInstance(UninjectedService.class);
+		ReinjectedService reinjected = container
+				.getInstance(ReinjectedService.class);
+
+		// Only the annotated override is injected, once
+		assertThat(uninjected.injected, is(Arrays.asList("base")));
+		assertThat(reinjected.injected, is(Arrays.asList("base",
+				"reinjected")));
+	}
+
+	public static class Repository {
+	}
+
+	public static abstract class AbstractBase {
+
+		final List<String> injected = new ArrayList<String>();
+
+		@Inject
+		Repository repository;
+
+		@Inject
+		void initBase(Repository repository) {
+			injected.add("base");
+		}
+	}
+
+	public static abstract class AbstractService extends AbstractBase {
+
+		@Named("service.retries")
+		int retries;
+
+		@Inject
+		public void initService(Repository repository) {
+			// The fields of the superclass are already injected
+			if (this.repository == repository) {
+				injected.add("service");
+			}
+		}
+	}
+
+	public static class OrderService extends AbstractService {
+
+		@Inject
+		void initOrders(Repository repository) {
+			injected.add("orders");
+		}
+	}
+
+	public static class InvoiceService extends AbstractService {
+	}
+
+	public static class UninjectedService extends AbstractService {
+
+		@Override
+		public void initService(Repository repository) {
+			injected.add("uninjected");
+		}
+	}
+
+	public static class ReinjectedService extends AbstractService {
+
+		@Inject
+		@Override
+		public void initService(Repository repository) {
+			injected.add("reinjected");
+		}
+	}
+
 	@SuppressWarnings("rawtypes")
 	public static interface Person {
 
@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.InMemoryInstrumentation;
+import com.github.danielpetisme.dacontainer.InMemoryInstrumentation.Metrics;
+import com.github.danielpetisme.dacontainer.Instrumentations;
+import com.github.danielpetisme.dacontainer.PooledScope;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+import com.github.danielpetisme.dacontainer.internal.ResolutionProgram;
+
+public class DaContainerImplTestInstrumentation {
+
+	private DaContainer tested;
+
+	private InMemoryInstrumentation instrumentation;
+
+	@Before
+	public void setUp() throws Exception {
+		tested = new DaContainerImpl();
+		instrumentation = new InMemoryInstrumentation();
+		tested.setInstrumentation(instrumentation);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	@Test
+	public void testCounters() {
+		tested.bind(Engine.class);
+		tested.bind(Car.class);
+
+		tested.getInstance(Car.class);
+		tested.getInstance(Car.class);
+
+		Map<Class<?>, Metrics> snapshot = instrumentation.snapshot();
+		Metrics car = snapshot.get(Car.class);
+		assertThat(car.getResolutions(), is(2L));
+		assertThat(car.getConstructions(), is(2L));
+		assertThat(car.getInjectionPoints(), is(4L));
+		assertThat(car.getPlanMisses(), is(1L));
+		assertThat(car.getPlanHits(), is(1L));
+
+		Metrics engine = snapshot.get(Engine.class);
+		assertThat(engine.getResolutions(), is(4L));
+		assertThat(engine.getConstructions(), is(4L));
+		assertThat(engine.getInjectionPoints(), is(0L));
+
+		long histogramTotal = 0;
+		for (long count : car.getLatencyHistogram()) {
+			histogramTotal += count;
+		}
+		assertThat(histogramTotal, is(2L));
+		assertTrue(car.getLatencyPercentile(50) > 0);
+		assertTrue(car.getLatencyPercentile(99) <= car.getLatencyPercentile(100));
+	}
+
+	@Test
+	public void testScopedResolution() {
+		tested.bind(Engine.class, Engine.class, Scopes.SINGLETON);
+
+		tested.getInstance(Engine.class);
+		tested.getInstance(Engine.class);
+
+		Metrics engine = instrumentation.snapshot().get(Engine.class);
+		assertThat(engine.getResolutions(), is(2L));
+		assertThat(engine.getConstructions(), is(1L));
+	}
+
+	@Test
+	public void testScopeLookups() {
+		PooledScope pooled = Scopes.pooled(1);
+		tested.bind(Engine.class, Engine.class, Scopes.SINGLETON);
+		tested.bind(Car.class, Car.class, pooled);
+
+		tested.getInstance(Engine.class);
+		tested.getInstance(Engine.class);
+		Car first = tested.getInstance(Car.class);
+		pooled.getPool(Car.class).release(first);
+		tested.getInstance(Car.class);
+
+		Metrics engine = instrumentation.snapshot().get(Engine.class);
+		assertThat(engine.getScopeMisses(), is(1L));
+		// Also resolved twice by the first car, the second one is reused
+		assertThat(engine.getScopeHits(), is(3L));
+		Metrics car = instrumentation.snapshot().get(Car.class);
+		assertThat(car.getScopeMisses(), is(1L));
+		assertThat(car.getScopeHits(), is(1L));
+	}
+
+	@Test
+	public void testFrozenResolutionInstrumented() {
+		tested.bind(Engine.class);
+		tested.bind(Garage.class);
+		tested.freeze();
+
+		Garage garage = tested.getInstance(Garage.class);
+
+		// Built by the compiled program, as without instrumentation
+		assertTrue(garage.compiled);
+		Map<Class<?>, Metrics> snapshot = instrumentation.snapshot();
+		assertThat(snapshot.get(Garage.class).getConstructions(), is(1L));
+		assertThat(snapshot.get(Garage.class).getInjectionPoints(), is(1L));
+		assertThat(snapshot.get(Engine.class).getConstructions(), is(1L));
+		assertTrue(snapshot.get(Garage.class).getTotalNanos() >= snapshot
+				.get(Engine.class).getTotalNanos());
+	}
+
+	@Test
+	public void testReset() {
+		tested.bind(Engine.class);
+		tested.getInstance(Engine.class);
+
+		instrumentation.reset();
+		assertTrue(instrumentation.snapshot().isEmpty());
+	}
+
+	@Test
+	public void testNoInstrumentation() {
+		tested.bind(Engine.class);
+		tested.setInstrumentation(Instrumentations.NONE);
+
+		tested.getInstance(Engine.class);
+		assertThat(instrumentation.snapshot().get(Engine.class),
+				is(nullValue()));
+	}
+
+	public static class Engine {
+	}
+
+	public static class Garage {
+
+		final boolean compiled;
+
+		@Inject
+		public Garage(Engine engine) {
+			boolean program = false;
+			for (StackTraceElement frame : new Throwable().getStackTrace()) {
+				program |= frame.getClassName().startsWith(
+						ResolutionProgram.class.getName());
+			}
+			compiled = program;
+		}
+	}
+
+	public static class Car {
+
+		@Inject
+		Engine engine;
+
+		Engine spare;
+
+		@Inject
+		public void setSpare(Engine spare) {
+			this.spare = spare;
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.Key;
+import com.github.danielpetisme.dacontainer.Provider;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+import com.github.danielpetisme.dacontainer.annotations.Named;
+
+public class DaContainerImplTestKeys {
+
+	private static final Key<List<Apple>> APPLES = new Key<List<Apple>>() {
+	};
+
+	private static final Key<List<Pear>> PEARS = new Key<List<Pear>>() {
+	};
+
+	private DaContainer tested;
+
+	@Before
+	public void setUp() throws Exception {
+		tested = new DaContainerImpl();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	@Test
+	public void testKeyEquality() {
+		Key<Apple> apple = Key.get(Apple.class);
+
+		assertThat(Key.get(Apple.class), is(sameInstance(apple)));
+		assertThat(Key.get(Apple.class, "green"), is(Key.get(Apple.class,
+				"green")));
+		assertTrue(!Key.get(Apple.class, "green").equals(apple));
+		assertTrue(!APPLES.equals(PEARS));
+		assertThat(APPLES.getRawType(), is((Object) List.class));
+		assertThat(new Key<List<Apple>>() {
+		}.hashCode(), is(APPLES.hashCode()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testKeyOfTypeVariable() {
+		new Holder<Apple>().key();
+	}
+
+	@Test
+	public void testParameterizedContracts() {
+		tested.bind(APPLES, ArrayList.class, Scopes.NO_SCOPE);
+		tested.bind(PEARS, LinkedList.class, Scopes.NO_SCOPE);
+		tested.bind(Basket.class);
+
+		Basket basket = tested.getInstance(Basket.class);
+		List<Apple> apples = tested.getInstance(APPLES);
+
+		assertThat(basket.apples, is(instanceOf(ArrayList.class)));
+		assertThat(basket.pears, is(instanceOf(LinkedList.class)));
+		assertThat(basket.pearsProvider.get(), is(instanceOf(LinkedList.class)));
+		assertThat(apples, is(instanceOf(ArrayList.class)));
+	}
+
+	@Test
+	public void testRawTypeFallback() {
+		tested.bind(List.class, ArrayList.class);
+		tested.bind(PEARS, LinkedList.class, Scopes.NO_SCOPE);
+		tested.bind(Basket.class);
+		tested.freeze();
+
+		Basket basket = tested.getInstance(Basket.class);
+
+		assertThat(basket.apples, is(instanceOf(ArrayList.class)));
+		assertThat(basket.pears, is(instanceOf(LinkedList.class)));
+	}
+
+	@Test
+	public void testNamedContracts() {
+		tested.bind(Apple.class);
+		tested.bind(Key.get(Apple.class, "green"), GreenApple.class,
+				Scopes.SINGLETON);
+		tested.bind(Orchard.class);
+		tested.bindConstant("orchard.name", "Normandy");
+
+		Orchard orchard = tested.getInstance(Orchard.class);
+		Apple green = tested.getInstance(Key.get(Apple.class, "green"));
+
+		assertThat(orchard.apple.getClass(), is((Object) Apple.class));
+		assertThat(orchard.green, is(sameInstance(green)));
+		assertThat(orchard.fromConstructor, is(sameInstance(green)));
+		assertThat(orchard.name, is("Normandy"));
+		assertTrue(tested.validate().isEmpty());
+	}
+
+	@Test
+	public void testUnboundNamedContract() {
+		tested.bind(Apple.class);
+		tested.bind(Orchard.class);
+		tested.bindConstant("orchard.name", "Normandy");
+
+		List<String> problems = tested.validate();
+
+		assertThat(problems.size(), is(2));
+	}
+
+	public static class Apple {
+	}
+
+	public static class GreenApple extends Apple {
+	}
+
+	public static class Pear {
+	}
+
+	public static class Holder<T> {
+
+		Key<List<T>> key() {
+			return new Key<List<T>>() {
+			};
+		}
+	}
+
+	public static class Basket {
+
+		@Inject
+		List<Apple> apples;
+
+		@Inject
+		List<Pear> pears;
+
+		@Inject
+		Provider<List<Pear>> pearsProvider;
+	}
+
+	public static class Orchard {
+
+		final Apple fromConstructor;
+
+		@Inject
+		Apple apple;
+
+		@Inject
+		@Named("green")
+		Apple green;
+
+		@Named("orchard.name")
+		String name;
+
+		@Inject
+		public Orchard(@Named("green") Apple green) {
+			this.fromConstructor = green;
+		}
+	}
+}
@@ -15,18 +15,23 @@
  */
 package com.github.danielpetisme.test.dacontainer;
 
+import java.util.List;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.github.danielpetisme.dacontainer.DaContainer;
 import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.InjectionBackend;
 import com.github.danielpetisme.dacontainer.annotations.Inject;
 import com.github.danielpetisme.dacontainer.annotations.Named;
 
 import static org.hamcrest.CoreMatchers.is;
 
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.matchers.JUnitMatchers.containsString;
 
 public class DaContainerImplTestNamedInjection {
 
@@ -75,6 +80,90 @@ public class DaContainerImplTestNamedInjection {
 		assertThat(EarthComputer.getTheAnswer(), is(42));
 	}
 
+	@Test
+	public void testNamedInjectionTypedSlots() {
+		for (InjectionBackend backend : InjectionBackend.values()) {
+			DaContainer container = new DaContainerImpl();
+			container.setInjectionBackend(backend);
+			container.bind(Settings.class);
+			container.bindConstant("port", 8080);
+			container.bindConstant("timeout", 30000L);
+			container.bindConstant("secure", true);
+			container.bindConstant("ratio", 0.75);
+			container.bindConstant("retries", 3);
+
+			Settings settings = container.getInstance(Settings.class);
+			assertSettings(settings);
+
+			container.freeze();
+			Settings linked = container.getInstance(Settings.class);
+			assertSettings(linked);
+		}
+	}
+
+	@Test
+	public void testNamedInjectionWidening() {
+		for (InjectionBackend backend : InjectionBackend.values()) {
+			DaContainer container = new DaContainerImpl();
+			container.setInjectionBackend(backend);
+			container.bind(Widened.class);
+			container.bindConstant("timeout", 30000);
+			container.bindConstant("ratio", 'a');
+			container.bindConstant("scale", (byte) 2);
+			container.bindConstant("weight", 3L);
+
+			Widened widened = container.getInstance(Widened.class);
+			assertWidened(widened);
+
+			container.freeze();
+			Widened linked = container.getInstance(Widened.class);
+			assertWidened(linked);
+		}
+	}
+
+	private static void assertWidened(Widened widened) {
+		assertThat(widened.timeout, is(30000L));
+		assertThat(widened.ratio, is(97.0));
+		assertThat(widened.scale, is((short) 2));
+		assertThat(widened.weight, is(3.0f));
+	}
+
+	private static void assertSettings(Settings settings) {
+		assertThat(settings.port, is(8080));
+		assertThat(settings.timeout, is(30000L));
+		assertThat(settings.secure, is(true));
+		assertThat(settings.ratio, is(0.75));
+		assertThat(settings.retries, is(3));
+	}
+
+	@Test
+	public void testNamedInjectionTypeMismatchOnPlan() {
+		DaContainer container = new DaContainerImpl();
+		container.bind(H2G2.class);
+		container.bindConstant("answer", "42");
+
+		try {
+			container.getInstance(H2G2.class);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertThat(e.getMessage(), containsString("answer"));
+		}
+	}
+
+	@Test
+	public void testNamedInjectionTypeMismatchValidated() {
+		DaContainer container = new DaContainerImpl();
+		container.bind(H2G2.class);
+		container.bindConstant("answer", 42);
+		container.getInstance(H2G2.class);
+		container.bindConstant("answer", 42L);
+
+		List<String> problems = container.validate();
+
+		assertThat(problems.size(), is(1));
+		assertThat(problems.get(0), containsString("java.lang.Long"));
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void testNamedInjectionUnboundedName() {
 
@@ -91,6 +180,39 @@ public class DaContainerImplTestNamedInjection {
 		}
 	}
 
+	public static class Settings {
+
+		@Named("port")
+		int port;
+
+		@Named("timeout")
+		long timeout;
+
+		@Named("secure")
+		boolean secure;
+
+		@Named("ratio")
+		double ratio;
+
+		@Named("retries")
+		Integer retries;
+	}
+
+	public static class Widened {
+
+		@Named("timeout")
+		long timeout;
+
+		@Named("ratio")
+		double ratio;
+
+		@Named("scale")
+		short scale;
+
+		@Named("weight")
+		float weight;
+	}
+
 	public static final class Terminal {
 
 		@Named("terminal.prompt")
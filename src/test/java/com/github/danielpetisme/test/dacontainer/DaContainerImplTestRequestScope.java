@@ -0,0 +1,346 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.RequestScope;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+import com.github.danielpetisme.dacontainer.annotations.PreDestroy;
+
+public class DaContainerImplTestRequestScope {
+
+	private static final List<String> DISPOSED = Collections
+			.synchronizedList(new ArrayList<String>());
+
+	private DaContainer tested;
+
+	@Before
+	public void setUp() {
+		DISPOSED.clear();
+		tested = new DaContainerImpl();
+		tested.bind(Connection.class);
+		tested.bind(Repository.class);
+		tested.bind(Handler.class);
+		tested.bind(Cache.class, Cache.class, Scopes.SINGLETON);
+		tested.bind(Registry.class, Registry.class, Scopes.SINGLETON);
+	}
+
+	@Test
+	public void testReverseOrder() {
+		RequestScope scope = RequestScope.open();
+		try {
+			tested.getInstance(Handler.class);
+			assertThat(scope.size(), is(3));
+		} finally {
+			scope.close();
+		}
+		assertThat(DISPOSED, is(Arrays.asList("handler", "repository",
+				"connection")));
+	}
+
+	@Test
+	public void testReverseOrderFrozen() {
+		tested.freeze();
+		testReverseOrder();
+	}
+
+	@Test
+	public void testScopedInstancesLeft() {
+		RequestScope scope = RequestScope.open();
+		tested.getInstance(Cache.class);
+		tested.getInstance(Connection.class);
+		scope.close();
+		assertThat(DISPOSED, is(Arrays.asList("connection")));
+	}
+
+	@Test
+	public void testSingletonDependenciesLeft() {
+		RequestScope scope = RequestScope.open();
+		Registry registry = tested.getInstance(Registry.class);
+		tested.getInstance(Connection.class);
+		assertThat(scope.size(), is(1));
+		scope.close();
+		assertThat(DISPOSED, is(Arrays.asList("connection")));
+		assertTrue(registry.repository.connection != null);
+	}
+
+	@Test
+	public void testSingletonDependenciesLeftFrozen() {
+		tested.freeze();
+		testSingletonDependenciesLeft();
+	}
+
+	@Test
+	public void testNothingRecordedOutside() {
+		tested.getInstance(Handler.class);
+		RequestScope scope = RequestScope.open();
+		assertThat(scope.size(), is(0));
+		scope.close();
+		assertTrue(DISPOSED.isEmpty());
+	}
+
+	@Test
+	public void testNestedScopes() {
+		RequestScope outer = RequestScope.open();
+		tested.getInstance(Connection.class);
+		RequestScope inner = RequestScope.open();
+		tested.getInstance(Repository.class);
+		try {
+			outer.close();
+			fail("The inner scope is open");
+		} catch (IllegalStateException e) {
+			// Closed inside out
+		}
+		inner.close();
+		assertThat(DISPOSED, is(Arrays.asList("repository", "connection")));
+		outer.close();
+		assertThat(DISPOSED, is(Arrays.asList("repository", "connection",
+				"connection")));
+	}
+
+	@Test
+	public void testFailingCallback() {
+		tested.bind(Broken.class);
+		RequestScope scope = RequestScope.open();
+		tested.getInstance(Connection.class);
+		tested.getInstance(Broken.class);
+		tested.getInstance(Broken.class);
+		try {
+			scope.close();
+			fail("The callbacks failed");
+		} catch (IllegalStateException e) {
+			assertThat(e.getSuppressed().length, is(2));
+		}
+		assertThat(DISPOSED, is(Arrays.asList("connection")));
+	}
+
+	@Test
+	public void testSameFailureOnce() {
+		tested.bind(Leaky.class);
+		RequestScope scope = RequestScope.open();
+		tested.getInstance(Connection.class);
+		tested.getInstance(Leaky.class);
+		tested.getInstance(Leaky.class);
+		try {
+			scope.close();
+			fail("The callbacks failed");
+		} catch (IllegalStateException e) {
+			assertThat(e.getSuppressed().length, is(1));
+			assertTrue(e.getSuppressed()[0] == Leaky.LEAK);
+		}
+		assertThat(DISPOSED, is(Arrays.asList("connection")));
+	}
+
+	@Test
+	public void testInvalidCallbackRejected() {
+		for (Class<?> clazz : Arrays.asList(Shared.class, Parameterized.class)) {
+			try {
+				tested.bind(clazz);
+				fail(clazz + " cannot be disposed of");
+			} catch (IllegalArgumentException e) {
+				// Rejected before any scope is closed
+			}
+		}
+	}
+
+	@Test
+	public void testScopeOfTheThread() {
+		DaContainer other = new DaContainerImpl();
+		other.bind(Connection.class);
+		RequestScope scope = RequestScope.open();
+		tested.getInstance(Connection.class);
+		other.getInstance(Connection.class);
+		assertThat(scope.size(), is(2));
+		scope.close();
+		assertThat(DISPOSED, is(Arrays.asList("connection", "connection")));
+	}
+
+	@Test
+	public void testEveryCallbackRuns() {
+		tested.bind(Fragile.class);
+		RequestScope scope = RequestScope.open();
+		tested.getInstance(Fragile.class);
+		try {
+			scope.close();
+			fail("A callback failed");
+		} catch (IllegalStateException e) {
+			assertThat(e.getSuppressed().length, is(1));
+		}
+		assertThat(DISPOSED, is(Arrays.asList("flushed", "fragile")));
+	}
+
+	@Test
+	public void testClosedOnce() {
+		tested.bind(Session.class);
+		tested.bind(Channel.class);
+		RequestScope scope = RequestScope.open();
+		tested.getInstance(Session.class);
+		tested.getInstance(Channel.class);
+		scope.close();
+		// The private close() of the superclass is not the one of Closeable
+		assertThat(DISPOSED, is(Arrays.asList("released", "channel",
+				"session")));
+	}
+
+	@Test
+	public void testBatch() {
+		RequestScope scope = RequestScope.open();
+		tested.getInstances(Connection.class, 3);
+		scope.close();
+		assertThat(DISPOSED.size(), is(3));
+	}
+
+	public static class Connection implements AutoCloseable {
+
+		public void close() {
+			DISPOSED.add("connection");
+		}
+	}
+
+	public static class Repository {
+
+		@Inject
+		public Connection connection;
+
+		@PreDestroy
+		void release() {
+			DISPOSED.add("repository");
+		}
+	}
+
+	public static class Handler {
+
+		@Inject
+		public Repository repository;
+
+		@Inject
+		public Cache cache;
+
+		@PreDestroy
+		public void close() {
+			DISPOSED.add("handler");
+		}
+	}
+
+	public static class Registry {
+
+		@Inject
+		public Repository repository;
+	}
+
+	public static class Cache implements AutoCloseable {
+
+		public void close() {
+			DISPOSED.add("cache");
+		}
+	}
+
+	public static class Fragile implements AutoCloseable {
+
+		@PreDestroy
+		public void fail() {
+			throw new IllegalStateException("Cannot release");
+		}
+
+		@PreDestroy
+		public void flush() {
+			DISPOSED.add("flushed");
+		}
+
+		public void close() {
+			DISPOSED.add("fragile");
+		}
+	}
+
+	public static class Session implements Closeable {
+
+		@PreDestroy
+		public void close() {
+			DISPOSED.add("session");
+		}
+	}
+
+	public static class Resource {
+
+		@PreDestroy
+		private void close() {
+			DISPOSED.add("released");
+		}
+	}
+
+	public static class Channel extends Resource implements AutoCloseable {
+
+		@Override
+		public void close() {
+			DISPOSED.add("channel");
+		}
+	}
+
+	public static class Broken {
+
+		@PreDestroy
+		public void fail() {
+			throw new IllegalStateException("Cannot release");
+		}
+	}
+
+	public static class Leaky implements AutoCloseable {
+
+		static final IllegalStateException LEAK = new IllegalStateException(
+				"Cannot release");
+
+		@PreDestroy
+		public void fail() {
+			throw LEAK;
+		}
+
+		public void close() {
+			throw LEAK;
+		}
+	}
+
+	public static class Shared {
+
+		@PreDestroy
+		public static void release() {
+			DISPOSED.add("shared");
+		}
+	}
+
+	public static class Parameterized {
+
+		@PreDestroy
+		public void release(String reason) {
+			DISPOSED.add(reason);
+		}
+	}
+}
@@ -0,0 +1,304 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.InstancePool;
+import com.github.danielpetisme.dacontainer.Key;
+import com.github.danielpetisme.dacontainer.PooledScope;
+import com.github.danielpetisme.dacontainer.Provider;
+import com.github.danielpetisme.dacontainer.Scope;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+
+public class DaContainerImplTestScopes {
+
+	private DaContainer tested;
+
+	@Before
+	public void setUp() throws Exception {
+		tested = DaContainerImpl.INSTANCE;
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	@Test
+	public void testNoScope() {
+		tested.bind(Pool.class, Pool.class, Scopes.NO_SCOPE);
+
+		Pool pool1 = tested.getInstance(Pool.class);
+		Pool pool2 = tested.getInstance(Pool.class);
+
+		assertThat(pool1, is(not(sameInstance(pool2))));
+	}
+
+	@Test
+	public void testSingleton() {
+		tested.bind(Pool.class, Pool.class, Scopes.SINGLETON);
+		tested.bind(Service.class);
+
+		Pool pool = tested.getInstance(Pool.class);
+		Service service1 = tested.getInstance(Service.class);
+		Service service2 = tested.getInstance(Service.class);
+
+		assertThat(service1, is(not(sameInstance(service2))));
+		assertThat(service1.getPool(), is(sameInstance(pool)));
+		assertThat(service2.getPool(), is(sameInstance(pool)));
+	}
+
+	@Test
+	public void testSingletonConcurrentFirstAccess() throws Exception {
+		tested.bind(CountedPool.class, CountedPool.class, Scopes.SINGLETON);
+		CountedPool.CREATED.set(0);
+
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<CountedPool>> futures = new ArrayList<Future<CountedPool>>();
+		for (int i = 0; i < 32; i++) {
+			futures.add(executor.submit(new Callable<CountedPool>() {
+				public CountedPool call() throws Exception {
+					start.await();
+					return tested.getInstance(CountedPool.class);
+				}
+			}));
+		}
+		start.countDown();
+
+		CountedPool first = futures.get(0).get();
+		for (Future<CountedPool> future : futures) {
+			assertThat(future.get(), is(sameInstance(first)));
+		}
+		assertThat(CountedPool.CREATED.get(), is(1));
+		executor.shutdown();
+	}
+
+	@Test
+	public void testThreadScope() throws Exception {
+		tested.bind(Pool.class, Pool.class, Scopes.THREAD);
+
+		Pool pool = tested.getInstance(Pool.class);
+		Pool samePool = tested.getInstance(Pool.class);
+		assertThat(samePool, is(sameInstance(pool)));
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Pool otherPool = executor.submit(new Callable<Pool>() {
+			public Pool call() throws Exception {
+				return tested.getInstance(Pool.class);
+			}
+		}).get();
+		executor.shutdown();
+
+		assertThat(otherPool, is(not(sameInstance(pool))));
+	}
+
+	@Test
+	public void testCustomScope() {
+		final AtomicInteger calls = new AtomicInteger();
+		Scope counting = new Scope() {
+			public <T> Provider<T> scope(Key<?> key,
+					final Provider<T> unscoped) {
+				return new Provider<T>() {
+					public T get() {
+						calls.incrementAndGet();
+						return unscoped.get();
+					}
+				};
+			}
+		};
+		tested.bind(Pool.class, Pool.class, counting);
+
+		tested.getInstance(Pool.class);
+		tested.getInstance(Pool.class);
+
+		assertThat(calls.get(), is(2));
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testNullScope() {
+		tested.bind(Pool.class, Pool.class, null);
+	}
+
+	@Test
+	public void testPooledScope() {
+		DaContainer container = new DaContainerImpl();
+		PooledScope pooled = Scopes.pooled(2, Buffer.class, Buffer.RESET);
+		container.bind(Pool.class, Pool.class, Scopes.SINGLETON);
+		container.bind(Buffer.class, Buffer.class, pooled);
+		InstancePool<Buffer> pool = pooled.getPool(Buffer.class);
+
+		Buffer buffer = container.getInstance(Buffer.class);
+		buffer.builder.append("dirty");
+		pool.release(buffer);
+		Buffer reused = container.getInstance(Buffer.class);
+
+		assertThat(reused, is(sameInstance(buffer)));
+		assertThat(reused.builder.length(), is(0));
+		assertThat(reused.pool, is(sameInstance(container
+				.getInstance(Pool.class))));
+		assertThat(pool.getHits(), is(1L));
+		assertThat(pool.getMisses(), is(1L));
+	}
+
+	@Test
+	public void testPooledScopeCapacity() {
+		DaContainer container = new DaContainerImpl();
+		PooledScope pooled = Scopes.pooled(1);
+		container.bind(Buffer.class, Buffer.class, pooled);
+		InstancePool<Buffer> pool = pooled.getPool(Buffer.class);
+
+		Buffer first = pool.acquire();
+		Buffer second = pool.acquire();
+		pool.release(first);
+		pool.release(second);
+
+		assertThat(second, is(not(sameInstance(first))));
+		assertThat(pool.getMisses(), is(2L));
+		assertThat(pool.getDiscards(), is(1L));
+		assertThat(pool.acquire(), is(sameInstance(first)));
+	}
+
+	@Test
+	public void testPooledScopeNamedBindings() {
+		DaContainer container = new DaContainerImpl();
+		PooledScope pooled = Scopes.pooled(1);
+		Key<Buffer> input = Key.get(Buffer.class, "input");
+		Key<Buffer> output = Key.get(Buffer.class, "output");
+		container.bind(input, Buffer.class, pooled);
+		container.bind(output, Buffer.class, pooled);
+
+		Buffer buffer = container.getInstance(input);
+		pooled.getPool(input).release(buffer);
+
+		assertThat(pooled.getPool(output), is(not(sameInstance(pooled
+				.getPool(input)))));
+		assertThat(container.getInstance(output),
+				is(not(sameInstance(buffer))));
+		assertThat(container.getInstance(input), is(sameInstance(buffer)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPooledScopeDoubleRelease() {
+		DaContainer container = new DaContainerImpl();
+		PooledScope pooled = Scopes.pooled(2);
+		container.bind(Buffer.class, Buffer.class, pooled);
+		InstancePool<Buffer> pool = pooled.getPool(Buffer.class);
+
+		Buffer buffer = pool.acquire();
+		pool.release(buffer);
+		pool.release(buffer);
+	}
+
+	@Test
+	public void testPooledScopeConcurrency() throws Exception {
+		final DaContainer container = new DaContainerImpl();
+		PooledScope pooled = Scopes.pooled(4, Buffer.class, Buffer.RESET);
+		container.bind(Buffer.class, Buffer.class, pooled);
+		final InstancePool<Buffer> pool = pooled.getPool(Buffer.class);
+		final int threads = 8;
+		final int rounds = 2000;
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+		for (int i = 0; i < threads; i++) {
+			futures.add(executor.submit(new Callable<Boolean>() {
+				public Boolean call() throws Exception {
+					boolean exclusive = true;
+					for (int j = 0; j < rounds; j++) {
+						Buffer buffer = container.getInstance(Buffer.class);
+						exclusive &= buffer.inUse.compareAndSet(false, true);
+						buffer.inUse.set(false);
+						pool.release(buffer);
+					}
+					return exclusive;
+				}
+			}));
+		}
+		for (Future<Boolean> future : futures) {
+			assertTrue(future.get());
+		}
+		executor.shutdown();
+
+		assertThat(pool.getHits() + pool.getMisses(), is((long) threads
+				* rounds));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPooledScopeOfOtherType() {
+		new DaContainerImpl().bind(Pool.class, Pool.class, Scopes.pooled(1,
+				Buffer.class, Buffer.RESET));
+	}
+
+	public static class Pool {
+	}
+
+	public static class Buffer {
+
+		static final InstancePool.Reset<Buffer> RESET = new InstancePool.Reset<Buffer>() {
+			public void reset(Buffer instance) {
+				instance.builder.setLength(0);
+			}
+		};
+
+		final StringBuilder builder = new StringBuilder();
+
+		final AtomicBoolean inUse = new AtomicBoolean();
+
+		@Inject
+		Pool pool;
+	}
+
+	public static class CountedPool {
+
+		static final AtomicInteger CREATED = new AtomicInteger();
+
+		public CountedPool() {
+			CREATED.incrementAndGet();
+		}
+	}
+
+	public static class Service {
+
+		@Inject
+		private Pool pool;
+
+		public Pool getPool() {
+			return pool;
+		}
+	}
+}
@@ -0,0 +1,232 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.InjectionBackend;
+import com.github.danielpetisme.dacontainer.Key;
+import com.github.danielpetisme.dacontainer.Provider;
+import com.github.danielpetisme.dacontainer.Scope;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.github.danielpetisme.dacontainer.annotations.AnnotationInjection;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+import com.github.danielpetisme.dacontainer.annotations.Named;
+
+public class DaContainerImplTestSnapshot {
+
+	private static final Key<List<Wheel>> WHEELS = new Key<List<Wheel>>() {
+	};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private DaContainer tested;
+
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		tested = new DaContainerImpl();
+		file = new File(folder.getRoot(), "container.snapshot");
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		configure(tested);
+		tested.freeze();
+		tested.snapshot(file);
+
+		DaContainer restored = DaContainerImpl.restore(file);
+		Car car = restored.getInstance(Car.class);
+
+		assertThat(car.engine, is(sameInstance(restored.getInstance(Engine.class))));
+		assertThat(car.spare, is(instanceOf(SpareWheel.class)));
+		assertThat(car.wheels, is(instanceOf(ArrayList.class)));
+		assertThat(car.wheelProvider.get(), is(instanceOf(Wheel.class)));
+		assertThat(car.doors, is(4));
+		assertThat(car.model, is("Roadster"));
+		assertThat(car.plate, is("DA-042-CO"));
+		assertThat(restored.getConstant("car.doors"), is((Object) 4));
+		assertTrue(restored.validate().isEmpty());
+	}
+
+	@Test
+	public void testRestoredContainerIsFrozen() throws Exception {
+		configure(tested);
+		tested.freeze();
+		tested.snapshot(file);
+
+		DaContainer restored = DaContainerImpl.restore(file);
+
+		try {
+			restored.bind(Wheel.class);
+			assertTrue(false);
+		} catch (IllegalStateException e) {
+			assertThat(e.getMessage(), is(not((String) null)));
+		}
+	}
+
+	@Test
+	public void testSnapshotOfRestoredContainer() throws Exception {
+		configure(tested);
+		tested.setInjectionBackend(InjectionBackend.REFLECTION);
+		tested.freeze();
+		tested.snapshot(file);
+
+		// Bindings never looked up are written again
+		File copy = new File(folder.getRoot(), "copy.snapshot");
+		DaContainerImpl.restore(file).snapshot(copy);
+		DaContainer restored = DaContainerImpl.restore(copy);
+
+		Car car = restored.getInstance(Car.class);
+
+		assertThat(car.doors, is(4));
+	}
+
+	@Test
+	public void testBootstrapRestoredSingletons() throws Exception {
+		configure(tested);
+		tested.freeze();
+		tested.snapshot(file);
+
+		DaContainer restored = DaContainerImpl.restore(file);
+		restored.bootstrap();
+
+		assertThat(restored.getInstance(Engine.class), is(sameInstance(restored
+				.getInstance(Engine.class))));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testSnapshotOfUnfrozenContainer() throws Exception {
+		configure(tested);
+
+		tested.snapshot(file);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSnapshotOfCustomScope() throws Exception {
+		tested.bind(Engine.class, Engine.class, new Scope() {
+			public <T> Provider<T> scope(Key<?> key, Provider<T> unscoped) {
+				return unscoped;
+			}
+		});
+		tested.freeze();
+
+		tested.snapshot(file);
+	}
+
+	@Test
+	public void testSnapshotOfPooledScope() throws Exception {
+		configure(tested);
+		tested.bind(Key.get(Wheel.class, "pooled"), Wheel.class,
+				Scopes.pooled(4));
+		tested.freeze();
+
+		try {
+			tested.snapshot(file);
+			assertTrue(false);
+		} catch (IllegalArgumentException e) {
+			assertThat(e.getMessage(), is(not((String) null)));
+		}
+		assertFalse(file.exists());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSnapshotOfObjectConstant() throws Exception {
+		tested.bindConstant("car.engine", new Engine());
+		tested.freeze();
+
+		tested.snapshot(file);
+	}
+
+	private static void configure(DaContainer container) {
+		container.bind(Car.class);
+		container.bind(Engine.class, Engine.class, Scopes.SINGLETON);
+		container.bind(Wheel.class);
+		container.bind(Key.get(Wheel.class, "spare"), SpareWheel.class,
+				Scopes.NO_SCOPE);
+		container.bind(WHEELS, ArrayList.class, Scopes.NO_SCOPE);
+		container.bindConstant("car.doors", 4);
+		container.bindConstant("car.model", "Roadster");
+		container.bindAnnotation(Plate.class, "DA-042-CO");
+	}
+
+	public static class Engine {
+	}
+
+	public static class Wheel {
+	}
+
+	public static class SpareWheel extends Wheel {
+	}
+
+	@AnnotationInjection
+	@Target(value = ElementType.FIELD)
+	@Retention(RetentionPolicy.RUNTIME)
+	public static @interface Plate {
+	}
+
+	public static class Car {
+
+		final Engine engine;
+
+		@Inject
+		@Named("spare")
+		Wheel spare;
+
+		@Inject
+		List<Wheel> wheels;
+
+		@Inject
+		Provider<Wheel> wheelProvider;
+
+		@Named("car.doors")
+		int doors;
+
+		@Named("car.model")
+		String model;
+
+		@Plate
+		String plate;
+
+		@Inject
+		public Car(Engine engine) {
+			this.engine = engine;
+		}
+	}
+}
@@ -22,7 +22,22 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses(value = { DaContainerImplTestBasics.class,
 		DaContainerImplTestInjection.class,
-		DaContainerImplTestNamedInjection.class , DaContainerImplTestAnnotationInjection.class})
+		DaContainerImplTestNamedInjection.class , DaContainerImplTestAnnotationInjection.class,
+		DaContainerImplTestScopes.class, DaContainerImplTestConcurrency.class,
+		DaContainerImplTestValidation.class, DaContainerImplTestCycles.class,
+		DaContainerImplTestDeferredInjection.class,
+		DaContainerImplTestInstrumentation.class,
+		DaContainerImplTestAllocation.class,
+		DaContainerImplTestGeneratedInjector.class,
+		DaContainerImplTestBootstrap.class,
+		DaContainerImplTestChildren.class,
+		DaContainerImplTestKeys.class,
+		DaContainerImplTestSnapshot.class,
+		DaContainerImplTestAsync.class,
+		DaContainerImplTestDeepGraphs.class,
+		DaContainerImplTestAutoBind.class,
+		DaContainerImplTestConstantUpdates.class,
+		DaContainerImplTestRequestScope.class})
 		
 public class DaContainerImplTestSuite {
 
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2011 Daniel PETISME <daniel.petisme@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.danielpetisme.test.dacontainer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.matchers.JUnitMatchers.containsString;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.danielpetisme.dacontainer.DaContainer;
+import com.github.danielpetisme.dacontainer.DaContainerImpl;
+import com.github.danielpetisme.dacontainer.Scopes;
+import com.github.danielpetisme.dacontainer.annotations.Inject;
+import com.github.danielpetisme.dacontainer.annotations.Named;
+
+public class DaContainerImplTestValidation {
+
+	private DaContainer tested;
+
+	@Before
+	public void setUp() throws Exception {
+		tested = new DaContainerImpl();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	@Test
+	public void testValidateValid() {
+		bindValidGraph();
+
+		assertTrue(tested.validate().isEmpty());
+	}
+
+	@Test
+	public void testValidateReportsEveryProblem() {
+		tested.bind(Car.class);
+		tested.bind(Chicken.class);
+		tested.bind(Egg.class);
+
+		List<String> problems = tested.validate();
+
+		assertThat(problems.size(), is(4));
+		assertThat(find(problems, "not bound"), containsString(Engine.class
+				.getName()));
+		assertThat(find(problems, Wheels.class.getName()),
+				containsString("not bound"));
+		assertThat(find(problems, "constant"), containsString("car.brand"));
+		assertThat(find(problems, "Cycle"), containsString(" -> "));
+	}
+
+	@Test
+	public void testFreeze() {
+		bindValidGraph();
+
+		tested.freeze();
+		Car car1 = tested.getInstance(Car.class);
+		Car car2 = tested.getInstance(Car.class);
+
+		assertThat(car1.getEngine(), is(not(nullValue())));
+		assertThat(car1.getBrand(), is("DaCar"));
+		assertThat(car1.getEngine(), is(not(sameInstance(car2.getEngine()))));
+		assertThat(car1.getWheels(), is(sameInstance(car2.getWheels())));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFrozenIsReadOnly() {
+		bindValidGraph();
+		tested.freeze();
+
+		tested.bindConstant("car.brand", "Other");
+	}
+
+	@Test
+	public void testFreezeInvalid() {
+		tested.bind(Car.class);
+
+		try {
+			tested.freeze();
+			fail("The container is not valid");
+		} catch (IllegalStateException e) {
+			assertThat(e.getMessage(), containsString(Engine.class.getName()));
+			assertThat(e.getMessage(), containsString("car.brand"));
+		}
+
+		// Still open for registration
+		bindValidGraph();
+		tested.freeze();
+	}
+
+	private void bindValidGraph() {
+		tested.bind(Car.class);
+		tested.bind(Engine.class);
+		tested.bind(Wheels.class, Wheels.class, Scopes.SINGLETON);
+		tested.bindConstant("car.brand", "DaCar");
+	}
+
+	private static String find(List<String> problems, String text) {
+		for (String problem : problems) {
+			if (problem.contains(text)) {
+				return problem;
+			}
+		}
+		fail("No problem about " + text + " in " + problems);
+		return null;
+	}
+
+	public static class Engine {
+	}
+
+	public static class Wheels {
+	}
+
+	public static class Car {
+
+		private final Engine engine;
+
+		@Inject
+		private Wheels wheels;
+
+		@Named("car.brand")
+		private String brand;
+
+		@Inject
+		public Car(Engine engine) {
+			this.engine = engine;
+		}
+
+		public Engine getEngine() {
+			return engine;
+		}
+
+		public Wheels getWheels() {
+			return wheels;
+		}
+
+		public String getBrand() {
+			return brand;
+		}
+	}
+
+	public static class Chicken {
+
+		@Inject
+		private Egg egg;
+
+		public Egg getEgg() {
+			return egg;
+		}
+	}
+
+	public static class Egg {
+
+		@Inject
+		private Chicken chicken;
+
+		public Chicken getChicken() {
+			return chicken;
+		}
+	}
+}